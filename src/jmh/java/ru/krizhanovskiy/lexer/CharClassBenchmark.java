@@ -0,0 +1,97 @@
+package ru.krizhanovskiy.lexer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.krizhanovskiy.diagnostics.Diagnostics;
+import ru.krizhanovskiy.lexer.token.TokenBuffer;
+
+import java.nio.CharBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость проверки разделителя на один символ: прежний HashSet&lt;Character&gt; (упаковка символа на каждую проверку)
+ * против таблицы {@link CharClasses}, и весь лексер на том же тексте - тоже в пересчёте на символ.
+ * Запуск: mvn -Pjmh verify
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CharClassBenchmark {
+    private static final int TEXT_LENGTH = 1 << 16;
+
+    // Фрагмент программы: идентификаторы, числа, операции, строки, комментарии и не-ASCII символы
+    private static final String SAMPLE = """
+            int sum(int n) {
+                int result = 0;
+                for (int i = 0; i < n; i = i + 1) {
+                    if (i % 2 == 0 && i != 4 || !(i > 10)) result = result + i * 3;
+                }
+                return result;
+            }
+            // однострочный комментарий
+            void main() {
+                float f = 1.5 / 2.0 - 0.25;
+                print("Привет \\"Мир\\".");
+                /* многострочный
+                   комментарий */
+                while (sum(10) >= 7) { break; }
+            }
+            """;
+
+    // Таблица разделителей до CharClasses
+    private final Set<Character> ignoreCharacter = new HashSet<>(List.of(' ', '(', ')', '{', '}', ';', ',',
+            '-', '+', '*', '/', '=', '<', '>', '&', '|', '!'));
+
+    private char[] text;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder(TEXT_LENGTH + SAMPLE.length());
+        while (builder.length() < TEXT_LENGTH) builder.append(SAMPLE);
+        builder.setLength(TEXT_LENGTH);
+        text = builder.toString().toCharArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TEXT_LENGTH)
+    public int separatorHashSet() {
+        int count = 0;
+        for (char c : text) {
+            if (ignoreCharacter.contains(c)) count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TEXT_LENGTH)
+    public int separatorTable() {
+        int count = 0;
+        for (char c : text) {
+            if (CharClasses.isSeparator(c)) count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TEXT_LENGTH)
+    public int lexer() {
+        TokenBuffer tokens = new TokenBuffer();
+        new Lexer(tokens, new Diagnostics()).analise(CharBuffer.wrap(text));
+        return tokens.size();
+    }
+}
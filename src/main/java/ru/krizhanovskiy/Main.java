@@ -1,63 +1,172 @@
 package ru.krizhanovskiy;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import ru.krizhanovskiy.ast.AstJsonWriter;
+import ru.krizhanovskiy.ast.AstNormalizer;
+import ru.krizhanovskiy.ast.AstSnapshot;
+import ru.krizhanovskiy.ast.FlatAst;
 import ru.krizhanovskiy.ast.NonTerminalNode;
+import ru.krizhanovskiy.cache.CompilationCache;
+import ru.krizhanovskiy.diagnostics.ConsoleDiagnosticSink;
+import ru.krizhanovskiy.diagnostics.DiagnosticSink;
+import ru.krizhanovskiy.diagnostics.Diagnostics;
+import ru.krizhanovskiy.diagnostics.JsonDiagnosticSink;
 import ru.krizhanovskiy.lexer.Lexer;
-import ru.krizhanovskiy.lexer.token.Token;
+import ru.krizhanovskiy.lexer.ParallelLexer;
+import ru.krizhanovskiy.lexer.token.TokenBuffer;
+import ru.krizhanovskiy.parser.ParallelParser;
 import ru.krizhanovskiy.parser.Parser;
+import ru.krizhanovskiy.semantic_analyzer.FlatSemanticAnalyzer;
 import ru.krizhanovskiy.semantic_analyzer.SemanticAnalyzer;
 import ru.krizhanovskiy.translation.Translator;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
     public static void main(String[] args) {
-        if (args.length == 0) {
+        String filename = null;
+        boolean mappedInput = false; // --mmap: читать файл через FileChannel.map
+        boolean parallel = false; // --parallel: лексер - фрагментами текста, парсер - по методам на нескольких потоках
+        boolean jsonDiagnostics = false; // --diagnostics=json: сообщения в System.err в формате JSON Lines
+        int maxErrors = 100; // --max-errors=N: после N синтаксических ошибок разбор прекращается
+        // --flat-ast: AST в FlatAst без объекта на узел; анализ и трансляция только читают его, поэтому
+        // оптимизации SemanticAnalyzer не выполняются, а ast-optimized.json, --ast-bin и --cache не используются
+        boolean flatAst = false;
+        // --ast-json=none|parse|optimized|parse,optimized: какие AST записывать в JSON (по умолчанию оба)
+        boolean parseJson = true; // ast.json - после синтаксического анализа
+        boolean optimizedJson = true; // ast-optimized.json - после семантического анализа
+        boolean prettyJson = false; // --pretty-json: JSON с отступами
+        boolean binaryAst = false; // --ast-bin: AST после синтаксического анализа в ast.bin (см. AstSnapshot)
+        String cacheDir = null; // --cache=DIR: неизменённые методы берутся из прошлой сборки (см. CompilationCache)
+        for (String arg : args) {
+            if (arg.equals("--mmap")) mappedInput = true;
+            else if (arg.equals("--parallel")) parallel = true;
+            else if (arg.equals("--diagnostics=json")) jsonDiagnostics = true;
+            else if (arg.equals("--flat-ast")) flatAst = true;
+            else if (arg.equals("--pretty-json")) prettyJson = true;
+            else if (arg.equals("--ast-bin")) binaryAst = true;
+            else if (arg.startsWith("--ast-json=")) {
+                List<String> stages = Arrays.asList(arg.substring("--ast-json=".length()).split(","));
+                if (!List.of("none", "parse", "optimized").containsAll(stages)) {
+                    System.err.println("--ast-json: допустимые значения - none, parse, optimized (через запятую)");
+                    return;
+                }
+                parseJson = stages.contains("parse");
+                optimizedJson = stages.contains("optimized");
+            }
+            else if (arg.startsWith("--max-errors=")) {
+                maxErrors = parseCount(arg.substring("--max-errors=".length()));
+                if (maxErrors <= 0) {
+                    System.err.println("--max-errors=N: N должно быть целым числом больше 0");
+                    return;
+                }
+            }
+            else if (arg.startsWith("--cache=")) cacheDir = arg.substring("--cache=".length());
+            else filename = arg;
+        }
+        if (filename == null) {
             System.err.println("Введите путь к файлу с кодом");
             return;
         }
-        String filename = args[0];
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))
-        ) {
-            List<Token> tokens = new ArrayList<>();
-            Lexer lexer = new Lexer(tokens);
-
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                lexer.analiseLine(line);
+        Diagnostics diagnostics = new Diagnostics();
+        DiagnosticSink diagnosticSink = jsonDiagnostics ? new JsonDiagnosticSink(System.err) : new ConsoleDiagnosticSink();
+        AstJsonWriter astJson = new AstJsonWriter(prettyJson);
+        try {
+            TokenBuffer tokens = new TokenBuffer();
+
+            if (parallel) {
+                ParallelLexer lexer = new ParallelLexer(tokens, diagnostics);
+                lexer.analise(readSource(filename, mappedInput));
+            } else {
+                Lexer lexer = new Lexer(tokens, diagnostics);
+                if (mappedInput) {
+                    analiseMapped(lexer, filename);
+                } else {
+                    try (Reader reader = new FileReader(filename, StandardCharsets.UTF_8)) {
+                        lexer.analise(reader);
+                    }
+                }
             }
+            diagnostics.flush(diagnosticSink);
             if (tokens.isEmpty()) {
                 System.err.println("No tokens found");
                 return;
             }
 
-            Parser parser = new Parser(tokens);
-            parser.parse();
+            if (flatAst) {
+                FlatAst flat = new FlatAst(tokens);
+                Parser parser = new Parser(tokens, diagnostics, maxErrors, flat);
+                parser.parse();
+                diagnostics.flush(diagnosticSink);
+                if (parseJson) astJson.write(flat, new File("ast.json"));
+                if (parser.error) return;
+
+                FlatSemanticAnalyzer semanticAnalyzer = new FlatSemanticAnalyzer(flat, diagnostics);
+                semanticAnalyzer.analyze();
+                diagnostics.flush(diagnosticSink);
+                if (semanticAnalyzer.errors) return;
+
+                new Translator(flat, semanticAnalyzer.methodNodes(), semanticAnalyzer.methods).translate();
+                System.out.println("Main.class generated successfully.");
+                return;
+            }
+
+            NonTerminalNode ast;
+            boolean syntaxError;
+            if (parallel) {
+                ParallelParser parser = new ParallelParser(tokens, diagnostics, maxErrors, ForkJoinPool.commonPool());
+                parser.parse();
+                ast = parser.getRootAST();
+                syntaxError = parser.error;
+            } else {
+                Parser parser = new Parser(tokens, diagnostics, maxErrors);
+                parser.parse();
+                ast = parser.getRootAST();
+                syntaxError = parser.error;
+            }
+            diagnostics.flush(diagnosticSink);
 
-            NonTerminalNode ast = parser.getRootAST();
 
+            if (parseJson) astJson.write(ast, new File("ast.json"));
+            if (binaryAst) writeSnapshot(ast, "ast.bin");
 
-            serializeToJson(parser.getRootAST(), "ast.json");
+            if (syntaxError) return;
 
-            if (parser.error) return;
+            AstNormalizer.normalize(ast); // списки - один узел вместо цепочки *-optional
 
 
-            SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer(parser.getRootAST());
+            CompilationCache cache = cacheDir == null ? null : CompilationCache.load(Path.of(cacheDir), tokens.symbols());
+            SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer(ast, diagnostics);
+            semanticAnalyzer.cache = cache;
             semanticAnalyzer.analyze();
+            diagnostics.flush(diagnosticSink);
 
-            serializeToJson(parser.getRootAST(), "ast-optimized.json");
+            if (optimizedJson) astJson.write(ast, new File("ast-optimized.json"));
 
             if (semanticAnalyzer.errors) return;
 
             Translator translator = new Translator(ast, semanticAnalyzer.methods);
+            if (cache != null && !cache.reusedMethods().isEmpty()) {
+                translator.reuse(cache.previousClass(), cache.reusedMethods());
+            }
             translator.translate();
+            if (cache != null) cache.save(semanticAnalyzer.analyzedMethods, translator.bytecode);
             System.out.println("Main.class generated successfully.");
 
 
@@ -65,13 +174,54 @@ public class Main {
             e.printStackTrace();
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            diagnostics.flush(diagnosticSink); // сообщения этапа, прерванного исключением
         }
     }
 
-    private static void serializeToJson(NonTerminalNode root, String filename) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+    // Число из строки или -1, если это не целое число
+    private static int parseCount(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void writeSnapshot(NonTerminalNode ast, String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            AstSnapshot.write(ast, out);
+        }
+    }
+
+    private static void analiseMapped(Lexer lexer, String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                // Одним MappedByteBuffer больше 2 ГБ не отобразить
+                try (Reader reader = new FileReader(filename, StandardCharsets.UTF_8)) {
+                    lexer.analise(reader);
+                }
+                return;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            lexer.analise(buffer);
+        }
+    }
+
+    // Весь файл целиком - для параллельного разбора нужен произвольный доступ к тексту
+    private static CharSequence readSource(String filename, boolean mappedInput) throws IOException {
+        if (!mappedInput) return decode(ByteBuffer.wrap(Files.readAllBytes(Path.of(filename))));
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) return decode(ByteBuffer.wrap(Files.readAllBytes(Path.of(filename))));
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
 
-        mapper.writeValue(new File(filename), root);
+    // Неверные байты UTF-8 заменяются, как при последовательном разборе и в Lexer.analise(ByteBuffer)
+    private static CharSequence decode(ByteBuffer bytes) throws IOException {
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(bytes);
     }
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package ru.krizhanovskiy.ast;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteConstraints;
+import ru.krizhanovskiy.lexer.token.Token;
+import ru.krizhanovskiy.lexer.token.TokenType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * AST в JSON потоком через {@link JsonGenerator}, без рефлексии и без рекурсии - глубина дерева не ограничена стеком.
+ * Формат тот же, что у ObjectMapper:
+ * <pre>
+ * {"name":"...","children":[...],"qtyProductions":N,"value":...,"type":...}
+ * {"token":{"type":"...","name":"...","line":N,"column":N}}
+ * </pre>
+ * По умолчанию без отступов.
+ * <p>
+ * Для записи в свой генератор - {@link #write(NonTerminalNode, JsonGenerator)}; его StreamWriteConstraints
+ * должны допускать глубину дерева.
+ */
+public class AstJsonWriter {
+    // Цепочки statements / statements-optional дают вложенность больше 1000, предела Jackson по умолчанию
+    private static final JsonFactory factory = JsonFactory.builder()
+            .streamWriteConstraints(StreamWriteConstraints.builder().maxNestingDepth(Integer.MAX_VALUE).build())
+            .build();
+
+    private final boolean pretty;
+
+    public AstJsonWriter(boolean pretty) {
+        this.pretty = pretty;
+    }
+
+    public void write(NonTerminalNode root, File file) throws IOException {
+        try (JsonGenerator generator = createGenerator(file)) {
+            write(root, generator);
+        }
+    }
+
+    public void write(FlatAst ast, File file) throws IOException {
+        try (JsonGenerator generator = createGenerator(file)) {
+            write(ast, generator);
+        }
+    }
+
+    private JsonGenerator createGenerator(File file) throws IOException {
+        JsonGenerator generator = factory.createGenerator(file, JsonEncoding.UTF8);
+        if (pretty) generator.useDefaultPrettyPrinter();
+        return generator;
+    }
+
+    public static void write(NonTerminalNode root, JsonGenerator generator) throws IOException {
+        if (root == null) {
+            generator.writeNull();
+            return;
+        }
+        // Открытые узлы и номер следующего ребёнка каждого
+        NonTerminalNode[] nodes = new NonTerminalNode[64];
+        int[] next = new int[64];
+        int depth = 0;
+        startNode(root.getName(), generator);
+        nodes[depth++] = root;
+        while (depth != 0) {
+            NonTerminalNode node = nodes[depth - 1];
+            if (next[depth - 1] == node.size()) {
+                endNode(node.getQtyProductions(), node.getValue(), node.getType(), generator);
+                nodes[--depth] = null;
+                continue;
+            }
+            Node child = node.child(next[depth - 1]++);
+            if (child instanceof NonTerminalNode nonTerminal) {
+                if (depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth * 2);
+                    next = Arrays.copyOf(next, depth * 2);
+                }
+                startNode(nonTerminal.getName(), generator);
+                nodes[depth] = nonTerminal;
+                next[depth] = 0;
+                depth++;
+            } else if (child instanceof TokenNode tokenNode) {
+                Token token = tokenNode.token;
+                writeToken(token.type(), token.name(), token.line(), token.column(), generator);
+            } else {
+                generator.writeNull();
+            }
+        }
+    }
+
+    public static void write(FlatAst ast, JsonGenerator generator) throws IOException {
+        if (ast.root() == FlatAst.NONE) {
+            generator.writeNull();
+            return;
+        }
+        ast.walk(new FlatAst.Visitor() {
+            @Override
+            public boolean enter(FlatAst ast, int node) {
+                try {
+                    if (ast.isToken(node)) {
+                        int index = ast.token(node);
+                        writeToken(ast.tokenType(node), ast.tokenText(node), ast.tokens().line(index),
+                                ast.tokens().column(index), generator);
+                    } else {
+                        startNode(ast.kind(node).getName(), generator);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return true;
+            }
+
+            @Override
+            public void leave(FlatAst ast, int node) {
+                if (ast.isToken(node)) return;
+                try {
+                    endNode(ast.childCount(node), null, null, generator);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    private static void startNode(String name, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("name", name);
+        generator.writeArrayFieldStart("children");
+    }
+
+    private static void endNode(int qtyProductions, String value, TokenType type, JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeNumberField("qtyProductions", qtyProductions);
+        generator.writeStringField("value", value);
+        generator.writeStringField("type", type == null ? null : type.name());
+        generator.writeEndObject();
+    }
+
+    private static void writeToken(TokenType type, String name, int line, int column, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("token");
+        generator.writeStringField("type", type == null ? null : type.name());
+        generator.writeStringField("name", name);
+        generator.writeNumberField("line", line);
+        generator.writeNumberField("column", column);
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,59 @@
+package ru.krizhanovskiy.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Нормализация дерева разбора перед семантическим анализом: цепочки списков грамматики
+ * заменяются одним узлом со всеми элементами в детях
+ * <pre>
+ * program      [method, method-optional[method, ...]]           -> program    [method, method, ...]
+ * statements   [statement, statements-optional[statement, ...]] -> statements [statement, statement, ...]
+ * parameters   [parameter, parameter-optional[",", parameter, ...]] -> parameters [parameter, parameter, ...]
+ * argument-list [expression, argument-list-optional[",", argument-list]] -> argument-list [expression, expression, ...]
+ * </pre>
+ * Разделители "," отбрасываются, пустой список - узел без детей. Узлы *-optional после нормализации в дереве не встречаются.
+ * Повторная нормализация дерево не меняет.
+ */
+public final class AstNormalizer {
+    private AstNormalizer() {
+    }
+
+    public static void normalize(NonTerminalNode root) {
+        AstWalker.walk(root, node -> {
+            NodeKind link = link(node.getKind());
+            if (link != null) flatten(node, link);
+            return true;
+        });
+    }
+
+    // Вид звеньев цепочки списка; null - узел не список
+    private static NodeKind link(NodeKind kind) {
+        return switch (kind) {
+            case PROGRAM -> NodeKind.METHOD_OPTIONAL;
+            case STATEMENTS -> NodeKind.STATEMENTS_OPTIONAL;
+            case PARAMETERS -> NodeKind.PARAMETER_OPTIONAL;
+            case ARGUMENT_LIST -> NodeKind.ARGUMENT_LIST_OPTIONAL;
+            default -> null;
+        };
+    }
+
+    private static void flatten(NonTerminalNode list, NodeKind link) {
+        List<Node> items = new ArrayList<>();
+        NonTerminalNode current = list;
+        while (current != null) {
+            NonTerminalNode next = null;
+            for (int i = 0; i < current.size(); i++) {
+                Node child = current.child(i);
+                if (child instanceof NonTerminalNode node && (node.getKind() == link || node.getKind() == list.getKind())) {
+                    next = node; // следующее звено
+                } else if (child instanceof NonTerminalNode) {
+                    items.add(child);
+                } // токены - разделители
+            }
+            current = next;
+        }
+        if (items.size() == list.size() && list.getChildren().equals(items)) return; // уже плоский
+        list.setChildren(items.toArray(new Node[0]));
+    }
+}
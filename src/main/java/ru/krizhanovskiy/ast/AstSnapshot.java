@@ -0,0 +1,316 @@
+package ru.krizhanovskiy.ast;
+
+import ru.krizhanovskiy.lexer.token.Token;
+import ru.krizhanovskiy.lexer.token.TokenType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AST в двоичном виде - для сохранения разобранной программы и быстрой загрузки без повторного разбора.
+ * Все числа - varint (7 бит на байт, старший бит - продолжение).
+ * <pre>
+ * MAGIC, VERSION
+ * виды узлов      N, имена NodeKind      - по ним номера видов сопоставляются при чтении
+ * типы токенов    N, имена TokenType
+ * строки          N, (длина в байтах, UTF-8)...
+ * токены          N, (тип+1, строка+1, строка, столбец, символ+1)...
+ * узлы            длина в байтах, узлы в прямом порядке:
+ *                 0 - null, 1 - лист (номер токена),
+ *                 вид+2 - нетерминал (qtyProductions, число детей, value строка+1, type тип+1), затем дети
+ * </pre>
+ * Читается без рефлексии и без рекурсии, у нетерминалов восстанавливается prev.
+ */
+public class AstSnapshot {
+    private static final int MAGIC = 0x41535442; // ASTB
+    private static final int VERSION = 1;
+
+    private static final int NULL = 0;
+    private static final int TOKEN = 1;
+    private static final int NON_TERMINAL = 2; // + номер вида
+
+    private static final NodeKind[] kindValues = NodeKind.values();
+    private static final TokenType[] typeValues = TokenType.values();
+
+    private AstSnapshot() {
+    }
+
+    /* ------------------- Запись ------------------- */
+    public static void write(NonTerminalNode root, DataOutputStream out) throws IOException {
+        Writer writer = new Writer();
+        writer.writeTree(root);
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        writeVarint(out, kindValues.length);
+        for (NodeKind kind : kindValues) out.writeUTF(kind.name());
+        writeVarint(out, typeValues.length);
+        for (TokenType type : typeValues) out.writeUTF(type.name());
+
+        writeVarint(out, writer.strings.size());
+        for (String string : writer.strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        }
+        writeVarint(out, writer.tokens.size());
+        for (Token token : writer.tokens) {
+            writeVarint(out, token.type() == null ? 0 : token.type().ordinal() + 1);
+            writeVarint(out, token.name() == null ? 0 : writer.string(token.name()) + 1);
+            writeVarint(out, token.line());
+            writeVarint(out, token.column());
+            writeVarint(out, token.symbol() + 1);
+        }
+        writeVarint(out, writer.size);
+        out.write(writer.nodes, 0, writer.size);
+    }
+
+    // Узлы пишутся в буфер, попутно собираются строки и токены - в файле они идут перед узлами
+    private static class Writer {
+        final List<String> strings = new ArrayList<>();
+        final Map<String, Integer> stringIds = new HashMap<>();
+        final List<Token> tokens = new ArrayList<>();
+        final Map<Token, Integer> tokenIds = new IdentityHashMap<>();
+        byte[] nodes = new byte[1024];
+        int size = 0;
+
+        void writeTree(NonTerminalNode root) {
+            if (root == null) {
+                varint(NULL);
+                return;
+            }
+            // Открытые узлы и номер следующего ребёнка каждого
+            NonTerminalNode[] stack = new NonTerminalNode[64];
+            int[] next = new int[64];
+            int depth = 0;
+            writeNonTerminal(root);
+            stack[depth++] = root;
+            while (depth != 0) {
+                NonTerminalNode node = stack[depth - 1];
+                if (next[depth - 1] == node.size()) {
+                    stack[--depth] = null;
+                    continue;
+                }
+                Node child = node.child(next[depth - 1]++);
+                if (child instanceof NonTerminalNode nonTerminal) {
+                    writeNonTerminal(nonTerminal);
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                        next = Arrays.copyOf(next, depth * 2);
+                    }
+                    stack[depth] = nonTerminal;
+                    next[depth] = 0;
+                    depth++;
+                } else if (child instanceof TokenNode tokenNode) {
+                    varint(TOKEN);
+                    varint(token(tokenNode.token));
+                } else {
+                    varint(NULL);
+                }
+            }
+        }
+
+        void writeNonTerminal(NonTerminalNode node) {
+            varint(NON_TERMINAL + node.getKind().ordinal());
+            varint(node.getQtyProductions());
+            varint(node.size());
+            varint(node.getValue() == null ? 0 : string(node.getValue()) + 1);
+            varint(node.getType() == null ? 0 : node.getType().ordinal() + 1);
+        }
+
+        int string(String string) {
+            Integer id = stringIds.get(string);
+            if (id != null) return id;
+            stringIds.put(string, strings.size());
+            strings.add(string);
+            return strings.size() - 1;
+        }
+
+        int token(Token token) {
+            Integer id = tokenIds.get(token);
+            if (id != null) return id;
+            tokenIds.put(token, tokens.size());
+            tokens.add(token);
+            if (token.name() != null) string(token.name());
+            return tokens.size() - 1;
+        }
+
+        void varint(int value) {
+            if (size + 5 > nodes.length) nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            while ((value & ~0x7F) != 0) {
+                nodes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            nodes[size++] = (byte) value;
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    /* ------------------------------------------------------ */
+
+    /* ------------------- Чтение ------------------- */
+    public static NonTerminalNode read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readUnsignedShort() != VERSION) throw new IOException("Unsupported AST snapshot");
+
+        // Номера в файле -> константы текущей версии компилятора
+        NodeKind[] kinds = new NodeKind[readCount(in)];
+        for (int i = 0; i < kinds.length; i++) {
+            String name = in.readUTF();
+            kinds[i] = Arrays.stream(kindValues).filter(kind -> kind.name().equals(name)).findFirst()
+                    .orElseThrow(() -> new IOException("Unknown node kind in AST snapshot: " + name));
+        }
+        TokenType[] types = new TokenType[readCount(in)];
+        for (int i = 0; i < types.length; i++) {
+            String name = in.readUTF();
+            types[i] = Arrays.stream(typeValues).filter(type -> type.name().equals(name)).findFirst()
+                    .orElseThrow(() -> new IOException("Unknown token type in AST snapshot: " + name));
+        }
+
+        String[] strings = new String[readCount(in)];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readCount(in)];
+            in.readFully(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        Token[] tokens = new Token[readCount(in)];
+        for (int i = 0; i < tokens.length; i++) {
+            int type = readVarint(in);
+            int name = readVarint(in);
+            int line = readVarint(in);
+            int column = readVarint(in);
+            int symbol = readVarint(in) - 1;
+            // Token сам добавляет 1 к столбцу
+            tokens[i] = new Token(type == 0 ? null : types[index(type - 1, types.length)],
+                    name == 0 ? null : strings[index(name - 1, strings.length)], line, column - 1, symbol);
+        }
+
+        byte[] nodes = new byte[readCount(in)];
+        in.readFully(nodes);
+        return new Reader(nodes, kinds, types, strings, tokens).readTree();
+    }
+
+    // Узлы из буфера: номер текущего байта - pos
+    private static class Reader {
+        final byte[] nodes;
+        final NodeKind[] kinds;
+        final TokenType[] types;
+        final String[] strings;
+        final Token[] tokens;
+        int pos = 0;
+        int childCount; // число детей последнего прочитанного нетерминала
+
+        Reader(byte[] nodes, NodeKind[] kinds, TokenType[] types, String[] strings, Token[] tokens) {
+            this.nodes = nodes;
+            this.kinds = kinds;
+            this.types = types;
+            this.strings = strings;
+            this.tokens = tokens;
+        }
+
+        NonTerminalNode readTree() throws IOException {
+            int tag = varint();
+            if (tag == NULL) return null;
+            if (tag == TOKEN) throw new IOException("AST snapshot root is a token");
+
+            // Открытые узлы и сколько детей им ещё прочитать
+            NonTerminalNode[] stack = new NonTerminalNode[64];
+            int[] remaining = new int[64];
+            int depth = 0;
+            NonTerminalNode root = readNonTerminal(tag, null);
+            stack[depth] = root;
+            remaining[depth++] = childCount;
+            while (depth != 0) {
+                if (remaining[depth - 1] == 0) {
+                    stack[--depth] = null;
+                    continue;
+                }
+                remaining[depth - 1]--;
+                NonTerminalNode parent = stack[depth - 1];
+                tag = varint();
+                if (tag == NULL) {
+                    parent.add(null);
+                } else if (tag == TOKEN) {
+                    parent.add(new TokenNode(tokens[index(varint(), tokens.length)]));
+                } else {
+                    NonTerminalNode node = readNonTerminal(tag, parent);
+                    parent.add(node);
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                        remaining = Arrays.copyOf(remaining, depth * 2);
+                    }
+                    stack[depth] = node;
+                    remaining[depth++] = childCount;
+                }
+            }
+            if (pos != nodes.length) throw new IOException("Corrupted AST snapshot");
+            return root;
+        }
+
+        NonTerminalNode readNonTerminal(int tag, NonTerminalNode prev) throws IOException {
+            int kind = index(tag - NON_TERMINAL, kinds.length);
+            int qtyProductions = varint();
+            childCount = varint();
+            // На каждого ребёнка в буфере хотя бы один байт
+            if (childCount < 0 || childCount > qtyProductions || childCount > nodes.length - pos) {
+                throw new IOException("Corrupted AST snapshot");
+            }
+            NonTerminalNode node = new NonTerminalNode(kinds[kind], prev, qtyProductions);
+            int value = varint();
+            int type = varint();
+            if (value != 0 || type != 0) {
+                node.setValueAndType(value == 0 ? null : strings[index(value - 1, strings.length)],
+                        type == 0 ? null : types[index(type - 1, types.length)]);
+            }
+            return node;
+        }
+
+        int varint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (pos == nodes.length) throw new IOException("Unexpected end of AST snapshot");
+                byte b = nodes[pos++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            throw new IOException("Corrupted AST snapshot");
+        }
+    }
+
+    // Длина таблицы или буфера: отрицательная - повреждённый файл
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = readVarint(in);
+        if (count < 0) throw new IOException("Corrupted AST snapshot");
+        return count;
+    }
+
+    // Номер в таблице из файла; вне таблицы - IOException, а не ArrayIndexOutOfBoundsException
+    private static int index(int value, int length) throws IOException {
+        if (value < 0 || value >= length) throw new IOException("Corrupted AST snapshot");
+        return value;
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Corrupted AST snapshot");
+    }
+    /* ------------------------------------------------------ */
+}
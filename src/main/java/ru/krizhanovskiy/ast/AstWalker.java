@@ -0,0 +1,63 @@
+package ru.krizhanovskiy.ast;
+
+import java.util.Arrays;
+
+/**
+ * Обход дерева из NonTerminalNode без рекурсии: глубина дерева (вложенные блоки, длинные выражения,
+ * цепочки *-optional до нормализации) не ограничена стеком потока.
+ */
+public final class AstWalker {
+    private AstWalker() {
+    }
+
+    /**
+     * Обход в прямом порядке с явным стеком. {@link Visitor#leave} вызывается для каждого узла,
+     * для которого был вызван {@link Visitor#enter}, после всех его детей
+     */
+    public static void walk(NonTerminalNode root, Visitor visitor) {
+        // Открытые узлы и номер следующего ребёнка каждого
+        NonTerminalNode[] stack = new NonTerminalNode[64];
+        int[] next = new int[64];
+        int depth = 0;
+        if (!visitor.enter(root)) {
+            visitor.leave(root);
+            return;
+        }
+        stack[depth++] = root;
+        while (depth != 0) {
+            NonTerminalNode node = stack[depth - 1];
+            if (next[depth - 1] == node.size()) {
+                stack[--depth] = null;
+                visitor.leave(node);
+                continue;
+            }
+            Node child = node.child(next[depth - 1]++);
+            if (child instanceof NonTerminalNode nonTerminal) {
+                if (!visitor.enter(nonTerminal)) {
+                    visitor.leave(nonTerminal);
+                    continue;
+                }
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                    next = Arrays.copyOf(next, depth * 2);
+                }
+                stack[depth] = nonTerminal;
+                next[depth] = 0;
+                depth++;
+            } else if (child instanceof TokenNode token) {
+                visitor.token(token);
+            }
+        }
+    }
+
+    public interface Visitor {
+        /**
+         * @return false - не заходить в детей узла
+         */
+        boolean enter(NonTerminalNode node);
+
+        default void leave(NonTerminalNode node) {}
+
+        default void token(TokenNode token) {}
+    }
+}
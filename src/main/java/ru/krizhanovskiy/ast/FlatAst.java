@@ -0,0 +1,293 @@
+package ru.krizhanovskiy.ast;
+
+import ru.krizhanovskiy.lexer.token.TokenBuffer;
+import ru.krizhanovskiy.lexer.token.TokenType;
+
+import java.util.Arrays;
+
+/**
+ * AST в одном буфере: вместо объекта на узел - параллельные массивы, узел - номер в них.
+ * Для узла хранятся вид (ordinal {@link NodeKind}, у листа-токена {@link #TOKEN}), первый ребёнок,
+ * следующий брат, родитель и номер токена в {@link TokenBuffer}. Пустая (E) альтернатива - узел без детей.
+ * <p>
+ * Обход - {@link Cursor} или {@link #walk(Visitor)}; благодаря ссылкам на родителя обоим не нужен ни стек, ни рекурсия.
+ * <p>
+ * В режиме Main --flat-ast дерево только читают FlatSemanticAnalyzer и Translator, поэтому оптимизации
+ * SemanticAnalyzer, которые меняют дерево из NonTerminalNode, в этом режиме не выполняются.
+ */
+public class FlatAst {
+    public static final int NONE = -1;
+    public static final int TOKEN = -1; // вид листа-токена
+    private static final NodeKind[] kindValues = NodeKind.values();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final TokenBuffer tokens;
+    private int[] kinds;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] parent;
+    private int[] token;
+    private int size = 0;
+    private int root = NONE;
+
+    public FlatAst(TokenBuffer tokens) {
+        this.tokens = tokens;
+        // Узлов в дереве разбора примерно столько же, сколько токенов
+        int capacity = Math.max(INITIAL_CAPACITY, tokens.size() + tokens.size() / 2);
+        kinds = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        parent = new int[capacity];
+        token = new int[capacity];
+    }
+
+    /* ------------------- Построение ------------------- */
+    /**
+     * Узел нетерминала без детей
+     */
+    public int addNode(NodeKind kind) {
+        return append(kind.ordinal(), NONE);
+    }
+
+    /**
+     * Лист с токеном tokens[index]
+     */
+    public int addToken(int index) {
+        return append(TOKEN, index);
+    }
+
+    /**
+     * Добавить child последним ребёнком node
+     */
+    public void addChild(int node, int child) {
+        parent[child] = node;
+        nextSibling[child] = NONE;
+        int last = firstChild[node];
+        if (last == NONE) {
+            firstChild[node] = child;
+            return;
+        }
+        while (nextSibling[last] != NONE) last = nextSibling[last];
+        nextSibling[last] = child;
+    }
+
+    public void setRoot(int root) {
+        this.root = root;
+    }
+
+    private int append(int kind, int tokenIndex) {
+        if (size == kinds.length) grow();
+        kinds[size] = kind;
+        firstChild[size] = NONE;
+        nextSibling[size] = NONE;
+        parent[size] = NONE;
+        token[size] = tokenIndex;
+        return size++;
+    }
+
+    private void grow() {
+        int capacity = kinds.length + kinds.length / 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        token = Arrays.copyOf(token, capacity);
+    }
+    /* ------------------------------------------------------ */
+
+    public TokenBuffer tokens() {
+        return tokens;
+    }
+
+    public int root() {
+        return root;
+    }
+
+    // Число узлов
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Вид узла нетерминала; у листа-токена - null
+     */
+    public NodeKind kind(int node) {
+        return kinds[node] == TOKEN ? null : kindValues[kinds[node]];
+    }
+
+    public boolean isToken(int node) {
+        return kinds[node] == TOKEN;
+    }
+
+    // Пустая (E) альтернатива
+    public boolean isEpsilon(int node) {
+        return kinds[node] != TOKEN && firstChild[node] == NONE && kinds[node] != NodeKind.ERROR.ordinal();
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    /**
+     * Ребёнок с номером index или NONE
+     */
+    public int child(int node, int index) {
+        int child = firstChild[node];
+        for (int i = 0; i < index && child != NONE; i++) child = nextSibling[child];
+        return child;
+    }
+
+    public int childCount(int node) {
+        int count = 0;
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) count++;
+        return count;
+    }
+
+    /**
+     * Первый элемент списка (program, statements, parameters, argument-list) или NONE.
+     * FlatAst не нормализуется (см. AstNormalizer): элементы лежат в цепочке звеньев *-optional
+     */
+    public int listFirst(int list) {
+        return listItem(firstChild[list]);
+    }
+
+    /**
+     * Элемент списка за item или NONE
+     */
+    public int listNext(int item) {
+        return listItem(nextSibling[item]);
+    }
+
+    // Первый элемент среди node и его следующих братьев: разделители "," пропускаются, звенья раскрываются
+    private int listItem(int node) {
+        while (node != NONE) {
+            if (kinds[node] == TOKEN) node = nextSibling[node];
+            else if (isListLink(kinds[node])) node = firstChild[node];
+            else return node;
+        }
+        return NONE;
+    }
+
+    private static boolean isListLink(int kind) {
+        return kind == NodeKind.METHOD_OPTIONAL.ordinal() || kind == NodeKind.STATEMENTS_OPTIONAL.ordinal()
+                || kind == NodeKind.PARAMETER_OPTIONAL.ordinal() || kind == NodeKind.ARGUMENT_LIST_OPTIONAL.ordinal()
+                || kind == NodeKind.ARGUMENT_LIST.ordinal(); // argument-list-optional [",", argument-list]
+    }
+
+    /**
+     * Номер токена листа в TokenBuffer; у нетерминала - NONE
+     */
+    public int token(int node) {
+        return token[node];
+    }
+
+    public TokenType tokenType(int node) {
+        return tokens.type(token[node]);
+    }
+
+    public String tokenText(int node) {
+        return tokens.text(token[node]);
+    }
+
+    /**
+     * Обход в прямом порядке без рекурсии. Если {@link Visitor#enter} вернул false, дети узла пропускаются
+     */
+    public void walk(Visitor visitor) {
+        if (root == NONE) return;
+        int node = root;
+        while (true) {
+            if (visitor.enter(this, node) && firstChild[node] != NONE) {
+                node = firstChild[node];
+                continue;
+            }
+            visitor.leave(this, node);
+            while (node != root && nextSibling[node] == NONE) {
+                node = parent[node];
+                visitor.leave(this, node);
+            }
+            if (node == root) return;
+            node = nextSibling[node];
+        }
+    }
+
+    public interface Visitor {
+        /**
+         * @return false - не заходить в детей узла
+         */
+        boolean enter(FlatAst ast, int node);
+
+        default void leave(FlatAst ast, int node) {}
+    }
+
+    public Cursor cursor() {
+        return new Cursor(this, root);
+    }
+
+    /**
+     * Указатель на узел, который переходит по дереву. Один объект на весь обход
+     */
+    public static class Cursor {
+        private final FlatAst ast;
+        private int node;
+
+        private Cursor(FlatAst ast, int node) {
+            this.ast = ast;
+            this.node = node;
+        }
+
+        public int node() {
+            return node;
+        }
+
+        public void moveTo(int node) {
+            this.node = node;
+        }
+
+        public NodeKind kind() {
+            return ast.kind(node);
+        }
+
+        public boolean isToken() {
+            return ast.isToken(node);
+        }
+
+        public boolean isEpsilon() {
+            return ast.isEpsilon(node);
+        }
+
+        public int token() {
+            return ast.token(node);
+        }
+
+        // Переходы; false - перехода нет, курсор остаётся на месте
+        public boolean toFirstChild() {
+            return move(ast.firstChild(node));
+        }
+
+        public boolean toNextSibling() {
+            return move(ast.nextSibling(node));
+        }
+
+        public boolean toParent() {
+            return move(ast.parent(node));
+        }
+
+        public boolean toChild(int index) {
+            return move(ast.child(node, index));
+        }
+
+        private boolean move(int target) {
+            if (target == NONE) return false;
+            node = target;
+            return true;
+        }
+    }
+}
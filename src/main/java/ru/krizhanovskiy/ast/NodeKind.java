@@ -0,0 +1,81 @@
+package ru.krizhanovskiy.ast;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public enum NodeKind {
+    /**
+     *  Вид узла AST - нетерминал грамматики (grammar.csv), который попадает в дерево.
+     *  - при добавлении правила в грамматику добавь константу с именем нетерминала
+     *  - правила *-expression / *-tail не нужны: выражения строит ExpressionParser узлами binary / unary / primary
+     */
+
+    // --- Program ---
+    PROGRAM("program"),
+    METHOD_OPTIONAL("method-optional"),
+    METHOD("method"),
+    PARAMETERS("parameters"),
+    PARAMETER_OPTIONAL("parameter-optional"),
+    PARAMETER("parameter"),
+    RETURN_TYPE("return-type"),
+    TYPE("type"),
+
+    // --- Statements ---
+    STATEMENTS("statements"),
+    STATEMENTS_OPTIONAL("statements-optional"),
+    STATEMENT("statement"),
+    ASSIGNMENT_OR_FUNCTION_CALL("assignment-or-function-call"),
+    CONTINUE_ASSIGNMENT_OR_FUNCTION_CALL("continue-assignment-or-function-call"),
+    DECLARATION("declaration"),
+    DECLARATION_AND_ASSIGMENT("declaration-and-assigment"),
+    OPTIONAL_ASSIGNMENT("optional-assignment"),
+    RETURN_STATEMENT("return-statement"),
+    RETURN_EXPRESSION_OR_VOID("return-expression-or-void"),
+    IF_STATEMENT("if-statement"),
+    ELSE_OPTIONAL("else-optional"),
+    WHILE_LOOP("while-loop"),
+    FOR_LOOP("for-loop"),
+    ASSIGNMENT("assignment"),
+
+    // --- Expressions ---
+    EXPRESSION("expression"),
+    BINARY_EXPRESSION("binary-expression"),
+    UNARY_EXPRESSION("unary-expression"),
+    PRIMARY_EXPRESSION("primary-expression"),
+    IDENTIFIER_OR_FUNCTION_CALL("identifier-or-function-call"),
+    IDENTIFIER_END_OR_FUNCTION_CALL("identifier-end-or-function-call"),
+    ARGUMENTS("arguments"),
+    ARGUMENT_LIST("argument-list"),
+    ARGUMENT_LIST_OPTIONAL("argument-list-optional"),
+    BOOLEAN_LITERAL("boolean-literal"),
+    NUMBER("number"),
+
+    // Пустой узел на месте пропущенного из-за синтаксической ошибки символа
+    ERROR("error"),
+    ;
+
+    private static final Map<String, NodeKind> BY_NAME = new HashMap<>();
+    static {
+        for (NodeKind kind : values()) BY_NAME.put(kind.name, kind);
+    }
+
+    private final String name;
+
+    NodeKind(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Имя нетерминала в грамматике
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Вид узла по имени нетерминала или null, если такой нетерминал в AST не попадает
+     */
+    public static NodeKind of(String name) {
+        return BY_NAME.get(name);
+    }
+}
@@ -1,42 +1,111 @@
 package ru.krizhanovskiy.ast;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import ru.krizhanovskiy.lexer.token.Token;
 import ru.krizhanovskiy.lexer.token.TokenType;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * Узел нетерминала. Вид узла - {@link NodeKind}, дети лежат в массиве фиксированной длины
+ * (длина правой части альтернативы). Пустая (E) альтернатива - узел без детей, см. {@link #isEpsilon()}.
+ */
 //@JsonIdentityInfo(generator = ObjectIdGenerators.IntSequenceGenerator.class, property = "@id")
+@JsonPropertyOrder({"name", "children", "qtyProductions", "value", "type"})
 public class NonTerminalNode extends Node {
-    public String name;
-    List<Node> children = new ArrayList<>();
-    @JsonIgnore
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    NodeKind kind;
+    Node[] children;
+    int size; // заполненные слоты children
     NonTerminalNode prev;
-    int qtyProductions;
 
     String value;
     TokenType type;
 
-
-    public NonTerminalNode(String name) {
-        this.name = name;
+    /**
+     * Узел, дети которого добавляются по одному через {@link #add(Node)}
+     * @param qtyProductions число детей
+     */
+    public NonTerminalNode(NodeKind kind, NonTerminalNode prev, int qtyProductions) {
+        this.kind = kind;
+        this.prev = prev;
+        this.children = qtyProductions == 0 ? NO_CHILDREN : new Node[qtyProductions];
     }
 
-    public NonTerminalNode(String name, NonTerminalNode prev, int qtyProductions) {
-        this.name = name;
+    /**
+     * Готовый узел с детьми; у детей-нетерминалов prev - этот узел. Без детей - пустая альтернатива
+     */
+    public NonTerminalNode(NodeKind kind, NonTerminalNode prev, Node... children) {
+        this.kind = kind;
         this.prev = prev;
-        this.qtyProductions = qtyProductions;
+        setChildren(children);
+    }
+
+    @JsonIgnore
+    public NodeKind getKind() {
+        return kind;
+    }
+    public void setKind(NodeKind kind) {
+        this.kind = kind;
+    }
+    // Имя нетерминала - для JSON
+    public String getName() {
+        return kind.getName();
     }
 
-    public void setChildren(List<Node> children) {
-        this.children = children;
+    public Node child(int index) {
+        return children[index];
+    }
+    public NonTerminalNode node(int index) {
+        return (NonTerminalNode) children[index];
+    }
+    // Токен ребёнка-листа
+    public Token token(int index) {
+        return ((TokenNode) children[index]).token;
+    }
+    public int size() {
+        return size;
+    }
+
+    public void add(Node child) {
+        children[size++] = child;
+    }
+    public void set(int index, Node child) {
+        children[index] = child;
+    }
+    /**
+     * Замена всех детей; у детей-нетерминалов prev - этот узел
+     */
+    public void setChildren(Node... children) {
+        this.children = children.length == 0 ? NO_CHILDREN : children;
+        this.size = children.length;
+        for (Node child : children) {
+            if (child instanceof NonTerminalNode node) node.prev = this;
+        }
     }
     public List<Node> getChildren() {
-        return children;
+        return Collections.unmodifiableList(Arrays.asList(children).subList(0, size));
     }
+
+    // Все слоты заполнены
+    @JsonIgnore
+    public boolean isComplete() {
+        return size == children.length;
+    }
+    // Пустая (E) альтернатива
+    @JsonIgnore
+    public boolean isEpsilon() {
+        return children.length == 0 && kind != NodeKind.ERROR;
+    }
+
     public int getQtyProductions() {
-        return qtyProductions;
+        return children.length;
     }
+    @JsonIgnore
     public NonTerminalNode getPrev() {
         return prev;
     }
@@ -56,4 +125,4 @@ public class NonTerminalNode extends Node {
         this.value = value;
         this.type = type;
     }
-}
\ No newline at end of file
+}
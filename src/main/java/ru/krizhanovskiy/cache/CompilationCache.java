@@ -0,0 +1,322 @@
+package ru.krizhanovskiy.cache;
+
+import ru.krizhanovskiy.ast.AstSnapshot;
+import ru.krizhanovskiy.ast.AstWalker;
+import ru.krizhanovskiy.ast.NonTerminalNode;
+import ru.krizhanovskiy.ast.TokenNode;
+import ru.krizhanovskiy.diagnostics.Diagnostic;
+import ru.krizhanovskiy.diagnostics.DiagnosticCode;
+import ru.krizhanovskiy.lexer.token.SymbolTable;
+import ru.krizhanovskiy.lexer.token.Token;
+import ru.krizhanovskiy.lexer.token.TokenType;
+import ru.krizhanovskiy.semantic_analyzer.AnalyzedMethod;
+import ru.krizhanovskiy.semantic_analyzer.Method;
+import ru.krizhanovskiy.semantic_analyzer.SemanticAnalyzer;
+import ru.krizhanovskiy.semantic_analyzer.Variable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Кэш сборки на диске. Ключ метода - хэш его токенов и сигнатур методов, которые он вызывает:
+ * метод с тем же ключом не анализируется и не транслируется заново, дерево после анализа и сообщения
+ * берутся из кэша, а байт-код - из Main.class прошлой сборки. Изменение сигнатуры метода меняет ключи
+ * всех методов, которые его вызывают.
+ * <pre>
+ * Main.class   - класс прошлой сборки
+ * methods.bin  - MAGIC, VERSION, N, записи методов:
+ *                ключ, первая строка метода, вызовы (N, сигнатуры),
+ *                сообщения (N, код, строка, столбец, аргументы), дерево после анализа (AstSnapshot)
+ * </pre>
+ * Строки токенов в ключе отсчитываются от первой строки метода, поэтому метод, сдвинутый правкой выше него,
+ * берётся из кэша: строки в дереве и сообщениях сдвигаются на новое место.
+ * Записывается только после успешной сборки.
+ */
+public class CompilationCache implements SemanticAnalyzer.Cache {
+    private static final int MAGIC = 0x43414348; // CACH
+    private static final int VERSION = 1;
+
+    private static final String CLASS_FILE = "Main.class";
+    private static final String INDEX_FILE = "methods.bin";
+
+    private final Path dir;
+    private final SymbolTable symbols;
+    private final Map<String, Entry> previous; // записи прошлой сборки по ключу
+    private final byte[] previousClass;
+
+    // Ключи методов этой сборки и записи, взятые из кэша, - по узлу метода
+    private final Map<NonTerminalNode, Key> keys = new IdentityHashMap<>();
+    private final Map<NonTerminalNode, Entry> reused = new IdentityHashMap<>();
+
+    // Сигнатуры методов этой сборки: по имени (в порядке methods) и метод по сигнатуре
+    private List<Method> indexedMethods = null;
+    private final Map<String, List<String>> signaturesByName = new HashMap<>();
+    private final Map<String, Method> methodsBySignature = new HashMap<>();
+
+    private record Key(String hash, int line) {}
+
+    // Строки в diagnostics и в tree - от первой строки метода line
+    private record Entry(String key, int line, List<String> calls, List<Diagnostic> diagnostics, byte[] tree) {}
+
+    private CompilationCache(Path dir, SymbolTable symbols, Map<String, Entry> previous, byte[] previousClass) {
+        this.dir = dir;
+        this.symbols = symbols;
+        this.previous = previous;
+        this.previousClass = previousClass;
+    }
+
+    /**
+     * @param symbols таблица символов этой сборки - по ней перенумеровываются символы токенов из кэша
+     */
+    public static CompilationCache load(Path dir, SymbolTable symbols) {
+        Path index = dir.resolve(INDEX_FILE);
+        Path classFile = dir.resolve(CLASS_FILE);
+        if (!Files.exists(index) || !Files.exists(classFile)) return new CompilationCache(dir, symbols, Map.of(), null);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (in.readInt() != MAGIC || in.readUnsignedShort() != VERSION) throw new IOException("Unsupported cache");
+            Map<String, Entry> entries = new HashMap<>();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = readEntry(in);
+                entries.put(entry.key, entry);
+            }
+            return new CompilationCache(dir, symbols, entries, Files.readAllBytes(classFile));
+        } catch (IOException | IllegalArgumentException e) {
+            // Кэш другой версии или повреждён - сборка с нуля, после неё кэш перезапишется
+            return new CompilationCache(dir, symbols, Map.of(), null);
+        }
+    }
+
+    @Override
+    public AnalyzedMethod find(NonTerminalNode method, List<Method> methods) {
+        if (indexedMethods != methods) index(methods);
+        Key key = key(method);
+        keys.put(method, key);
+        Entry entry = previous.get(key.hash);
+        if (entry == null || previousClass == null) return null;
+
+        List<Method> calls = new ArrayList<>();
+        for (String signature : entry.calls) {
+            Method call = methodsBySignature.get(signature);
+            if (call == null) return null;
+            calls.add(call);
+        }
+        NonTerminalNode node;
+        try {
+            node = AstSnapshot.read(new DataInputStream(new ByteArrayInputStream(entry.tree)));
+        } catch (IOException e) {
+            return null;
+        }
+        int lineDelta = key.line - entry.line;
+        AstWalker.walk(node, new AstWalker.Visitor() {
+            @Override
+            public boolean enter(NonTerminalNode node) {
+                return true;
+            }
+
+            @Override
+            public void token(TokenNode tokenNode) {
+                Token token = tokenNode.token;
+                int symbol = token.symbol() == SymbolTable.NO_SYMBOL ? SymbolTable.NO_SYMBOL : symbols.intern(token.name());
+                // Token сам добавляет 1 к столбцу
+                tokenNode.token = new Token(token.type(), token.name(), shift(token.line(), lineDelta), token.column() - 1, symbol);
+            }
+        });
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        for (Diagnostic diagnostic : entry.diagnostics) {
+            diagnostics.add(new Diagnostic(diagnostic.code(), shift(diagnostic.line(), lineDelta), diagnostic.column(), diagnostic.args()));
+        }
+        keys.put(node, key);
+        reused.put(node, entry);
+        return new AnalyzedMethod(node, calls, diagnostics);
+    }
+
+    private void index(List<Method> methods) {
+        indexedMethods = methods;
+        signaturesByName.clear();
+        methodsBySignature.clear();
+        for (Method method : methods) {
+            String signature = signature(method);
+            signaturesByName.computeIfAbsent(method.name(), name -> new ArrayList<>()).add(signature);
+            methodsBySignature.putIfAbsent(signature, method);
+        }
+    }
+
+    // Строка 0 - место неизвестно, отрицательные - у узлов, добавленных анализатором
+    private static int shift(int line, int delta) {
+        return line > 0 ? line + delta : line;
+    }
+
+    /**
+     * Узлы методов, взятых из кэша, - их байт-код копируется из {@link #previousClass()}
+     */
+    public Set<NonTerminalNode> reusedMethods() {
+        return Collections.unmodifiableSet(reused.keySet());
+    }
+
+    public byte[] previousClass() {
+        return previousClass;
+    }
+
+    /**
+     * Записать кэш успешной сборки
+     * @param methods итоги анализа методов, вошедших в класс
+     * @param classFile содержимое Main.class
+     */
+    public void save(List<AnalyzedMethod> methods, byte[] classFile) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (AnalyzedMethod method : methods) {
+            Entry entry = reused.get(method.node());
+            if (entry == null) {
+                Key key = keys.get(method.node());
+                List<String> calls = method.calls().stream().map(CompilationCache::signature).toList();
+                ByteArrayOutputStream tree = new ByteArrayOutputStream();
+                AstSnapshot.write(method.node(), new DataOutputStream(tree));
+                entry = new Entry(key.hash, key.line, calls, method.diagnostics(), tree.toByteArray());
+            }
+            entries.add(entry);
+        }
+
+        Files.createDirectories(dir);
+        // Без индекса кэш пуст: если запись прервётся, старые записи не попадут к новому Main.class
+        Files.deleteIfExists(dir.resolve(INDEX_FILE));
+        Files.write(dir.resolve(CLASS_FILE), classFile);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dir.resolve(INDEX_FILE))))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) writeEntry(entry, out);
+        }
+    }
+
+    /* ------------------- Ключ ------------------- */
+    private Key key(NonTerminalNode method) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest)));
+        Set<String> called = new HashSet<>();
+        int[] firstLine = {-1};
+        AstWalker.walk(method, new AstWalker.Visitor() {
+            private Token last = null;
+
+            @Override
+            public boolean enter(NonTerminalNode node) {
+                return true;
+            }
+
+            @Override
+            public void token(TokenNode tokenNode) {
+                Token token = tokenNode.token;
+                if (firstLine[0] == -1) firstLine[0] = token.line();
+                try {
+                    out.writeByte(token.type().ordinal());
+                    out.writeInt(token.name().length());
+                    out.writeChars(token.name()); // writeUTF ограничен 64 КБ, строковый литерал может быть длиннее
+                    out.writeInt(token.line() - firstLine[0]);
+                    out.writeInt(token.column());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                // имя ( - вызов метода
+                if (token.type() == TokenType.OPEN_BRACKET && last != null && last.type() == TokenType.IDENTIFIER) {
+                    called.add(last.name());
+                }
+                last = token;
+            }
+        });
+        try {
+            // Все перегрузки вызываемых методов, в порядке methods - от них зависит выбор перегрузки
+            for (String name : called.stream().sorted().toList()) {
+                for (String signature : signaturesByName.getOrDefault(name, List.of())) out.writeUTF(signature);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Key(HexFormat.of().formatHex(digest.digest()), firstLine[0]);
+    }
+
+    // int foo(float, boolean) -> NUMBER foo(FLOAT_NUMBER,BOOLEAN)
+    private static String signature(Method method) {
+        StringBuilder signature = new StringBuilder();
+        signature.append(method.returnType()).append(' ').append(method.name()).append('(');
+        List<Variable> parameters = method.parameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) signature.append(',');
+            signature.append(parameters.get(i).getType());
+        }
+        return signature.append(')').toString();
+    }
+    /* ------------------------------------------------------ */
+
+    /* ------------------- Записи ------------------- */
+    private static void writeEntry(Entry entry, DataOutputStream out) throws IOException {
+        out.writeUTF(entry.key);
+        out.writeInt(entry.line);
+        out.writeInt(entry.calls.size());
+        for (String call : entry.calls) out.writeUTF(call);
+        out.writeInt(entry.diagnostics.size());
+        for (Diagnostic diagnostic : entry.diagnostics) {
+            out.writeUTF(diagnostic.code().name());
+            out.writeInt(diagnostic.line());
+            out.writeInt(diagnostic.column());
+            out.writeInt(diagnostic.args().length);
+            // Аргументы сообщений анализатора - строки (%s в шаблоне)
+            for (Object arg : diagnostic.args()) out.writeUTF(String.valueOf(arg));
+        }
+        out.writeInt(entry.tree.length);
+        out.write(entry.tree);
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        String key = in.readUTF();
+        int line = in.readInt();
+        List<String> calls = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) calls.add(in.readUTF());
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            DiagnosticCode code = DiagnosticCode.valueOf(in.readUTF());
+            int diagnosticLine = in.readInt();
+            int column = in.readInt();
+            Object[] args = new Object[readLength(in)];
+            for (int j = 0; j < args.length; j++) args[j] = in.readUTF();
+            diagnostics.add(new Diagnostic(code, diagnosticLine, column, args));
+        }
+        byte[] tree = new byte[readLength(in)];
+        in.readFully(tree);
+        return new Entry(key, line, calls, diagnostics, tree);
+    }
+
+    // Отрицательная длина - повреждённый файл, а не NegativeArraySizeException
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) throw new IOException("Corrupted cache");
+        return length;
+    }
+    /* ------------------------------------------------------ */
+}
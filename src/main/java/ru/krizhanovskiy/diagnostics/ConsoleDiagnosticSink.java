@@ -0,0 +1,45 @@
+package ru.krizhanovskiy.diagnostics;
+
+import java.io.PrintStream;
+
+/**
+ * Ошибки - в System.err, предупреждения - жёлтым цветом в System.out.
+ * Текст собирается в буферы и печатается одним вызовом на поток при flush.
+ */
+public class ConsoleDiagnosticSink implements DiagnosticSink {
+    private static final String yellowColorCode = "\u001B[33m";
+    private static final String resetColorCode = "\u001B[0m";
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final StringBuilder outBuffer = new StringBuilder();
+    private final StringBuilder errBuffer = new StringBuilder();
+
+    public ConsoleDiagnosticSink() {
+        this(System.out, System.err);
+    }
+
+    public ConsoleDiagnosticSink(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    @Override
+    public void report(Diagnostic diagnostic) {
+        if (diagnostic.severity() == Severity.WARNING) {
+            outBuffer.append(yellowColorCode).append(diagnostic.message()).append(resetColorCode).append('\n');
+        } else {
+            errBuffer.append(diagnostic.message()).append('\n');
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (!errBuffer.isEmpty()) err.print(errBuffer);
+        if (!outBuffer.isEmpty()) out.print(outBuffer);
+        err.flush();
+        out.flush();
+        errBuffer.setLength(0);
+        outBuffer.setLength(0);
+    }
+}
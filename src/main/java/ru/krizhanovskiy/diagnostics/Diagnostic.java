@@ -0,0 +1,20 @@
+package ru.krizhanovskiy.diagnostics;
+
+/**
+ * Одно сообщение. Текст не хранится, а собирается по шаблону кода только при выводе.
+ * Строка и столбец равны 0, если место в исходном коде неизвестно.
+ */
+public record Diagnostic(DiagnosticCode code, int line, int column, Object... args) {
+
+    public Severity severity() {
+        return code.getSeverity();
+    }
+
+    public String message() {
+        Object[] formatArgs = new Object[args.length + 2];
+        formatArgs[0] = line;
+        formatArgs[1] = column;
+        System.arraycopy(args, 0, formatArgs, 2, args.length);
+        return String.format(code.getTemplate(), formatArgs);
+    }
+}
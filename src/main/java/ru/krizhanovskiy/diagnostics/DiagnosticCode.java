@@ -0,0 +1,66 @@
+package ru.krizhanovskiy.diagnostics;
+
+/**
+ * Все сообщения компилятора. Шаблон - строка формата, в которую при выводе подставляются
+ * %1$d - строка, %2$d - столбец, дальше (%3$ и т.д.) - аргументы конкретного сообщения.
+ */
+public enum DiagnosticCode {
+    // --- Lexer ---
+    UNTERMINATED_STRING("Unterminated string literal at line %1$d, column %2$d."),
+    UNKNOWN_CHARACTER("Error: Unknown character `%3$c` at line %1$d, column %2$d"),
+    EXTRA_DOT("Error: Invalid numeric literal '.' (extra dot) at line %1$d, column %2$d"),
+    MISSING_SEPARATOR("Error: Invalid numeric literal at line %1$d, column %2$d. Expected separator before `%3$c`"),
+
+    // --- Parser ---
+    STRING_ARGUMENT("Syntax error: the string must be the only argument to the function. Line: %1$d, column: %2$d"),
+    UNEXPECTED_TOKEN("Syntax Error in token: %3$s"),
+    UNEXPECTED_TOKEN_EXPECTED("Syntax Error in token: %3$s, expected: %4$s"),
+    MISSING_SEMICOLON("Syntax error: missing semicolon in line %1$d"),
+    TOO_MANY_ERRORS("Too many syntax errors (%3$d), parsing stopped at line %1$d."),
+
+    // --- Semantic analyzer ---
+    MISSING_RETURN("Method \"%3$s\" does not return a value on all execution paths."),
+    MAIN_NOT_FOUND("Main method not detected"),
+    DUPLICATE_METHOD("Method \"%3$s\" has already been analyzed."),
+    METHOD_NOT_FOUND("Method \"%3$s\" not found"),
+    ARGUMENT_COUNT_MISMATCH("No method found with given number of arguments."),
+    DUPLICATE_VARIABLE("The variable \"%3$s\" has already been declared. Error in line: %1$d."),
+    UNDECLARED_VARIABLE("The variable \"%3$s\" not declared. Error in line: %1$d."),
+    UNDEFINED_VALUE("The variable \"%3$s\" has no defined value. Error in line: %1$d."),
+    DECLARATION_TYPE_MISMATCH("The expression type does not match the variable type. Expected %3$s, but got %4$s. Error in line: %1$d."),
+    ASSIGNMENT_TYPE_MISMATCH("The expression type does not match the variable type. Error in line: %1$d"),
+    RETURN_TYPE_MISMATCH("Return type does not match method return type. Error in line: %1$d"),
+    BREAK_OUTSIDE_LOOP("Break is outside the loop. Error in line: %1$d."),
+    CONTINUE_OUTSIDE_LOOP("Continue is outside the loop.. Error in line: %1$d."),
+    EXPECTED_BOOLEAN("Invalid data type. Expected boolean. Error in line: %1$d."),
+    EXPECTED_NUMBER("Invalid data type. Expected int or float. Error in line: %1$d."),
+    LOGICAL_OPERAND_TYPES("Error: Incompatible operand types for '%3$s': both operands must be boolean."),
+    EQUALITY_OPERAND_TYPES("Error: Incompatible operand types for '%3$s': found '%4$s' and '%5$s', expected matching types."),
+    ARITHMETIC_OPERAND_TYPES("Error: Incompatible operand types for '%3$s': found '%4$s' and '%5$s', expected matching types. " +
+            "(FLOAT and FLOAT) or (INT and INT)"),
+    INT_OVERFLOW("Error: Integer value exceeds the 32-bit storage limit (-2,147,483,648 to 2,147,483,647)."),
+    FLOAT_OVERFLOW("Error: Float value exceeds the 32-bit storage limit (approximately ±3.4e38)."),
+    ALWAYS_TRUE(Severity.WARNING, "Warning! Expression is always true."),
+    ALWAYS_FALSE(Severity.WARNING, "Warning! Expression is always false."),
+    ;
+
+    private final Severity severity;
+    private final String template;
+
+    DiagnosticCode(String template) {
+        this(Severity.ERROR, template);
+    }
+
+    DiagnosticCode(Severity severity, String template) {
+        this.severity = severity;
+        this.template = template;
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+}
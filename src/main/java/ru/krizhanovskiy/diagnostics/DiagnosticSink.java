@@ -0,0 +1,13 @@
+package ru.krizhanovskiy.diagnostics;
+
+/**
+ * Куда выводятся сообщения: консоль, JSON или память.
+ */
+public interface DiagnosticSink {
+    void report(Diagnostic diagnostic);
+
+    /**
+     * Вызывается после передачи очередной порции сообщений, например в конце этапа компиляции
+     */
+    default void flush() {}
+}
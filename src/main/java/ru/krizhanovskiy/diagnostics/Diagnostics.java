@@ -0,0 +1,44 @@
+package ru.krizhanovskiy.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Сборщик сообщений одной компиляции. Лексер, парсер и семантический анализатор только добавляют
+ * сообщения в список, а выводятся они все разом в {@link DiagnosticSink} в конце работы.
+ */
+public class Diagnostics {
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private boolean errors = false;
+
+    public void report(DiagnosticCode code, int line, int column, Object... args) {
+        report(new Diagnostic(code, line, column, args));
+    }
+
+    public void report(Diagnostic diagnostic) {
+        diagnostics.add(diagnostic);
+        if (diagnostic.severity() == Severity.ERROR) errors = true;
+    }
+
+    public void addAll(Diagnostics other) {
+        other.diagnostics.forEach(this::report);
+    }
+
+    public boolean hasErrors() {
+        return errors;
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+    /**
+     * Передать накопленные сообщения в sink по порядку и очистить список
+     */
+    public void flush(DiagnosticSink sink) {
+        diagnostics.forEach(sink::report);
+        sink.flush();
+        diagnostics.clear();
+    }
+}
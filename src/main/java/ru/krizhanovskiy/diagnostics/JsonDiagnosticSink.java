@@ -0,0 +1,57 @@
+package ru.krizhanovskiy.diagnostics;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Сообщения в формате JSON Lines - по одному объекту в строке:
+ * {"severity":"ERROR","code":"UNKNOWN_CHARACTER","line":1,"column":5,"message":"...","args":["#"]}
+ */
+public class JsonDiagnosticSink implements DiagnosticSink {
+    private final OutputStream output;
+    private final JsonGenerator generator;
+
+    public JsonDiagnosticSink(OutputStream output) {
+        this.output = output;
+        try {
+            generator = new JsonFactory().setRootValueSeparator(null).createGenerator(output, JsonEncoding.UTF8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @Override
+    public void report(Diagnostic diagnostic) {
+        try {
+            generator.writeStartObject();
+            generator.writeStringField("severity", diagnostic.severity().name());
+            generator.writeStringField("code", diagnostic.code().name());
+            generator.writeNumberField("line", diagnostic.line());
+            generator.writeNumberField("column", diagnostic.column());
+            generator.writeStringField("message", diagnostic.message());
+            generator.writeArrayFieldStart("args");
+            for (Object arg : diagnostic.args()) generator.writeString(String.valueOf(arg));
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            generator.flush();
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
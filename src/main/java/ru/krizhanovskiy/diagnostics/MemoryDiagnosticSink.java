@@ -0,0 +1,20 @@
+package ru.krizhanovskiy.diagnostics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сообщения остаются в памяти - для проверок и встраивания компилятора в другие программы.
+ */
+public class MemoryDiagnosticSink implements DiagnosticSink {
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+    @Override
+    public void report(Diagnostic diagnostic) {
+        diagnostics.add(diagnostic);
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+}
@@ -0,0 +1,6 @@
+package ru.krizhanovskiy.diagnostics;
+
+public enum Severity {
+    ERROR,
+    WARNING
+}
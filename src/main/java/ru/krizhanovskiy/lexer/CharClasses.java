@@ -0,0 +1,40 @@
+package ru.krizhanovskiy.lexer;
+
+/**
+ * Таблица классов ASCII символов, общая для лексера и построения автомата.
+ * Каждому символу соответствует набор битов, проверка - одно обращение к массиву.
+ * Символы вне ASCII не относятся ни к одному классу.
+ */
+final class CharClasses {
+    private static final byte LETTER = 1;      // начало идентификатора: буква или _
+    private static final byte DIGIT = 1 << 1;
+    private static final byte SEPARATOR = 1 << 2; // может стоять сразу после идентификатора, ключевого слова или числа
+
+    private static final byte[] classes = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) classes[c] |= LETTER;
+        for (char c = 'A'; c <= 'Z'; c++) classes[c] |= LETTER;
+        classes['_'] |= LETTER;
+        for (char c = '0'; c <= '9'; c++) classes[c] |= DIGIT;
+        for (char c : " (){};,-+*/=<>&|!".toCharArray()) classes[c] |= SEPARATOR;
+    }
+
+    private CharClasses() {}
+
+    static boolean isLetter(char c) {
+        return c < 128 && (classes[c] & LETTER) != 0;
+    }
+
+    static boolean isDigit(char c) {
+        return c < 128 && (classes[c] & DIGIT) != 0;
+    }
+
+    static boolean isIdentifierPart(char c) {
+        return c < 128 && (classes[c] & (LETTER | DIGIT)) != 0;
+    }
+
+    static boolean isSeparator(char c) {
+        return c < 128 && (classes[c] & SEPARATOR) != 0;
+    }
+}
@@ -0,0 +1,153 @@
+package ru.krizhanovskiy.lexer;
+
+import ru.krizhanovskiy.diagnostics.Diagnostics;
+import ru.krizhanovskiy.lexer.token.TokenBuffer;
+
+import java.nio.CharBuffer;
+
+/**
+ * Повторный разбор после правки текста. Токены до правки берутся из прошлого разбора как есть,
+ * разбор начинается с последнего токена, который закончился раньше правки,
+ * и идёт до тех пор, пока новый токен за правкой не совпадёт со старым токеном, сдвинутым на длину правки.
+ * Заново разобранные токены вставляются в прошлый поток на место старых, а остаток получает сдвиг
+ * смещений, строк и столбцов без копирования (см. {@link TokenBuffer#replace}).
+ * <p>
+ * Сообщения об ошибках выводятся только для заново разобранного участка, а флаг error учитывает
+ * и ошибки нетронутых участков. Поэтому поток для relex должен быть получен от этого же объекта -
+ * через {@link #lex} или прошлый relex.
+ * Изменённый участок потока токенов доступен через {@link #getChange()} - по нему IncrementalParser
+ * находит методы, которые нужно разобрать заново.
+ */
+public class IncrementalLexer {
+    public boolean error = false;
+
+    private final Diagnostics diagnostics;
+    private TokenChange change;
+
+    private TokenBuffer tokens; // поток последнего разбора
+    private int[] errorOffsets = new int[0]; // смещения ошибок в тексте последнего разбора
+
+    public IncrementalLexer(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Полный разбор, после которого возможен {@link #relex}
+     */
+    public TokenBuffer lex(CharSequence source) {
+        tokens = new TokenBuffer();
+        Lexer lexer = new Lexer(tokens, diagnostics);
+        lexer.analise(CharBuffer.wrap(source));
+        errorOffsets = lexer.errorOffsets();
+        error = lexer.error;
+        change = new TokenChange(0, 0, tokens.size(), 0);
+        return tokens;
+    }
+
+    /**
+     * @param previous токены текста до правки; после вызова в нём лежат токены нового текста
+     * @param source   текст после правки
+     * @return тот же буфер previous
+     */
+    public TokenBuffer relex(TokenBuffer previous, CharSequence source, TextEdit edit) {
+        if (previous != tokens) throw new IllegalArgumentException("Поток токенов получен не от этого IncrementalLexer");
+
+        // Последний токен, закончившийся строго до правки: символ сразу за ним не изменился,
+        // а дальше одного символа лексер не смотрит. Сам этот токен разбирается заново - после него
+        // лексер мог пропустить ошибочный символ, и состояние на его конце не начальное.
+        // Концы токенов возрастают - двоичный поиск
+        int low = 0;
+        int high = previous.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (previous.offset(middle) + previous.length(middle) < edit.offset()) low = middle + 1;
+            else high = middle;
+        }
+        int last = low - 1;
+
+        int restart = 0;
+        int line = 0;
+        int column = 1;
+        int kept = 0;
+        int keptEnd = 0; // ошибки прошлого разбора до этого смещения остаются
+        if (last >= 0) {
+            restart = previous.offset(last);
+            line = previous.line(last) - 1; // лексер увеличит номер строки в начале первой строки
+            column = previous.column(last);
+            kept = last;
+            // Ошибка ровно на restart - нет разделителя после нетронутого токена, заново её не найти.
+            // Ошибку ровно на месте совпадения заново разобранный участок находит сам
+            keptEnd = restart + 1;
+        }
+
+        int editEnd = edit.offset() + edit.insertedText().length();
+        int delta = edit.delta();
+        int[] resync = {-1, kept}; // индекс в новом разборе и индекс старого токена, с которого совпадают потоки
+
+        TokenBuffer relexed = new TokenBuffer(previous.symbols());
+        Lexer lexer = new Lexer(relexed, diagnostics);
+        lexer.start(line, restart, false, column);
+        lexer.stopWhen(index -> {
+            int offset = relexed.offset(index);
+            if (offset < editEnd) return false;
+            int old = resync[1];
+            while (old < previous.size() && previous.offset(old) < offset - delta) old++;
+            resync[1] = old;
+            if (old == previous.size() || previous.offset(old) != offset - delta) return false;
+            if (previous.type(old) != relexed.type(index) || previous.length(old) != relexed.length(index)) return false;
+            resync[0] = index;
+            return true;
+        });
+        lexer.analise(CharBuffer.wrap(source, restart, source.length()));
+
+        if (resync[0] == -1) {
+            keepErrors(keptEnd, Integer.MAX_VALUE, 0, lexer.errorOffsets());
+            int previousSize = previous.size();
+            previous.replace(kept, previousSize, relexed, 0, relexed.size(), 0, 0, 0);
+            change = new TokenChange(kept, previousSize, previous.size(), 0);
+            return previous;
+        }
+
+        int index = resync[0];
+        int old = resync[1];
+        int lineDelta = relexed.line(index) - previous.line(old);
+        int columnDelta = relexed.column(index) - previous.column(old);
+        keepErrors(keptEnd, previous.offset(old), delta, lexer.errorOffsets());
+
+        // Совпадающий остаток - с места совпадения, а при сдвиге столбцов - со следующей строки;
+        // строки в нём сдвинуты на lineDelta
+        int previousSize = previous.size();
+        int unchanged = old;
+        if (columnDelta != 0) {
+            while (unchanged < previousSize && previous.line(unchanged) == previous.line(old)) unchanged++;
+        }
+        previous.replace(kept, old, relexed, 0, index, delta, lineDelta, columnDelta);
+        change = new TokenChange(kept, unchanged, unchanged + previous.size() - previousSize, lineDelta);
+        return previous;
+    }
+
+    /**
+     * Изменённый участок потока токенов после последнего {@link #relex}
+     */
+    public TokenChange getChange() {
+        return change;
+    }
+
+    /*
+      Ошибки прошлого разбора до keptEnd остаются на месте, после resync - сдвигаются на delta,
+      между ними - заменяются ошибками заново разобранного участка
+     */
+    private void keepErrors(int keptEnd, int resync, int delta, int[] relexed) {
+        int before = 0;
+        while (before < errorOffsets.length && errorOffsets[before] < keptEnd) before++;
+        int after = before;
+        while (after < errorOffsets.length && errorOffsets[after] <= resync) after++;
+
+        int[] offsets = new int[before + relexed.length + errorOffsets.length - after];
+        System.arraycopy(errorOffsets, 0, offsets, 0, before);
+        System.arraycopy(relexed, 0, offsets, before, relexed.length);
+        for (int i = after; i < errorOffsets.length; i++) offsets[before + relexed.length + i - after] = errorOffsets[i] + delta;
+        errorOffsets = offsets;
+        error = offsets.length > 0;
+    }
+}
@@ -1,44 +1,212 @@
 package ru.krizhanovskiy.lexer;
 
-import ru.krizhanovskiy.lexer.token.Token;
+import ru.krizhanovskiy.diagnostics.DiagnosticCode;
+import ru.krizhanovskiy.diagnostics.Diagnostics;
+import ru.krizhanovskiy.lexer.token.TokenBuffer;
 import ru.krizhanovskiy.lexer.token.TokenType;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import java.util.function.Function;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 public class Lexer {
     public boolean error = false;
 
-    private final List<Token> tokens;
+    private static final TokenAutomaton automaton = TokenAutomaton.build();
+
+    private final TokenBuffer tokens;
+    private final Diagnostics diagnostics;
 
     private int pos = 0;
     private int line = 0;
 
-    private String string;
+    private static final int BUFFER_SIZE = 8192;
+
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int limit = 0;
+    private int lineStart = 0;
+    private int sourceOffset = 0; // смещение buffer[0] от начала исходного текста
 
     private boolean multilineComment = false;
 
-    public Lexer(List<Token> tokens) {
+    private int firstColumn = 1; // столбец первого символа, если разбор начат с середины строки
+    private StopCondition stopCondition = null;
+    private boolean stopped = false;
+
+    // Смещения в исходном тексте символов, на которых найдены ошибки, по возрастанию
+    private int[] errorOffsets = new int[4];
+    private int errorCount = 0;
+
+    public Lexer(TokenBuffer tokens, Diagnostics diagnostics) {
         this.tokens = tokens;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Начать разбор не с начала файла: номер строки перед первой строкой фрагмента,
+     * смещение фрагмента в исходном тексте и открыт ли в этом месте многострочный комментарий.
+     */
+    void start(int line, int sourceOffset, boolean multilineComment) {
+        start(line, sourceOffset, multilineComment, 1);
+    }
+
+    void start(int line, int sourceOffset, boolean multilineComment, int firstColumn) {
+        this.line = line;
+        this.sourceOffset = sourceOffset;
+        this.multilineComment = multilineComment;
+        this.firstColumn = firstColumn;
+    }
+
+    interface StopCondition {
+        boolean stop(int tokenIndex);
+    }
+
+    /**
+     * Проверка после каждого найденного токена: если условие выполнено, разбор останавливается
+     */
+    void stopWhen(StopCondition stopCondition) {
+        this.stopCondition = stopCondition;
+    }
+
+    boolean inMultilineComment() {
+        return multilineComment;
+    }
+
+    int[] errorOffsets() {
+        return Arrays.copyOf(errorOffsets, errorCount);
     }
 
     public void analiseLine(String input) {
+        if (input == null) {
+            line++;
+            return;
+        }
+        if (buffer.length < input.length()) buffer = new char[Math.max(input.length(), buffer.length * 2)];
+        input.getChars(0, input.length(), buffer, 0);
+        analiseLine(0, input.length());
+        sourceOffset += input.length() + 1;
+    }
+
+    /**
+     * Читает весь поток блоками в собственный буфер и разбирает строки прямо в нём,
+     * без создания строки на каждую строку файла. Строки разделяются так же, как в BufferedReader.readLine():
+     * \n, \r или \r\n.
+     */
+    public void analise(Reader reader) throws IOException {
+        analise((Source) reader::read);
+    }
+
+    public void analise(CharBuffer input) {
+        try {
+            analise((buffer, offset, length) -> {
+                if (!input.hasRemaining()) return -1;
+                int count = Math.min(length, input.remaining());
+                input.get(buffer, offset, count);
+                return count;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // CharBuffer не бросает IOException
+        }
+    }
+
+    /**
+     * Разбор UTF-8 байтов, например файла, отображённого в память через FileChannel.map.
+     * ASCII символы копируются в буфер лексера напрямую, декодер используется только для остальных.
+     */
+    public void analise(ByteBuffer input) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try {
+            analise((buffer, offset, length) -> {
+                if (!input.hasRemaining()) return -1;
+                int count = 0;
+                int position = input.position();
+                int end = input.limit();
+                while (count < length && position < end) {
+                    byte b = input.get(position);
+                    if (b < 0) break;
+                    buffer[offset + count++] = (char) b;
+                    position++;
+                }
+                input.position(position);
+                if (count == 0) {
+                    // Все байты уже в памяти, поэтому входные данные всегда "последние"
+                    CharBuffer output = CharBuffer.wrap(buffer, offset, length);
+                    decoder.decode(input, output, true);
+                    count = output.position() - offset;
+                }
+                return count;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteBuffer не бросает IOException
+        }
+    }
+
+    private interface Source {
+        int read(char[] buffer, int offset, int length) throws IOException;
+    }
+
+    private void analise(Source source) throws IOException {
+        int filled = 0;
+        int lineBegin = 0; // начало ещё не законченной строки
+        boolean skipLineFeed = false;
+        int read;
+        while (!stopped && (read = source.read(buffer, filled, buffer.length - filled)) != -1) {
+            int i = filled;
+            filled += read;
+            for (; i < filled && !stopped; i++) {
+                char c = buffer[i];
+                if (c == '\n' && skipLineFeed) { // вторая половина \r\n
+                    skipLineFeed = false;
+                    lineBegin = i + 1;
+                    continue;
+                }
+                skipLineFeed = false;
+                if (c == '\n' || c == '\r') {
+                    analiseLine(lineBegin, i);
+                    lineBegin = i + 1;
+                    skipLineFeed = c == '\r';
+                }
+            }
+
+            // Незаконченную строку переносим в начало буфера, а если она занимает почти весь буфер - расширяем его
+            // (место нужно хотя бы для суррогатной пары)
+            if (lineBegin > 0) {
+                System.arraycopy(buffer, lineBegin, buffer, 0, filled - lineBegin);
+                filled -= lineBegin;
+                sourceOffset += lineBegin;
+                lineBegin = 0;
+            }
+            if (buffer.length - filled < 2) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        if (!stopped && lineBegin < filled) analiseLine(lineBegin, filled);
+    }
+
+    private void analiseLine(int start, int end) {
         line++;
-        if (input == null || input.isEmpty()) return;
+        int shift = firstColumn - 1;
+        firstColumn = 1;
+        if (start == end) return;
 
-        pos = 0;
-        string = input;
+        pos = start;
+        limit = end;
+        lineStart = start - shift;
 
-        while (pos < string.length()) {
-            if (string.charAt(pos) == ' ') {
+        while (pos < limit && !stopped) {
+            if (buffer[pos] == ' ') {
                 pos++;
                 continue;
             }
 
-            char ch = string.charAt(pos);
-
             if (multilineComment) {
                 if (!findMultilineCommentEnd()) return; // Строка кончилась и не найден конец комментария
                 else continue;
@@ -47,28 +215,23 @@ public class Lexer {
             if (findComment()) return; // пропускаем однострочные комментарии
             if (findMultilineComment()) { multilineComment = true;  continue; }
 
-            if (find(findPunctuation, TokenType.MAX_LENGTH_PUNCTUATION, TokenType.CHECK_FURTHER_PUNCTUATION)) continue;
-            if (find(findOperation, TokenType.MAX_LENGTH_OPERATION, TokenType.CHECK_FURTHER_OPERATION)) continue;
-            if (find(findKeyword, TokenType.MAX_LENGTH_KEYWORD, TokenType.CHECK_FURTHER_KEYWORD)) continue;
-            if (findNumber()) continue;
-            if (findString()) continue;
-            findIdentify();
+            findToken();
         }
     }
 
     private boolean findComment() {
-        return string.charAt(pos) == '/' && string.length() - pos > 1 && string.charAt(pos + 1) == '/';
+        return buffer[pos] == '/' && limit - pos > 1 && buffer[pos + 1] == '/';
     }
     private boolean findMultilineComment() {
-        if (string.charAt(pos) == '/' && string.length() - pos > 1 && string.charAt(pos + 1) == '*') {
+        if (buffer[pos] == '/' && limit - pos > 1 && buffer[pos + 1] == '*') {
             pos+=2;
             return true;
         }
         return false;
     }
     private boolean findMultilineCommentEnd() {
-        while (pos < string.length()) {
-            if (string.charAt(pos) == '*' && string.length() - pos > 1 && string.charAt(pos + 1) == '/') {
+        while (pos < limit) {
+            if (buffer[pos] == '*' && limit - pos > 1 && buffer[pos + 1] == '/') {
                 pos+=2;
                 multilineComment = false;
                 return true;
@@ -78,170 +241,112 @@ public class Lexer {
         return false;
     }
 
-    private boolean find(Function<String, TokenType> function, int maxLength, boolean checkFurther) {
-        TokenType currentTokenType = null;
-        int currentStringLength = 0;
-        String currentString = null;
-        maxLength = Math.min(maxLength, string.length() - pos);
-
-        for (int i = 1; i <= maxLength; i++) {
-            String str = string.substring(pos, pos + i);
-            TokenType type = function.apply(str);
-            if (type != null) {
-                currentTokenType = type;
-                currentStringLength = i;
-                currentString = str;
-                if (!checkFurther) break;
+    /*
+      Один проход автомата с выбором самой длинной лексемы: if1 - это идентификатор, а не IF и 1,
+      == - одна операция, а не два =
+     */
+    private void findToken() {
+        int state = TokenAutomaton.START;
+        int current = pos;
+        int end = -1;
+        TokenType type = null;
+        while (current < limit) {
+            state = automaton.next(state, buffer[current]);
+            if (state == TokenAutomaton.DEAD) break;
+            current++;
+            TokenType accept = automaton.accept(state);
+            if (accept != null) {
+                type = accept;
+                end = current;
             }
         }
 
-        if (currentTokenType == null) return false;
+        if (type == null) {
+            markError(pos);
+            if (buffer[pos] == '"') {
+                diagnostics.report(DiagnosticCode.UNTERMINATED_STRING, line, limit - lineStart + 1);
+                pos = limit;
+            } else {
+                // Ошибка неизвестный символ
+                diagnostics.report(DiagnosticCode.UNKNOWN_CHARACTER, line, pos - lineStart + 1, buffer[pos]);
+                pos++;
+            }
+            return;
+        }
 
-        /*
-          В ситуации if1 - надётся токен IF, но это идентификатор, поэтому проверяем сдедующий символ
-         */
-        if (function.getClass() == FindKeyword.class) {
-            if (!(pos + currentStringLength == string.length()
-                    || ignoreCharacter.contains(string.charAt(pos + currentStringLength )))) return false;
+        addToken(type, pos, end);
+        pos = end;
+        if (stopCondition != null && stopCondition.stop(tokens.size() - 1)) {
+            stopped = true;
+            return;
         }
 
-        tokens.add(new Token(currentTokenType, currentString, line, pos));
-        pos += currentStringLength;
-        return true;
+        if (needSeparator(type)) checkSeparator(type);
     }
 
-    private static final Function<String, TokenType> findPunctuation = new FindPunctuation();
-    static class FindPunctuation implements Function<String, TokenType> {
-        @Override
-        public TokenType apply(String string) {
-            return TokenType.getPunctuation(string);
+    private void addToken(TokenType type, int start, int end) {
+        int offset = sourceOffset + start;
+        int column = start - lineStart + 1;
+        if (type.getLexeme() != null) {
+            tokens.add(type, offset, end - start, line, column);
+            return;
         }
-    }
-    private static final Function<String, TokenType> findKeyword = new FindKeyword();
-    static class FindKeyword implements Function<String, TokenType> {
-        @Override
-        public TokenType apply(String string) {
-            return TokenType.getKeyword(string);
+        if (type != TokenType.STRING) {
+            tokens.add(type, buffer, start, end, offset, end - start, line, column);
+            return;
         }
-    }
-    private static final Function<String, TokenType> findOperation = new FindOperation();
-    static class FindOperation implements Function<String, TokenType> {
-        @Override
-        public TokenType apply(String string) {
-            return TokenType.getOperation(string);
-        }
-    }
 
-    private final Set<Character> ignoreCharacter = new HashSet<>(List.of(' ', '(', ')', '{', '}', ';', ',',
-            '-', '+', '*', '/', '=', '<', '>', '&', '|', '!'));
-
-    private boolean findNumber() {
-        int currentPos = pos;
-        StringBuilder numberBuilder = new StringBuilder(); // Собираем число
-        boolean isFloat = false;
-        while (currentPos < string.length()) {
-            char currentChar = string.charAt(currentPos);
-            if (currentChar >= '0' && currentChar <= '9') { // is digit
-                numberBuilder.append(currentChar);
-            } else if (currentChar == '.') {
-                if (isFloat) {
-                    error = true;
-                    // Вывод ошибки о том, что должна быть одна точка
-                    System.err.printf("Error: Invalid numeric literal '.' (extra dot) at line %d, column %d\n", line, currentPos+1);
-                    break;
-                } else {
-                    isFloat = true;
-                    numberBuilder.append(currentChar);
-                }
-            } else {
-                if (numberBuilder.isEmpty()) return false;
-                if (ignoreCharacter.contains(currentChar)) break;
-
-                // Вывод ошибки о том, что должен быть разделитель
-                if (isValidCharacter(currentChar)) {
-                    error = true;
-                    System.err.printf("Error: Invalid numeric literal at line %d, column %d. Expected separator before `%c`\n", line, currentPos+1, currentChar);
-                    break;
-                }
-                error = true;
-                // Вывод ошибки неизвестный символ
-                System.err.printf("Error: Unknown character `%c` at line %d, column %d\n", currentChar, line, currentPos+1);
-                pos++;
-                break;
+        // Кавычки не входят в значение, \" заменяется на "
+        int valueStart = start + 1;
+        int valueEnd = end - 1;
+        StringBuilder stringBuilder = null;
+        for (int i = valueStart; i < valueEnd; i++) {
+            if (buffer[i] == '\\' && i + 1 < valueEnd && buffer[i + 1] == '"') {
+                if (stringBuilder == null) stringBuilder = new StringBuilder(valueEnd - valueStart);
+                stringBuilder.append(buffer, valueStart, i - valueStart);
+                valueStart = i + 1;
             }
-            currentPos++;
         }
+        if (stringBuilder == null) {
+            tokens.add(type, buffer, valueStart, valueEnd, offset, end - start, line, column);
+        } else {
+            stringBuilder.append(buffer, valueStart, valueEnd - valueStart);
+            tokens.add(type, stringBuilder, offset, end - start, line, column);
+        }
+    }
 
-        if (isFloat) tokens.add(new Token(TokenType.FLOAT_NUMBER, numberBuilder.toString(), line, pos));
-        else tokens.add(new Token(TokenType.NUMBER, numberBuilder.toString(), line, pos));
-
-        pos += numberBuilder.length();
-        return true;
+    // Идентификаторы, ключевые слова и числа
+    private boolean needSeparator(TokenType type) {
+        if (type == TokenType.STRING) return false;
+        return type.getLexeme() == null || CharClasses.isLetter(type.getLexeme().charAt(0));
     }
 
-    private boolean findIdentify() {
-        int currentPos = pos;
-        StringBuilder identifyBuilder = new StringBuilder();
-        while (currentPos < string.length()) {
-            char currentChar = string.charAt(currentPos);
-            if (identifyBuilder.isEmpty()) {
-                if (isValidCharacter(currentChar)) {
-                    identifyBuilder.append(currentChar);
-                    currentPos++;
-                    continue;
-                }
-            } else {
-                if (isValidCharacterOrNumber(currentChar)) {
-                    identifyBuilder.append(currentChar);
-                    currentPos++;
-                    continue;
-                }
-                if (ignoreCharacter.contains(currentChar)) break;
-            }
-            error = true;
-            // Ошибка неизвестный символ
-            System.err.printf("Error: Unknown character `%c` at line %d, column %d\n", currentChar, line, currentPos+1);
-            pos++;
-            break;
-        }
-        if (identifyBuilder.isEmpty()) return false;
-        tokens.add(new Token(TokenType.IDENTIFIER, identifyBuilder.toString(), line, pos));
-        pos += identifyBuilder.length();
-        return true;
-    }
-    private boolean isValidCharacter(char c) {
-        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
-    }
-    private boolean isValidCharacterOrNumber(char c) {
-        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
-    }
-
-    private boolean findString() {
-        if (string.charAt(pos) != '"') return false;
-        int currentPos = pos+1;
-        StringBuilder stringBuilder = new StringBuilder();
-        boolean end = false;
-        while (currentPos < string.length()) {
-            char currentChar = string.charAt(currentPos++);
-            if (currentChar == '"') {
-                if (string.charAt(currentPos - 2) == '\\') { // Предыдущий символ
-                    stringBuilder.deleteCharAt(stringBuilder.length()-1);
-                    stringBuilder.append(currentChar);
-                }
-                else {
-                    end = true;
-                    break;
-                }
-            }
-            else stringBuilder.append(currentChar);
-        }
-        if (!end) {
-            error = true;
-            System.err.printf("Unterminated string literal at line %d, column %d.\n", line, currentPos+1);
+    /*
+      После идентификатора, ключевого слова или числа должен идти разделитель
+     */
+    private void checkSeparator(TokenType type) {
+        if (pos == limit) return;
+        char currentChar = buffer[pos];
+        if (CharClasses.isSeparator(currentChar)) return;
+
+        markError(pos);
+        boolean number = type == TokenType.NUMBER || type == TokenType.FLOAT_NUMBER;
+        if (number && currentChar == '.') {
+            // Вывод ошибки о том, что должна быть одна точка
+            diagnostics.report(DiagnosticCode.EXTRA_DOT, line, pos - lineStart + 1);
+        } else if (number && CharClasses.isLetter(currentChar)) {
+            // Вывод ошибки о том, что должен быть разделитель
+            diagnostics.report(DiagnosticCode.MISSING_SEPARATOR, line, pos - lineStart + 1, currentChar);
         } else {
-            tokens.add(new Token(TokenType.STRING, stringBuilder.toString(), line, pos));
+            // Вывод ошибки неизвестный символ
+            diagnostics.report(DiagnosticCode.UNKNOWN_CHARACTER, line, pos - lineStart + 1, currentChar);
+            pos++;
         }
-        pos = currentPos;
-        return true;
     }
-}
\ No newline at end of file
+
+    private void markError(int position) {
+        error = true;
+        if (errorCount == errorOffsets.length) errorOffsets = Arrays.copyOf(errorOffsets, errorCount * 2);
+        errorOffsets[errorCount++] = sourceOffset + position;
+    }
+}
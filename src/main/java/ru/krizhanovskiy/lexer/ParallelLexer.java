@@ -0,0 +1,140 @@
+package ru.krizhanovskiy.lexer;
+
+import ru.krizhanovskiy.diagnostics.Diagnostics;
+import ru.krizhanovskiy.lexer.token.TokenBuffer;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Параллельный разбор большого исходного текста. Текст режется на фрагменты по границам строк
+ * (строковые литералы не переносятся на следующую строку, поэтому граница опасна только внутри
+ * многострочного комментария), фрагменты разбираются независимо на ForkJoinPool, затем токены
+ * и сообщения об ошибках склеиваются по порядку.
+ * <p>
+ * Каждый фрагмент сначала разбирается так, будто перед ним нет открытого комментария.
+ * Проход согласования идёт по фрагментам по порядку и разбирает фрагмент заново,
+ * если предыдущий на самом деле закончился внутри комментария.
+ */
+public class ParallelLexer {
+    public boolean error = false;
+
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    private final TokenBuffer tokens;
+    private final Diagnostics diagnostics;
+    private final ForkJoinPool pool;
+
+    public ParallelLexer(TokenBuffer tokens, Diagnostics diagnostics) {
+        this(tokens, diagnostics, ForkJoinPool.commonPool());
+    }
+
+    public ParallelLexer(TokenBuffer tokens, Diagnostics diagnostics, ForkJoinPool pool) {
+        this.tokens = tokens;
+        this.diagnostics = diagnostics;
+        this.pool = pool;
+    }
+
+    private static class Chunk {
+        final int start;
+        final int end;
+        int firstLine; // номер строки перед фрагментом
+        boolean startsInComment = false;
+
+        TokenBuffer tokens;
+        Diagnostics diagnostics;
+        boolean error;
+        boolean endsInComment;
+
+        Chunk(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    public void analise(CharSequence source) {
+        List<Chunk> chunks = split(source);
+
+        // Номера строк: сначала параллельно считаем переводы строк в каждом фрагменте, затем префиксные суммы
+        int[] lineBreaks = new int[chunks.size()];
+        invokeAll(chunks, i -> lineBreaks[i] = countLineBreaks(source, chunks.get(i)));
+        int line = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            chunks.get(i).firstLine = line;
+            line += lineBreaks[i];
+        }
+
+        invokeAll(chunks, i -> lex(source, chunks.get(i)));
+
+        // Согласование состояния многострочного комментария на границах
+        boolean inComment = false;
+        for (Chunk chunk : chunks) {
+            if (chunk.startsInComment != inComment) {
+                chunk.startsInComment = inComment;
+                lex(source, chunk);
+            }
+            inComment = chunk.endsInComment;
+        }
+
+        for (Chunk chunk : chunks) {
+            tokens.append(chunk.tokens);
+            diagnostics.addAll(chunk.diagnostics);
+            error |= chunk.error;
+        }
+    }
+
+    private List<Chunk> split(CharSequence source) {
+        int length = source.length();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, length / (pool.getParallelism() * 4));
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < length) {
+            int end = Math.min(length, start + chunkSize);
+            // Граница - сразу после ближайшего перевода строки (\r\n не разрываем)
+            while (end < length && source.charAt(end - 1) != '\n' && source.charAt(end - 1) != '\r') end++;
+            if (end < length && source.charAt(end - 1) == '\r' && source.charAt(end) == '\n') end++;
+            chunks.add(new Chunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static int countLineBreaks(CharSequence source, Chunk chunk) {
+        int count = 0;
+        for (int i = chunk.start; i < chunk.end; i++) {
+            char c = source.charAt(i);
+            if (c == '\n') count++;
+            else if (c == '\r') {
+                count++;
+                if (i + 1 < chunk.end && source.charAt(i + 1) == '\n') i++;
+            }
+        }
+        return count;
+    }
+
+    private static void lex(CharSequence source, Chunk chunk) {
+        chunk.tokens = new TokenBuffer();
+        chunk.diagnostics = new Diagnostics();
+        Lexer lexer = new Lexer(chunk.tokens, chunk.diagnostics);
+        lexer.start(chunk.firstLine, chunk.start, chunk.startsInComment);
+        lexer.analise(CharBuffer.wrap(source, chunk.start, chunk.end));
+        chunk.error = lexer.error;
+        chunk.endsInComment = lexer.inMultilineComment();
+    }
+
+    private interface ChunkAction {
+        void run(int index);
+    }
+
+    private void invokeAll(List<Chunk> chunks, ChunkAction action) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            int index = i;
+            tasks.add(ForkJoinTask.adapt(() -> action.run(index)));
+        }
+        pool.submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+    }
+}
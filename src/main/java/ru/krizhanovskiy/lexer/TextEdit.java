@@ -0,0 +1,11 @@
+package ru.krizhanovskiy.lexer;
+
+/**
+ * Правка текста: с позиции offset удалено removedLength символов и вставлен insertedText.
+ */
+public record TextEdit(int offset, int removedLength, String insertedText) {
+
+    public int delta() {
+        return insertedText.length() - removedLength;
+    }
+}
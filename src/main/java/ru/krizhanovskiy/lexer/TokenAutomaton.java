@@ -0,0 +1,175 @@
+package ru.krizhanovskiy.lexer;
+
+import ru.krizhanovskiy.lexer.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Детерминированный автомат лексера. Строится один раз по лексемам из {@link TokenType}:
+ * каждая лексема (ключевые слова, операции, пунктуация) превращается в цепочку состояний,
+ * а идентификаторы, числа и строки распознаются отдельными состояниями.
+ * Переходы хранятся в плоской таблице [состояние * количество классов + класс символа].
+ */
+final class TokenAutomaton {
+    static final int START = 0;
+    static final int DEAD = -1;
+
+    // Классы символов, не встречающихся в лексемах
+    private static final int CLASS_OTHER = 0;
+    private static final int CLASS_LETTER = 1;
+    private static final int CLASS_DIGIT = 2;
+    private static final int CLASS_DOT = 3;
+    private static final int CLASS_QUOTE = 4;
+    private static final int CLASS_BACKSLASH = 5;
+    private static final int FIRST_LEXEME_CLASS = 6;
+
+    private final byte[] classes = new byte[128];
+    private final int classCount;
+    private final int[] transitions;
+    private final TokenType[] accepting;
+
+    private TokenAutomaton(int classCount, int[] transitions, TokenType[] accepting, byte[] classes) {
+        this.classCount = classCount;
+        this.transitions = transitions;
+        this.accepting = accepting;
+        System.arraycopy(classes, 0, this.classes, 0, classes.length);
+    }
+
+    int next(int state, char c) {
+        int charClass = c < 128 ? classes[c] : CLASS_OTHER;
+        return transitions[state * classCount + charClass];
+    }
+
+    /**
+     * Тип токена, который распознан в состоянии, или null, если состояние не допускающее.
+     */
+    TokenType accept(int state) {
+        return accepting[state];
+    }
+
+    static TokenAutomaton build() {
+        return new Builder().build();
+    }
+
+    private static final class Builder {
+        private final byte[] classes = new byte[128];
+        private int classCount = FIRST_LEXEME_CLASS;
+        private final List<int[]> rows = new ArrayList<>();
+        private final List<TokenType> accepting = new ArrayList<>();
+        private final List<Boolean> words = new ArrayList<>();
+
+        private int identifier;
+        private int integer;
+        private int floating;
+        private int stringBody;
+        private int stringEscape;
+        private int stringEnd;
+
+        TokenAutomaton build() {
+            createClasses();
+
+            int start = newState(null, false);
+            identifier = newState(TokenType.IDENTIFIER, true);
+            integer = newState(TokenType.NUMBER, false);
+            floating = newState(TokenType.FLOAT_NUMBER, false);
+            stringBody = newState(null, false);
+            stringEscape = newState(null, false);
+            stringEnd = newState(TokenType.STRING, false);
+
+            for (TokenType type : TokenType.values()) {
+                if (type.getLexeme() != null) addLexeme(start, type);
+            }
+
+            fillIdentifierStates(start);
+            fillNumberAndStringStates(start);
+
+            int[] transitions = new int[rows.size() * classCount];
+            for (int state = 0; state < rows.size(); state++) {
+                System.arraycopy(rows.get(state), 0, transitions, state * classCount, classCount);
+            }
+            return new TokenAutomaton(classCount, transitions, accepting.toArray(new TokenType[0]), classes);
+        }
+
+        // Каждый символ, встречающийся в лексемах, получает собственный класс
+        private void createClasses() {
+            for (char c = 0; c < 128; c++) {
+                if (CharClasses.isLetter(c)) classes[c] = CLASS_LETTER;
+                else if (CharClasses.isDigit(c)) classes[c] = CLASS_DIGIT;
+            }
+            classes['.'] = CLASS_DOT;
+            classes['"'] = CLASS_QUOTE;
+            classes['\\'] = CLASS_BACKSLASH;
+
+            boolean[] used = new boolean[128];
+            for (TokenType type : TokenType.values()) {
+                String lexeme = type.getLexeme();
+                if (lexeme == null) continue;
+                for (int i = 0; i < lexeme.length(); i++) used[lexeme.charAt(i)] = true;
+            }
+            for (char c = 0; c < 128; c++) {
+                if (used[c]) classes[c] = (byte) classCount++;
+            }
+        }
+
+        private int newState(TokenType accept, boolean word) {
+            int[] row = new int[FIRST_LEXEME_CLASS + 128];
+            Arrays.fill(row, DEAD);
+            rows.add(row);
+            accepting.add(accept);
+            words.add(word);
+            return rows.size() - 1;
+        }
+
+        private void addLexeme(int start, TokenType type) {
+            String lexeme = type.getLexeme();
+            boolean word = CharClasses.isLetter(lexeme.charAt(0));
+            int state = start;
+            for (int i = 0; i < lexeme.length(); i++) {
+                int charClass = classes[lexeme.charAt(i)];
+                int next = rows.get(state)[charClass];
+                if (next == DEAD) {
+                    // Префикс ключевого слова сам по себе является идентификатором
+                    next = newState(word ? TokenType.IDENTIFIER : null, word);
+                    rows.get(state)[charClass] = next;
+                }
+                state = next;
+            }
+            accepting.set(state, type);
+        }
+
+        // Из состояний ключевых слов любой символ идентификатора без своего перехода ведёт в IDENTIFIER
+        private void fillIdentifierStates(int start) {
+            for (char c = 0; c < 128; c++) {
+                if (!CharClasses.isLetter(c)) continue;
+                int charClass = classes[c];
+                if (rows.get(start)[charClass] == DEAD) rows.get(start)[charClass] = identifier;
+            }
+            for (int state = 0; state < rows.size(); state++) {
+                if (!words.get(state)) continue;
+                for (char c = 0; c < 128; c++) {
+                    if (!CharClasses.isIdentifierPart(c)) continue;
+                    int charClass = classes[c];
+                    if (rows.get(state)[charClass] == DEAD) rows.get(state)[charClass] = identifier;
+                }
+            }
+        }
+
+        private void fillNumberAndStringStates(int start) {
+            rows.get(start)[CLASS_DIGIT] = integer;
+            rows.get(start)[CLASS_DOT] = floating;
+            rows.get(integer)[CLASS_DIGIT] = integer;
+            rows.get(integer)[CLASS_DOT] = floating;
+            rows.get(floating)[CLASS_DIGIT] = floating;
+
+            // Строка: \" не закрывает литерал, как и в прежнем лексере
+            rows.get(start)[CLASS_QUOTE] = stringBody;
+            Arrays.fill(rows.get(stringBody), 0, classCount, stringBody);
+            rows.get(stringBody)[CLASS_QUOTE] = stringEnd;
+            rows.get(stringBody)[CLASS_BACKSLASH] = stringEscape;
+            Arrays.fill(rows.get(stringEscape), 0, classCount, stringBody);
+            rows.get(stringEscape)[CLASS_BACKSLASH] = stringEscape;
+        }
+    }
+}
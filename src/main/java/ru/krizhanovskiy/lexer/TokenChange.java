@@ -0,0 +1,9 @@
+package ru.krizhanovskiy.lexer;
+
+/**
+ * Изменённый участок потока токенов после правки: токены [0, start) не изменились,
+ * previous[previousEnd, previous.size()) совпадают с tokens[end, tokens.size()) с точностью до сдвига строк
+ * на lineDelta (столбцы и смещения в строках не меняются), а previous[start, previousEnd) заменены на tokens[start, end).
+ */
+public record TokenChange(int start, int previousEnd, int end, int lineDelta) {
+}
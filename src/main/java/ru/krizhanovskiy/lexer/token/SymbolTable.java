@@ -0,0 +1,87 @@
+package ru.krizhanovskiy.lexer.token;
+
+import java.util.Arrays;
+
+/**
+ * Таблица символов: каждый различный текст идентификатора или литерала получает плотный номер 0, 1, 2...
+ * Строка создаётся один раз при первом появлении символа, дальше все токены с тем же текстом
+ * ссылаются на неё через номер, и сравнение имён сводится к сравнению чисел.
+ */
+public class SymbolTable {
+    public static final int NO_SYMBOL = -1;
+
+    private String[] names = new String[256];
+    private int[] hashes = new int[256];
+    private int size = 0;
+
+    // Открытая адресация: номер символа + 1, 0 - пустая ячейка
+    private int[] table = new int[512];
+
+    public int intern(char[] source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = 31 * hash + source[i];
+
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int symbol = table[slot] - 1;
+            if (symbol == NO_SYMBOL) return add(new String(source, start, end - start), hash, slot);
+            if (hashes[symbol] == hash && equal(names[symbol], source, start, end)) return symbol;
+        }
+    }
+
+    public int intern(CharSequence value) {
+        int hash = 0;
+        for (int i = 0; i < value.length(); i++) hash = 31 * hash + value.charAt(i);
+
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int symbol = table[slot] - 1;
+            if (symbol == NO_SYMBOL) return add(value.toString(), hash, slot);
+            if (hashes[symbol] == hash && names[symbol].contentEquals(value)) return symbol;
+        }
+    }
+
+    public String name(int symbol) {
+        return names[symbol];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int add(String name, int hash, int slot) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        names[size] = name;
+        hashes[size] = hash;
+        table[slot] = size + 1;
+        size++;
+        if (size * 2 > table.length) rehash();
+        return size - 1;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int symbol = 0; symbol < size; symbol++) {
+            int slot = mix(hashes[symbol]) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = symbol + 1;
+        }
+    }
+
+    private static boolean equal(String name, char[] source, int start, int end) {
+        if (name.length() != end - start) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != source[start + i]) return false;
+        }
+        return true;
+    }
+
+    // Старшие биты хеша тоже участвуют в выборе ячейки
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -1,14 +1,29 @@
 package ru.krizhanovskiy.lexer.token;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 public record Token(TokenType type,
                     String name,
                     int line,
-                    int column) {
+                    int column,
+                    @JsonIgnore int symbol) {
 
-    public Token(TokenType type, String name, int line, int column) {
+    public Token(TokenType type, String name, int line, int column, int symbol) {
         this.type = type;
         this.name = name;
         this.line = line;
         this.column = column + 1;
+        this.symbol = symbol;
+    }
+
+    // Токен без номера в таблице символов
+    public Token(TokenType type, String name, int line, int column) {
+        this(type, name, line, column, SymbolTable.NO_SYMBOL);
+    }
+
+    // Номер символа - служебное поле, в сообщениях об ошибках он не нужен
+    @Override
+    public String toString() {
+        return "Token[type=" + type + ", name=" + name + ", line=" + line + ", column=" + column + "]";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,275 @@
+package ru.krizhanovskiy.lexer.token;
+
+import java.util.Arrays;
+
+/**
+ * Компактный поток токенов: вместо объекта Token на каждый токен - параллельные массивы.
+ * Тип хранится байтом (ordinal), позиция в исходном тексте - смещением и длиной,
+ * строка и столбец упакованы в один long. Текст есть только у идентификаторов, чисел и строк,
+ * вместо него хранится номер в {@link SymbolTable}.
+ * <p>
+ * Массивы устроены как буфер с разрывом: токены [0, gapStart) лежат в начале, остальные - в конце массивов.
+ * Смещения и строки токенов за разрывом хранятся без сдвига tailOffset / tailLine,
+ * поэтому {@link #replace} после правки текста не трогает хвост. Обычный разбор пишет только в конец,
+ * разрыв там и остаётся.
+ */
+public class TokenBuffer {
+    private static final TokenType[] types = TokenType.values();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private long[] positions = new long[INITIAL_CAPACITY];
+    private int[] symbols = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // Разрыв - ячейки [gapStart, gapEnd); за ним лежат токены с номерами gapStart и дальше
+    private int gapStart = 0;
+    private int gapEnd = INITIAL_CAPACITY;
+    private int tailOffset = 0;
+    private int tailLine = 0;
+
+    private final SymbolTable symbolTable;
+
+    public TokenBuffer() {
+        this(new SymbolTable());
+    }
+
+    public TokenBuffer(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Токен с фиксированной лексемой (ключевое слово, операция, пунктуация)
+     */
+    public void add(TokenType type, int offset, int length, int line, int column) {
+        int index = append(type, offset, length, line, column);
+        symbols[index] = SymbolTable.NO_SYMBOL;
+    }
+
+    /**
+     * Токен с текстом source[start, end) - идентификатор, число или строка
+     */
+    public void add(TokenType type, char[] source, int start, int end, int offset, int length, int line, int column) {
+        int index = append(type, offset, length, line, column);
+        symbols[index] = symbolTable.intern(source, start, end);
+    }
+
+    /**
+     * Токен с уже собранным текстом (например, строка с экранированием)
+     */
+    public void add(TokenType type, CharSequence value, int offset, int length, int line, int column) {
+        int index = append(type, offset, length, line, column);
+        symbols[index] = symbolTable.intern(value);
+    }
+
+    /**
+     * Добавить в конец все токены другого буфера. Номера символов переводятся в эту таблицу символов,
+     * каждый символ другого буфера ищется в ней один раз.
+     */
+    public void append(TokenBuffer other) {
+        append(other, 0, other.size, 0, 0, 0);
+    }
+
+    /**
+     * Добавить токены other[from, to) со сдвигом: смещение в тексте меняется на offsetDelta, строка на lineDelta,
+     * а столбец на columnDelta - только у токенов, стоящих на одной строке с other[from]
+     * (после правки текста сдвигается лишь остаток этой строки).
+     */
+    public void append(TokenBuffer other, int from, int to, int offsetDelta, int lineDelta, int columnDelta) {
+        moveGap(size);
+        insert(other, from, to, offsetDelta, lineDelta, columnDelta);
+    }
+
+    /**
+     * Заменить токены [from, to) на source[sourceFrom, sourceTo) после правки текста. У токенов за заменой
+     * смещение меняется на offsetDelta, строка на lineDelta, а столбец на columnDelta - у тех, что стоят
+     * на одной строке с первым из них. Время работы зависит от числа вставленных токенов и расстояния
+     * от прошлой замены, но не от длины потока.
+     */
+    public void replace(int from, int to, TokenBuffer source, int sourceFrom, int sourceTo,
+                        int offsetDelta, int lineDelta, int columnDelta) {
+        moveGap(from);
+        gapEnd += to - from;
+        size -= to - from;
+        if (gapEnd < kinds.length && columnDelta != 0) {
+            // Остаток строки правки - токены хвоста до первого перевода строки
+            int line = (int) (positions[gapEnd] >>> 32);
+            for (int i = gapEnd; i < kinds.length && (int) (positions[i] >>> 32) == line; i++) {
+                positions[i] = ((long) line << 32) | (((int) positions[i] + columnDelta) & 0xFFFFFFFFL);
+            }
+        }
+        tailOffset += offsetDelta;
+        tailLine += lineDelta;
+        insert(source, sourceFrom, sourceTo, 0, 0, 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public TokenType type(int index) {
+        return types[kinds[slot(index)]];
+    }
+
+    /**
+     * Текст токена. Для токенов с фиксированной лексемой возвращается константа из TokenType,
+     * для остальных - общая строка символа из таблицы.
+     */
+    public String text(int index) {
+        int symbol = symbols[slot(index)];
+        if (symbol == SymbolTable.NO_SYMBOL) return type(index).getLexeme();
+        return symbolTable.name(symbol);
+    }
+
+    /**
+     * Номер символа в таблице или {@link SymbolTable#NO_SYMBOL} для токенов с фиксированной лексемой
+     */
+    public int symbol(int index) {
+        return symbols[slot(index)];
+    }
+
+    public SymbolTable symbols() {
+        return symbolTable;
+    }
+
+    public int line(int index) {
+        if (index < gapStart) return (int) (positions[index] >>> 32);
+        return (int) (positions[index + gapEnd - gapStart] >>> 32) + tailLine;
+    }
+
+    public int column(int index) {
+        return (int) positions[slot(index)];
+    }
+
+    public int offset(int index) {
+        if (index < gapStart) return offsets[index];
+        return offsets[index + gapEnd - gapStart] + tailOffset;
+    }
+
+    public int length(int index) {
+        return lengths[slot(index)];
+    }
+
+    /**
+     * Отдельный объект Token - для узлов AST и сообщений об ошибках
+     */
+    public Token get(int index) {
+        return new Token(type(index), text(index), line(index), column(index) - 1, symbol(index)); // Token сам добавляет 1 к столбцу
+    }
+
+    private int slot(int index) {
+        return index < gapStart ? index : index + gapEnd - gapStart;
+    }
+
+    private int append(TokenType type, int offset, int length, int line, int column) {
+        moveGap(size);
+        if (gapStart == gapEnd) grow(1);
+        int index = gapStart++;
+        kinds[index] = (byte) type.ordinal();
+        offsets[index] = offset;
+        lengths[index] = length;
+        positions[index] = ((long) line << 32) | (column & 0xFFFFFFFFL);
+        size++;
+        return index;
+    }
+
+    // Вставить other[from, to) в начало разрыва
+    private void insert(TokenBuffer other, int from, int to, int offsetDelta, int lineDelta, int columnDelta) {
+        int count = to - from;
+        int[] remap = null;
+        if (other.symbolTable != symbolTable) {
+            remap = new int[other.symbolTable.size()];
+            Arrays.fill(remap, SymbolTable.NO_SYMBOL);
+        }
+        if (gapEnd - gapStart < count) grow(count);
+        int firstLine = count > 0 ? other.line(from) : 0;
+        for (int i = 0; i < count; i++) {
+            int index = gapStart + i;
+            int slot = other.slot(from + i);
+            kinds[index] = other.kinds[slot];
+            lengths[index] = other.lengths[slot];
+            offsets[index] = other.offset(from + i) + offsetDelta;
+
+            int line = other.line(from + i);
+            int column = other.column(from + i);
+            if (line == firstLine) column += columnDelta;
+            positions[index] = ((long) (line + lineDelta) << 32) | (column & 0xFFFFFFFFL);
+
+            int symbol = other.symbols[slot];
+            if (remap != null && symbol != SymbolTable.NO_SYMBOL) {
+                if (remap[symbol] == SymbolTable.NO_SYMBOL) remap[symbol] = symbolTable.intern(other.symbolTable.name(symbol));
+                symbol = remap[symbol];
+            }
+            symbols[index] = symbol;
+        }
+        gapStart += count;
+        size += count;
+    }
+
+    /*
+      Перенести разрыв так, чтобы он начинался перед токеном index. Переносимые токены хвоста
+      получают накопленный сдвиг, а токены, уходящие в хвост, теряют его.
+     */
+    private void moveGap(int index) {
+        if (index < gapStart) {
+            int count = gapStart - index;
+            int to = gapEnd - count;
+            move(index, to, count);
+            shift(to, gapEnd, -tailOffset, -tailLine);
+            gapStart = index;
+            gapEnd = to;
+        } else if (index > gapStart) {
+            int count = index - gapStart;
+            move(gapEnd, gapStart, count);
+            shift(gapStart, index, tailOffset, tailLine);
+            gapStart = index;
+            gapEnd += count;
+        }
+        if (gapEnd == kinds.length) {
+            tailOffset = 0;
+            tailLine = 0;
+        }
+    }
+
+    private void move(int from, int to, int count) {
+        System.arraycopy(kinds, from, kinds, to, count);
+        System.arraycopy(offsets, from, offsets, to, count);
+        System.arraycopy(lengths, from, lengths, to, count);
+        System.arraycopy(positions, from, positions, to, count);
+        System.arraycopy(symbols, from, symbols, to, count);
+    }
+
+    private void shift(int from, int to, int offsetDelta, int lineDelta) {
+        if (offsetDelta == 0 && lineDelta == 0) return;
+        for (int i = from; i < to; i++) {
+            offsets[i] += offsetDelta;
+            positions[i] += (long) lineDelta << 32;
+        }
+    }
+
+    // Расширить разрыв хотя бы до needed ячеек; хвост переезжает в конец новых массивов
+    private void grow(int needed) {
+        int tail = kinds.length - gapEnd;
+        int capacity = kinds.length * 2;
+        while (capacity - size < needed) capacity *= 2;
+        int end = capacity - tail;
+        kinds = grow(kinds, new byte[capacity], end, tail);
+        offsets = grow(offsets, new int[capacity], end, tail);
+        lengths = grow(lengths, new int[capacity], end, tail);
+        positions = grow(positions, new long[capacity], end, tail);
+        symbols = grow(symbols, new int[capacity], end, tail);
+        gapEnd = end;
+    }
+
+    private <T> T grow(T array, T copy, int end, int tail) {
+        System.arraycopy(array, 0, copy, 0, gapStart);
+        System.arraycopy(array, gapEnd, copy, end, tail);
+        return copy;
+    }
+}
@@ -0,0 +1,137 @@
+package ru.krizhanovskiy.parser;
+
+import ru.krizhanovskiy.ast.NodeKind;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Грамматика, переведённая в числа. Нетерминал кодируется своим номером в {@link ParseTable},
+ * терминал - номером терминала с установленным битом {@link #TERMINAL}.
+ * Правая часть альтернативы - int[] таких кодов, у пустой (E) альтернативы она пустая.
+ */
+public class CompiledGrammar {
+    public static final int TERMINAL = 1 << 30;
+    private static final int MAGIC = 0x47524D42; // GRMB
+    private static final int VERSION = 2;
+
+    public final ParseTable table;
+    public final int startSymbol;
+    public final int endSymbol; // $
+    private final int[][][] productions; // [нетерминал][альтернатива] -> правая часть
+    private final NodeKind[] kinds; // вид узла AST нетерминала, null - в AST не попадает
+
+    private CompiledGrammar(Map<String, List<List<String>>> grammar, String startSymbol) {
+        this.table = ParseTable.build(grammar, startSymbol);
+        this.startSymbol = table.nonTerminalId(startSymbol);
+        this.endSymbol = TERMINAL | table.terminalId(ParseTable.END);
+
+        productions = new int[table.nonTerminalCount()][][];
+        for (int nonTerminal = 0; nonTerminal < productions.length; nonTerminal++) {
+            List<List<String>> alternatives = grammar.get(table.nonTerminal(nonTerminal));
+            productions[nonTerminal] = new int[alternatives.size()][];
+            for (int i = 0; i < alternatives.size(); i++) {
+                List<String> alternative = alternatives.get(i);
+                if (alternative.get(0).equals(ParseTable.EPSILON)) {
+                    productions[nonTerminal][i] = new int[0];
+                    continue;
+                }
+                int[] rhs = new int[alternative.size()];
+                for (int j = 0; j < rhs.length; j++) rhs[j] = symbol(alternative.get(j));
+                productions[nonTerminal][i] = rhs;
+            }
+        }
+        this.kinds = kinds(table);
+    }
+
+    private CompiledGrammar(ParseTable table, int startSymbol, int[][][] productions) {
+        this.table = table;
+        this.startSymbol = startSymbol;
+        this.endSymbol = TERMINAL | table.terminalId(ParseTable.END);
+        this.productions = productions;
+        this.kinds = kinds(table);
+    }
+
+    private static NodeKind[] kinds(ParseTable table) {
+        NodeKind[] kinds = new NodeKind[table.nonTerminalCount()];
+        for (int nonTerminal = 0; nonTerminal < kinds.length; nonTerminal++) {
+            kinds[nonTerminal] = NodeKind.of(table.nonTerminal(nonTerminal));
+        }
+        return kinds;
+    }
+
+    public static CompiledGrammar compile(Map<String, List<List<String>>> grammar, String startSymbol) {
+        return new CompiledGrammar(grammar, startSymbol);
+    }
+
+    /**
+     * Запись в двоичном виде (см. {@link GrammarCompiler}): заголовок, таблица разбора,
+     * начальный символ и правые части альтернатив
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        table.write(out);
+        out.writeInt(startSymbol);
+        for (int[][] alternatives : productions) {
+            out.writeByte(alternatives.length);
+            for (int[] rhs : alternatives) {
+                out.writeByte(rhs.length);
+                for (int symbol : rhs) out.writeInt(symbol);
+            }
+        }
+    }
+
+    public static CompiledGrammar read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readUnsignedShort() != VERSION) throw new IOException("Unsupported grammar file");
+        ParseTable table = ParseTable.read(in);
+        int startSymbol = in.readInt();
+        int[][][] productions = new int[table.nonTerminalCount()][][];
+        for (int nonTerminal = 0; nonTerminal < productions.length; nonTerminal++) {
+            productions[nonTerminal] = new int[in.readUnsignedByte()][];
+            for (int i = 0; i < productions[nonTerminal].length; i++) {
+                int[] rhs = new int[in.readUnsignedByte()];
+                for (int j = 0; j < rhs.length; j++) rhs[j] = in.readInt();
+                productions[nonTerminal][i] = rhs;
+            }
+        }
+        return new CompiledGrammar(table, startSymbol, productions);
+    }
+
+    public static boolean isTerminal(int symbol) {
+        return (symbol & TERMINAL) != 0;
+    }
+
+    // Номер терминала в ParseTable
+    public static int terminal(int symbol) {
+        return symbol & ~TERMINAL;
+    }
+
+    /**
+     * Правая часть альтернативы. Массив общий для всех разборов, изменять его нельзя
+     */
+    public int[] production(int nonTerminal, int numberProduction) {
+        return productions[nonTerminal][numberProduction];
+    }
+
+    /**
+     * Вид узла AST для нетерминала
+     */
+    public NodeKind kind(int nonTerminal) {
+        NodeKind kind = kinds[nonTerminal];
+        if (kind == null) throw new IllegalStateException("No AST node kind for <" + table.nonTerminal(nonTerminal) + ">"); // Ошибка грамматики
+        return kind;
+    }
+
+    public int symbol(String name) {
+        int nonTerminal = table.nonTerminalId(name);
+        return nonTerminal != -1 ? nonTerminal : TERMINAL | table.terminalId(name);
+    }
+
+    public String name(int symbol) {
+        return isTerminal(symbol) ? table.terminal(terminal(symbol)) : table.nonTerminal(symbol);
+    }
+}
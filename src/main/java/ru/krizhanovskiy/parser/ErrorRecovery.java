@@ -0,0 +1,61 @@
+package ru.krizhanovskiy.parser;
+
+import ru.krizhanovskiy.diagnostics.DiagnosticCode;
+import ru.krizhanovskiy.diagnostics.Diagnostics;
+
+/**
+ * Общее состояние восстановления после синтаксических ошибок для Parser и ExpressionParser.
+ * <p>
+ * Точки синхронизации - ";", "}", начало оператора (FIRST(statement)) и конец входа:
+ * после ошибки токены пропускаются до ближайшей из них, поэтому каждый токен пропускается не больше одного раза.
+ * На одном токене сообщается только первая ошибка, остальные - следствия восстановления.
+ * После {@link #maxErrors} сообщений выводится TOO_MANY_ERRORS и разбор прекращается.
+ */
+class ErrorRecovery {
+    static final int DEFAULT_MAX_ERRORS = 100;
+
+    private final Diagnostics diagnostics;
+    private final int maxErrors;
+    private final boolean[] syncTokens; // по номеру терминала в ParseTable
+
+    private int reported = 0;
+    private int lastErrorIndex = -1;
+    boolean stopped = false; // достигнут предел сообщений
+
+    ErrorRecovery(Diagnostics diagnostics, ParseTable table, int maxErrors) {
+        this.diagnostics = diagnostics;
+        this.maxErrors = maxErrors;
+
+        int statement = table.nonTerminalId("statement");
+        syncTokens = new boolean[table.terminalCount()];
+        for (int terminal = 0; terminal < syncTokens.length; terminal++) {
+            syncTokens[terminal] = table.inFirst(statement, terminal);
+        }
+        syncTokens[table.terminalId(";")] = true;
+        syncTokens[table.terminalId("}")] = true;
+        syncTokens[table.terminalId(ParseTable.END)] = true;
+    }
+
+    boolean isSync(int terminal) {
+        return terminal >= 0 && syncTokens[terminal];
+    }
+
+    /**
+     * Сообщение об ошибке на токене index. Повторные ошибки на том же токене не сообщаются
+     */
+    void report(int index, DiagnosticCode code, int line, int column, Object... args) {
+        if (stopped || index == lastErrorIndex) return;
+        lastErrorIndex = index;
+        if (++reported > maxErrors) {
+            stopped = true;
+            diagnostics.report(DiagnosticCode.TOO_MANY_ERRORS, line, column, maxErrors);
+            return;
+        }
+        diagnostics.report(code, line, column, args);
+    }
+
+    // Была ли уже ошибка на токене index
+    boolean reportedAt(int index) {
+        return index == lastErrorIndex;
+    }
+}
@@ -0,0 +1,219 @@
+package ru.krizhanovskiy.parser;
+
+import ru.krizhanovskiy.ast.NodeKind;
+import ru.krizhanovskiy.diagnostics.DiagnosticCode;
+import ru.krizhanovskiy.lexer.token.Token;
+import ru.krizhanovskiy.lexer.token.TokenBuffer;
+import ru.krizhanovskiy.lexer.token.TokenType;
+
+/**
+ * Разбор &lt;expression&gt; по приоритетам операций (Pratt). Вместо цепочки *-expression / *-tail
+ * строятся узлы
+ * <pre>
+ * binary-expression  [левый операнд, операция, правый операнд]
+ * unary-expression   [операция, операнд]
+ * primary-expression [identifier-or-function-call] | [number] | [boolean-literal] | ["(", expression, ")"]
+ * </pre>
+ * Все бинарные операции левоассоциативны, унарные связывают сильнее бинарных.
+ * Сообщения об ошибках те же, что выдавал бы LL(1) разбор по правилам грамматики для выражений.
+ * Вместо пропущенного операнда или закрывающей скобки в дерево добавляется пустой узел {@link NodeKind#ERROR}.
+ * Узлы создаёт {@link TreeBuilder}, поддеревья - номера, которые он выдаёт.
+ */
+class ExpressionParser {
+    private final TokenBuffer tokens;
+    private final ParseTable table;
+    private final ErrorRecovery recovery;
+    private final TreeBuilder builder;
+    private final int expression; // для FIRST(expression)
+    private final int end; // индекс $
+    private final int count; // вместе с $
+
+    int index; // текущий токен; больше count - разбор прерван на конце входа
+    boolean error = false;
+
+    ExpressionParser(TokenBuffer tokens, int end, ParseTable table, ErrorRecovery recovery, TreeBuilder builder) {
+        this.tokens = tokens;
+        this.table = table;
+        this.recovery = recovery;
+        this.builder = builder;
+        this.expression = table.nonTerminalId("expression");
+        this.end = end;
+        this.count = end + 1;
+    }
+
+    /**
+     * Узел expression, начиная с токена start. Следующий за выражением токен - {@link #index}
+     */
+    int parse(int start) {
+        index = start;
+        return parseExpression();
+    }
+
+    private int parseExpression() {
+        return node(NodeKind.EXPRESSION, parseBinary(0));
+    }
+
+    // Приоритет бинарной операции, 0 - не бинарная операция
+    private static int precedence(TokenType type) {
+        return switch (type) {
+            case OR -> 1;
+            case AND -> 2;
+            case DOUBLE_EQUAL, NOT_EQUALS -> 3;
+            case LESS_THAN, GREATER_THAN, LESS_THAN_EQUALS, GREATER_THAN_EQUALS -> 4;
+            case PLUS, MINUS -> 5;
+            case MULTIPLICATION, DIVISION -> 6;
+            default -> 0;
+        };
+    }
+
+    private int parseBinary(int minPrecedence) {
+        int left = parseUnary();
+        while (index < end) {
+            int precedence = precedence(tokens.type(index));
+            if (precedence <= minPrecedence) break;
+            int op = builder.leaf(index++);
+            int right = parseBinary(precedence);
+            left = node(NodeKind.BINARY_EXPRESSION, left, op, right);
+        }
+        return left;
+    }
+
+    private int parseUnary() {
+        if (!skipToOperand()) return errorNode();
+        TokenType type = tokens.type(index);
+        if (type == TokenType.NOT || type == TokenType.MINUS) {
+            int op = builder.leaf(index++);
+            return node(NodeKind.UNARY_EXPRESSION, op, parseUnary());
+        }
+        return parsePrimary();
+    }
+
+    /*
+     * Пропуск токенов, с которых не начинается операнд. Как и в LL(1) разборе, строка сообщается
+     * и операнд пропускается. Для остальных токенов сообщается только первый, дальше токены пропускаются
+     * до начала операнда или до токена, который может идти после выражения (")", ",", ";") или
+     * синхронизирует разбор - на нём операнд считается пропущенным.
+     * false - операнда нет
+     */
+    private boolean skipToOperand() {
+        boolean reported = false;
+        while (index < count && !recovery.stopped) {
+            int terminal = table.terminalId(type(index));
+            if (table.inFirst(expression, terminal)) return true;
+            error = true;
+            if (type(index) == TokenType.STRING) {
+                recovery.report(index, DiagnosticCode.STRING_ARGUMENT, tokens.line(index), tokens.column(index));
+                index++;
+                return false;
+            }
+            if (!reported) {
+                Token currentToken = token(index);
+                recovery.report(index, DiagnosticCode.UNEXPECTED_TOKEN, currentToken.line(), currentToken.column(), currentToken);
+                reported = true;
+            }
+            if (isFollow(type(index)) || recovery.isSync(terminal)) return false;
+            index++;
+        }
+        index = count; // разбор прекращён
+        return false;
+    }
+
+    private static boolean isFollow(TokenType type) {
+        return type == TokenType.CLOSE_BRACKET || type == TokenType.COMMA || type == TokenType.SEMICOLON;
+    }
+
+    private int parsePrimary() {
+        TokenType type = tokens.type(index);
+        int first = builder.leaf(index++);
+        return switch (type) {
+            case OPEN_BRACKET -> {
+                int inner = parseExpression();
+                yield node(NodeKind.PRIMARY_EXPRESSION, first, inner, expect(TokenType.CLOSE_BRACKET));
+            }
+            case IDENTIFIER -> node(NodeKind.PRIMARY_EXPRESSION, node(NodeKind.IDENTIFIER_OR_FUNCTION_CALL, first, parseCallEnd()));
+            case NUMBER, FLOAT_NUMBER -> node(NodeKind.PRIMARY_EXPRESSION, node(NodeKind.NUMBER, first));
+            case TRUE, FALSE -> node(NodeKind.PRIMARY_EXPRESSION, node(NodeKind.BOOLEAN_LITERAL, first));
+            default -> throw new IllegalStateException("Token is not in FIRST(expression): " + tokens.get(index - 1)); // Ошибка грамматики
+        };
+    }
+
+    // <identifier-end-or-function-call> ::= E | "(" <arguments> ")"
+    private int parseCallEnd() {
+        if (type(index) != TokenType.OPEN_BRACKET) return node(NodeKind.IDENTIFIER_END_OR_FUNCTION_CALL);
+        int open = builder.leaf(index++);
+        int arguments = parseArguments();
+        return node(NodeKind.IDENTIFIER_END_OR_FUNCTION_CALL, open, arguments, expect(TokenType.CLOSE_BRACKET));
+    }
+
+    // <arguments> ::= E | <argument-list> | <string-literal>
+    private int parseArguments() {
+        if (index >= count) return node(NodeKind.ARGUMENTS);
+        if (table.inFirst(expression, table.terminalId(type(index)))) return node(NodeKind.ARGUMENTS, parseArgumentList());
+        if (type(index) == TokenType.STRING) return node(NodeKind.ARGUMENTS, builder.leaf(index++));
+        return node(NodeKind.ARGUMENTS);
+    }
+
+    // <argument-list> ::= <expression> <argument-list-optional>
+    // <argument-list-optional> ::= E | "," <argument-list>
+    private int parseArgumentList() {
+        int argument = parseExpression();
+        int optional;
+        if (index < end && tokens.type(index) == TokenType.COMMA) {
+            int comma = builder.leaf(index++);
+            optional = node(NodeKind.ARGUMENT_LIST_OPTIONAL, comma, parseArgumentList());
+        } else {
+            optional = node(NodeKind.ARGUMENT_LIST_OPTIONAL);
+        }
+        return node(NodeKind.ARGUMENT_LIST, argument, optional);
+    }
+
+    // Терминал; при несовпадении - те же сообщения, что и в Parser, токен не потребляется.
+    // NONE - вход закончился, узла нет
+    private int expect(TokenType expected) {
+        if (index >= count) return TreeBuilder.NONE;
+        if (type(index) == expected) return builder.leaf(index++);
+
+        error = true;
+        Token currentToken = token(index);
+        if (index != 0 && type(index - 1) == TokenType.STRING) {
+            recovery.report(index, DiagnosticCode.STRING_ARGUMENT, currentToken.line(), currentToken.column());
+            while (index != count && type(index) != TokenType.CLOSE_BRACKET) index++;
+            index++;
+        } else {
+            recovery.report(index, DiagnosticCode.UNEXPECTED_TOKEN_EXPECTED, currentToken.line(), currentToken.column(),
+                    currentToken, expected.getLexeme());
+        }
+        if (recovery.stopped) index = count;
+        return errorNode();
+    }
+
+    private int errorNode() {
+        return node(NodeKind.ERROR);
+    }
+
+    // Узел с детьми; пропущенные из-за ошибки дети (NONE) не добавляются, без детей - пустая альтернатива
+    private int node(NodeKind kind) {
+        return builder.node(kind, TreeBuilder.NONE, TreeBuilder.NONE, TreeBuilder.NONE);
+    }
+
+    private int node(NodeKind kind, int a) {
+        return builder.node(kind, a, TreeBuilder.NONE, TreeBuilder.NONE);
+    }
+
+    private int node(NodeKind kind, int a, int b) {
+        return builder.node(kind, a, b, TreeBuilder.NONE);
+    }
+
+    private int node(NodeKind kind, int a, int b, int c) {
+        return builder.node(kind, a, b, c);
+    }
+
+    // Тип токена, для $ - null
+    private TokenType type(int index) {
+        return index >= end ? null : tokens.type(index);
+    }
+
+    private Token token(int index) {
+        return index == end ? Parser.END : tokens.get(index);
+    }
+}
@@ -0,0 +1,83 @@
+package ru.krizhanovskiy.parser;
+
+import ru.krizhanovskiy.ast.FlatAst;
+import ru.krizhanovskiy.ast.NodeKind;
+
+import java.util.Arrays;
+
+/**
+ * AST в {@link FlatAst}: номера поддеревьев - номера узлов в нём
+ */
+class FlatTreeBuilder implements TreeBuilder {
+    private final FlatAst ast;
+
+    // Открытые узлы и сколько детей им ещё не хватает
+    private int[] open = new int[64];
+    private int[] remaining = new int[64];
+    private int depth = 0;
+
+    FlatTreeBuilder(FlatAst ast) {
+        this.ast = ast;
+    }
+
+    @Override
+    public void open(NodeKind kind, int qtyProductions) {
+        int node = ast.addNode(kind);
+        if (ast.root() == FlatAst.NONE) ast.setRoot(node);
+        else addChild(node);
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+            remaining = Arrays.copyOf(remaining, depth * 2);
+        }
+        open[depth] = node;
+        remaining[depth] = qtyProductions;
+        depth++;
+    }
+
+    @Override
+    public void epsilon(NodeKind kind) {
+        add(ast.addNode(kind));
+    }
+
+    @Override
+    public void token(int index) {
+        add(ast.addToken(index));
+    }
+
+    @Override
+    public void error() {
+        int node = ast.addNode(NodeKind.ERROR);
+        if (ast.root() == FlatAst.NONE) ast.setRoot(node);
+        else if (depth != 0) add(node);
+    }
+
+    @Override
+    public void attach(int subtree) {
+        add(subtree);
+    }
+
+    // Ребёнок текущего узла; заполненные узлы закрываются
+    private void add(int node) {
+        addChild(node);
+        while (depth != 0 && remaining[depth - 1] == 0) depth--;
+    }
+
+    private void addChild(int node) {
+        ast.addChild(open[depth - 1], node);
+        remaining[depth - 1]--;
+    }
+
+    @Override
+    public int leaf(int index) {
+        return ast.addToken(index);
+    }
+
+    @Override
+    public int node(NodeKind kind, int a, int b, int c) {
+        int node = ast.addNode(kind);
+        if (a != NONE) ast.addChild(node, a);
+        if (b != NONE) ast.addChild(node, b);
+        if (c != NONE) ast.addChild(node, c);
+        return node;
+    }
+}
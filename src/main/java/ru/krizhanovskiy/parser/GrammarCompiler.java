@@ -0,0 +1,35 @@
+package ru.krizhanovskiy.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Шаг сборки: разбирает grammar.csv, строит таблицу LL(1) и записывает всё в двоичный ресурс
+ * (по умолчанию target/classes/parser/grammar.bin). Запускается из pom.xml на фазе process-classes,
+ * так что при старте компилятора грамматика уже не разбирается.
+ * Грамматика, которую нельзя разобрать без возврата (см. {@link ParseTable#getAmbiguities()}), не собирается:
+ * бросается IllegalStateException со списком конфликтов, и сборка Maven завершается ошибкой.
+ */
+public class GrammarCompiler {
+    public static void main(String[] args) throws IOException {
+        // Из exec:java - в JVM самого Maven: ошибка - исключение, а не System.exit
+        if (args.length != 1) throw new IllegalArgumentException("Usage: GrammarCompiler <output grammar.bin>");
+        CompiledGrammar grammar = CompiledGrammar.compile(GrammarParser.getGrammar(), GrammarParser.START_SYMBOL);
+        for (String conflict : grammar.table.getConflicts()) System.out.println("LL(1) conflict: " + conflict);
+        if (!grammar.table.getAmbiguities().isEmpty()) {
+            // Такую клетку Parser мог бы разобрать только с возвратом - грамматику нужно исправить
+            throw new IllegalStateException("Grammar is not LL(1):\n" + String.join("\n", grammar.table.getAmbiguities()));
+        }
+
+        Path output = Path.of(args[0]);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try (OutputStream stream = Files.newOutputStream(output);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            grammar.write(out);
+        }
+    }
+}
@@ -1,30 +1,64 @@
 package ru.krizhanovskiy.parser;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.*;
 import java.util.*;
 
+/**
+ * Чтение grammar.csv. Грамматика и её скомпилированный вид создаются один раз при первом обращении
+ * (инициализация вложенного класса-держателя потокобезопасна) и дальше не меняются,
+ * поэтому их можно использовать из нескольких компиляций одновременно.
+ * Состояние разбора файла (line, pos, lastNonTerminal) принадлежит отдельному экземпляру GrammarParser.
+ */
 public class GrammarParser {
     private static final String filename = "/parser/grammar.csv";
-    private static final Map<String, List<List<String>>> grammar = new HashMap<>();
-    private static final Set<String> nonTerminals = new HashSet<>();
+    private static final String compiledFilename = "/parser/grammar.bin"; // создаётся GrammarCompiler при сборке
+    static final String START_SYMBOL = "program";
 
-    /*private static int identity = 0;
-    private static final Map<String, Integer> nonTerminalInteger = new HashMap<>(Map.of(
-            "number", identity++,
-            "identifier", identity++
+    private final Map<String, List<List<String>>> grammar = new HashMap<>();
+    private final Set<String> nonTerminals = new HashSet<>();
 
-    ));*/
+    private String line;
+    private String lastNonTerminal;
+    private int pos = 0;
 
-    private static String line;
-    private static String lastNonTerminal;
-    private static int pos = 0;
+    private GrammarParser() {}
 
+    private static class GrammarHolder {
+        static final Map<String, List<List<String>>> GRAMMAR = new GrammarParser().read();
+    }
+
+    private static class CompiledGrammarHolder {
+        static final CompiledGrammar GRAMMAR = loadCompiledGrammar();
+    }
+
+    /**
+     * Неизменяемая грамматика: нетерминал -> список альтернатив
+     */
     public static Map<String, List<List<String>>> getGrammar() {
-        if (!grammar.isEmpty()) return grammar;
+        return GrammarHolder.GRAMMAR;
+    }
+
+    /**
+     * Грамматика в числах вместе с таблицей LL(1) разбора. Читается из grammar.bin, собранного при сборке;
+     * если его нет (например, запуск из IDE без Maven), строится из grammar.csv
+     */
+    public static CompiledGrammar getCompiledGrammar() {
+        return CompiledGrammarHolder.GRAMMAR;
+    }
+
+    private static CompiledGrammar loadCompiledGrammar() {
+        InputStream stream = GrammarParser.class.getResourceAsStream(compiledFilename);
+        if (stream != null) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+                return CompiledGrammar.read(in);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return CompiledGrammar.compile(getGrammar(), START_SYMBOL);
+    }
 
+    private Map<String, List<List<String>>> read() {
         try (BufferedReader reader = new BufferedReader(
                 new InputStreamReader(Objects.requireNonNull(GrammarParser.class.getResourceAsStream(filename))))
         ) {
@@ -38,10 +72,14 @@ public class GrammarParser {
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return grammar;
+
+        Map<String, List<List<String>>> result = new HashMap<>();
+        grammar.forEach((nonTerminal, alternatives) ->
+                result.put(nonTerminal, alternatives.stream().map(List::copyOf).toList()));
+        return Map.copyOf(result);
     }
 
-    private static void analise() {
+    private void analise() {
         while (pos < line.length()) {
             scipSpace();
 
@@ -59,11 +97,11 @@ public class GrammarParser {
         }
     }
 
-    private static void scipSpace() {
+    private void scipSpace() {
         while (line.charAt(pos) == ' ') pos++; // scip space
     }
 
-    private static String getNonTerminal() {
+    private String getNonTerminal() {
         pos++;
         StringBuilder sb = new StringBuilder();
         while (line.charAt(pos) != '>') {
@@ -74,7 +112,7 @@ public class GrammarParser {
         nonTerminals.add(nonTerminal);
         return nonTerminal;
     }
-    private static String getTerminal() {
+    private String getTerminal() {
         pos++;
         StringBuilder sb = new StringBuilder();
         while (line.charAt(pos) != '"') {
@@ -84,7 +122,7 @@ public class GrammarParser {
         return sb.toString();
     }
 
-    private static List<String> getRule() {
+    private List<String> getRule() {
         pos++;
         List<String> rule = new ArrayList<>();
         while (pos < line.length() && line.charAt(pos) != '|') {
@@ -0,0 +1,233 @@
+package ru.krizhanovskiy.parser;
+
+import ru.krizhanovskiy.ast.AstWalker;
+import ru.krizhanovskiy.ast.Node;
+import ru.krizhanovskiy.ast.NodeKind;
+import ru.krizhanovskiy.ast.NonTerminalNode;
+import ru.krizhanovskiy.ast.TokenNode;
+import ru.krizhanovskiy.diagnostics.Diagnostics;
+import ru.krizhanovskiy.lexer.TokenChange;
+import ru.krizhanovskiy.lexer.token.Token;
+import ru.krizhanovskiy.lexer.token.TokenBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Повторный разбор после правки. Хранит AST прошлого разбора вместе с границами методов в потоке токенов.
+ * По изменённому участку ({@link TokenChange} из IncrementalLexer) заново разбираются только задетые методы,
+ * остальные поддеревья method и звенья цепочки program / method-optional остаются прежними объектами -
+ * меняются лишь звенья на границах правки. Если правка сдвинула строки, новые строки получают только токены
+ * методов за правкой. Время работы зависит от размера правки и числа методов, но не от длины файла.
+ * <p>
+ * parse и reparse возвращают хранимое дерево, общее с прошлыми разборами, - его нельзя менять,
+ * а после reparse прежним деревом пользоваться нельзя - его части вошли в новое.
+ * Нормализация и семантический анализ меняют дерево на месте, поэтому перед ними нужна копия {@link #copyForMutation()}.
+ * Если изменённый участок не делится на методы или в заново разобранном методе есть ошибка,
+ * программа разбирается целиком, и сообщения совпадают с обычным разбором.
+ */
+public class IncrementalParser {
+    public boolean error = false;
+
+    private final Diagnostics diagnostics;
+    private final int maxErrors;
+
+    // Состояние прошлого разбора без ошибок; valid == false - следующий reparse разбирает всё заново
+    private boolean valid = false;
+    private int[] bounds; // bounds[k] - первый токен метода k, bounds[methods] - число токенов
+    private List<NonTerminalNode> links; // links[k] - звено цепочки, первый ребёнок которого - метод k
+    private NonTerminalNode tail; // пустой method-optional в конце цепочки
+
+    public IncrementalParser(Diagnostics diagnostics) {
+        this(diagnostics, ErrorRecovery.DEFAULT_MAX_ERRORS);
+    }
+
+    public IncrementalParser(Diagnostics diagnostics, int maxErrors) {
+        this.diagnostics = diagnostics;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Полный разбор, после которого возможен {@link #reparse}
+     */
+    public NonTerminalNode parse(TokenBuffer tokens) {
+        Parser parser = new Parser(tokens, diagnostics, maxErrors);
+        parser.parse();
+        error = parser.error;
+        NonTerminalNode root = parser.getRootAST();
+        remember(tokens, root);
+        return root;
+    }
+
+    /**
+     * @param tokens токены после правки
+     * @param change изменённый участок относительно токенов прошлого разбора
+     * @return новый AST
+     */
+    public NonTerminalNode reparse(TokenBuffer tokens, TokenChange change) {
+        if (!valid) return parse(tokens);
+        int methods = links.size();
+
+        // Задетые методы [first, last) прошлого разбора
+        int first = 0;
+        while (first < methods && bounds[first + 1] <= change.start()) first++;
+        int last = first;
+        while (last < methods && bounds[last] < change.previousEnd()) last++;
+        int delta = tokens.size() - bounds[methods];
+        if (change.start() == change.previousEnd() && change.start() == change.end()) {
+            for (int k = last; k < methods; k++) shiftLines(links.get(k).node(0), change.lineDelta());
+            return root();
+        }
+
+        int regionStart = bounds[first];
+        List<int[]> regionMethods = ParallelParser.split(tokens, regionStart, bounds[last] + delta);
+        if (regionMethods == null || methods - (last - first) + regionMethods.size() == 0) return parse(tokens);
+
+        List<NonTerminalNode> newLinks = new ArrayList<>(methods - (last - first) + regionMethods.size());
+        newLinks.addAll(links.subList(0, first));
+        for (int[] method : regionMethods) {
+            Parser parser = new Parser(tokens, method[0], method[1], new Diagnostics(), maxErrors, "method");
+            parser.parse();
+            if (parser.error) return parse(tokens);
+            newLinks.add(new NonTerminalNode(NodeKind.METHOD_OPTIONAL, null, parser.getRootAST(), tail));
+        }
+        newLinks.addAll(links.subList(last, methods));
+
+        // Перецепить звенья вокруг правки; первое звено цепочки называется program
+        int to = Math.min(first + regionMethods.size(), newLinks.size() - 1);
+        for (int k = Math.max(0, first - 1); k <= to; k++) {
+            NonTerminalNode node = newLinks.get(k);
+            NodeKind kind = k == 0 ? NodeKind.PROGRAM : NodeKind.METHOD_OPTIONAL;
+            if (node.getKind() != kind) {
+                node = new NonTerminalNode(kind, null, node.node(0), tail);
+                newLinks.set(k, node);
+            }
+            if (k == 0) node.setPrev(null);
+            if (k > 0) {
+                NonTerminalNode previousLink = newLinks.get(k - 1);
+                previousLink.set(1, node);
+                node.setPrev(previousLink);
+            }
+        }
+        NonTerminalNode lastLink = newLinks.get(newLinks.size() - 1);
+        lastLink.set(1, tail);
+        tail.setPrev(lastLink);
+
+        int[] newBounds = new int[newLinks.size() + 1];
+        System.arraycopy(bounds, 0, newBounds, 0, first);
+        for (int j = 0; j < regionMethods.size(); j++) newBounds[first + j] = regionMethods.get(j)[0];
+        for (int k = last; k <= methods; k++) newBounds[k - last + first + regionMethods.size()] = bounds[k] + delta;
+
+        // Новые методы разобраны по текущим строкам, методы за правкой сдвигаются на lineDelta
+        for (int k = last; k < methods; k++) shiftLines(links.get(k).node(0), change.lineDelta());
+
+        bounds = newBounds;
+        links = newLinks;
+        error = false;
+        return newLinks.get(0);
+    }
+
+    // Границы методов и звенья цепочки program / method-optional после полного разбора
+    private void remember(TokenBuffer tokens, NonTerminalNode root) {
+        valid = false;
+        if (error || root == null) return;
+        List<int[]> methods = ParallelParser.split(tokens, 0, tokens.size());
+        if (methods == null) return;
+
+        List<NonTerminalNode> chain = new ArrayList<>(methods.size());
+        NonTerminalNode node = root;
+        while (!node.isEpsilon()) {
+            chain.add(node);
+            if (node.size() != 2 || !(node.child(1) instanceof NonTerminalNode rest)) return;
+            node = rest;
+        }
+        if (chain.size() != methods.size()) return;
+
+        bounds = new int[methods.size() + 1];
+        for (int k = 0; k < methods.size(); k++) bounds[k] = methods.get(k)[0];
+        bounds[methods.size()] = tokens.size();
+        links = chain;
+        tail = node;
+        valid = true;
+    }
+
+    /**
+     * Копия дерева последнего разбора - для тех, кто его меняет (нормализация, семантический анализ).
+     * Хранимое дерево при этом остаётся нетронутым для следующего {@link #reparse}
+     */
+    public NonTerminalNode copyForMutation() {
+        if (!valid) throw new IllegalStateException("Нет дерева разбора без ошибок");
+        return copy(root(), null);
+    }
+
+    private NonTerminalNode root() {
+        return links.isEmpty() ? tail : links.get(0); // пустая программа - сам пустой program
+    }
+
+    // Строки токенов метода, который сдвинулся вместе с текстом за правкой
+    private static void shiftLines(NonTerminalNode method, int lineDelta) {
+        if (lineDelta == 0) return;
+        AstWalker.walk(method, new AstWalker.Visitor() {
+            @Override
+            public boolean enter(NonTerminalNode node) {
+                return true;
+            }
+
+            @Override
+            public void token(TokenNode tokenNode) {
+                Token token = tokenNode.token;
+                // Token сам добавляет 1 к столбцу
+                tokenNode.token = new Token(token.type(), token.name(), token.line() + lineDelta, token.column() - 1, token.symbol());
+            }
+        });
+    }
+
+    /*
+      Копия поддерева без рекурсии: узлы с теми же видами, значениями и типами, листья - новые TokenNode
+     */
+    private static NonTerminalNode copy(NonTerminalNode root, NonTerminalNode prev) {
+        NonTerminalNode rootCopy = copyNode(root, prev);
+        // Открытые узлы, их копии и номер следующего ребёнка каждого
+        NonTerminalNode[] stack = new NonTerminalNode[64];
+        NonTerminalNode[] copies = new NonTerminalNode[64];
+        int[] next = new int[64];
+        int depth = 0;
+        stack[depth] = root;
+        copies[depth++] = rootCopy;
+        while (depth != 0) {
+            NonTerminalNode node = stack[depth - 1];
+            NonTerminalNode nodeCopy = copies[depth - 1];
+            if (next[depth - 1] == node.size()) {
+                stack[--depth] = null;
+                copies[depth] = null;
+                continue;
+            }
+            Node child = node.child(next[depth - 1]++);
+            if (child instanceof NonTerminalNode nonTerminal) {
+                NonTerminalNode childCopy = copyNode(nonTerminal, nodeCopy);
+                nodeCopy.add(childCopy);
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                    copies = Arrays.copyOf(copies, depth * 2);
+                    next = Arrays.copyOf(next, depth * 2);
+                }
+                stack[depth] = nonTerminal;
+                copies[depth] = childCopy;
+                next[depth] = 0;
+                depth++;
+            } else if (child instanceof TokenNode tokenNode) {
+                nodeCopy.add(new TokenNode(tokenNode.token));
+            } else {
+                nodeCopy.add(child);
+            }
+        }
+        return rootCopy;
+    }
+
+    private static NonTerminalNode copyNode(NonTerminalNode node, NonTerminalNode prev) {
+        NonTerminalNode copy = new NonTerminalNode(node.getKind(), prev, node.getQtyProductions());
+        copy.setValueAndType(node.getValue(), node.getType());
+        return copy;
+    }
+}
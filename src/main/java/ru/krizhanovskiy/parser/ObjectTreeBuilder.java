@@ -0,0 +1,107 @@
+package ru.krizhanovskiy.parser;
+
+import ru.krizhanovskiy.ast.Node;
+import ru.krizhanovskiy.ast.NodeKind;
+import ru.krizhanovskiy.ast.NonTerminalNode;
+import ru.krizhanovskiy.ast.TokenNode;
+import ru.krizhanovskiy.lexer.token.TokenBuffer;
+
+import java.util.Arrays;
+
+/**
+ * AST из объектов NonTerminalNode / TokenNode
+ */
+class ObjectTreeBuilder implements TreeBuilder {
+    private final TokenBuffer tokens;
+    private NonTerminalNode rootAST = null;
+    private NonTerminalNode currentNode;
+
+    // Поддеревья выражения, которое строится снизу вверх; номер поддерева - индекс здесь
+    private Node[] parts = new Node[16];
+    private int partsSize = 0;
+
+    ObjectTreeBuilder(TokenBuffer tokens) {
+        this.tokens = tokens;
+    }
+
+    NonTerminalNode getRootAST() {
+        return rootAST;
+    }
+
+    @Override
+    public void open(NodeKind kind, int qtyProductions) {
+        if (rootAST == null) {
+            rootAST = new NonTerminalNode(kind, null, qtyProductions);
+            currentNode = rootAST;
+            return;
+        }
+        NonTerminalNode newNode = new NonTerminalNode(kind, currentNode, qtyProductions);
+        currentNode.add(newNode);
+        currentNode = newNode;
+    }
+
+    @Override
+    public void epsilon(NodeKind kind) {
+        add(new NonTerminalNode(kind, currentNode));
+    }
+
+    @Override
+    public void token(int index) {
+        add(new TokenNode(tokens.get(index)));
+    }
+
+    @Override
+    public void error() {
+        NonTerminalNode errorNode = new NonTerminalNode(NodeKind.ERROR, currentNode, 0);
+        if (rootAST == null) {
+            rootAST = errorNode;
+            return;
+        }
+        if (currentNode != null) add(errorNode);
+    }
+
+    @Override
+    public void attach(int subtree) {
+        Node node = parts[subtree];
+        Arrays.fill(parts, 0, partsSize, null);
+        partsSize = 0;
+        add(node);
+    }
+
+    // Готовое поддерево или лист; заполненные узлы закрываются
+    private void add(Node node) {
+        if (node instanceof NonTerminalNode nonTerminalNode) nonTerminalNode.setPrev(currentNode);
+        currentNode.add(node);
+        while (currentNode != null && currentNode.isComplete()) {
+            currentNode = currentNode.getPrev();
+        }
+    }
+
+    @Override
+    public int leaf(int index) {
+        return part(new TokenNode(tokens.get(index)));
+    }
+
+    @Override
+    public int node(NodeKind kind, int a, int b, int c) {
+        int qtyProductions = (a != NONE ? 1 : 0) + (b != NONE ? 1 : 0) + (c != NONE ? 1 : 0);
+        NonTerminalNode node = new NonTerminalNode(kind, null, qtyProductions);
+        addPart(node, a);
+        addPart(node, b);
+        addPart(node, c);
+        return part(node);
+    }
+
+    private void addPart(NonTerminalNode node, int child) {
+        if (child == NONE) return;
+        Node part = parts[child];
+        if (part instanceof NonTerminalNode nonTerminal) nonTerminal.setPrev(node);
+        node.add(part);
+    }
+
+    private int part(Node node) {
+        if (partsSize == parts.length) parts = Arrays.copyOf(parts, partsSize * 2);
+        parts[partsSize] = node;
+        return partsSize++;
+    }
+}
@@ -0,0 +1,129 @@
+package ru.krizhanovskiy.parser;
+
+import ru.krizhanovskiy.ast.NodeKind;
+import ru.krizhanovskiy.ast.NonTerminalNode;
+import ru.krizhanovskiy.diagnostics.Diagnostics;
+import ru.krizhanovskiy.lexer.token.TokenBuffer;
+import ru.krizhanovskiy.lexer.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Параллельный разбор программы по методам. &lt;program&gt; - это список &lt;method&gt;, а граница метода
+ * в потоке токенов - закрывающая } верхнего уровня. Поток режется на методы подсчётом скобок,
+ * каждый метод разбирается отдельным Parser на ForkJoinPool, затем поддеревья собираются в цепочку
+ * program / method-optional - такую же, какую строит последовательный разбор.
+ * <p>
+ * Если скобки не сбалансированы или хотя бы в одном методе есть ошибка, вся программа разбирается
+ * заново последовательно: восстановление после ошибок может выходить за границы метода,
+ * а сообщения должны совпадать с обычным разбором.
+ */
+public class ParallelParser {
+    public boolean error = false;
+
+    // Методы объединяются в задачи хотя бы такого размера, чтобы не плодить задачи на мелкие методы
+    private static final int MIN_TASK_TOKENS = 4096;
+
+    private final TokenBuffer tokens;
+    private final Diagnostics diagnostics;
+    private final int maxErrors;
+    private final ForkJoinPool pool;
+    private NonTerminalNode rootAST = null;
+
+    public ParallelParser(TokenBuffer tokens, Diagnostics diagnostics) {
+        this(tokens, diagnostics, ErrorRecovery.DEFAULT_MAX_ERRORS, ForkJoinPool.commonPool());
+    }
+
+    public ParallelParser(TokenBuffer tokens, Diagnostics diagnostics, int maxErrors, ForkJoinPool pool) {
+        this.tokens = tokens;
+        this.diagnostics = diagnostics;
+        this.maxErrors = maxErrors;
+        this.pool = pool;
+    }
+
+    public NonTerminalNode getRootAST() {
+        return rootAST;
+    }
+
+    public void parse() {
+        List<int[]> methods = pool.getParallelism() > 1 ? split(tokens, 0, tokens.size()) : null;
+        if (methods == null || methods.size() < 2) {
+            parseSequential();
+            return;
+        }
+
+        NonTerminalNode[] subtrees = new NonTerminalNode[methods.size()];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        int first = 0;
+        while (first < methods.size()) {
+            int last = first;
+            int size = 0;
+            while (last < methods.size() && size < MIN_TASK_TOKENS) {
+                size += methods.get(last)[1] - methods.get(last)[0];
+                last++;
+            }
+            int from = first, to = last;
+            tasks.add(ForkJoinTask.adapt(() -> {
+                for (int i = from; i < to; i++) subtrees[i] = parseMethod(methods.get(i));
+            }));
+            first = last;
+        }
+        pool.submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+
+        for (NonTerminalNode subtree : subtrees) {
+            if (subtree == null) {
+                parseSequential();
+                return;
+            }
+        }
+        rootAST = stitch(subtrees);
+    }
+
+    /*
+     * Границы методов [начало, конец) в tokens[from, to) по скобкам верхнего уровня. null - если участок
+     * не делится на методы: лишняя }, незакрытая { или токены после последнего метода
+     */
+    static List<int[]> split(TokenBuffer tokens, int from, int to) {
+        List<int[]> methods = new ArrayList<>();
+        int depth = 0;
+        int start = from;
+        for (int i = from; i < to; i++) {
+            TokenType type = tokens.type(i);
+            if (type == TokenType.OPEN_CURLY_BRACKET) depth++;
+            else if (type == TokenType.CLOSE_CURLY_BRACKET) {
+                if (--depth < 0) return null;
+                if (depth == 0) {
+                    methods.add(new int[]{start, i + 1});
+                    start = i + 1;
+                }
+            }
+        }
+        if (depth != 0 || start != to) return null;
+        return methods;
+    }
+
+    // Поддерево одного метода или null, если в нём есть ошибка
+    private NonTerminalNode parseMethod(int[] bounds) {
+        // Буфер токенов общий для всех потоков и только читается
+        Parser parser = new Parser(tokens, bounds[0], bounds[1], new Diagnostics(), maxErrors, "method");
+        parser.parse();
+        return parser.error ? null : parser.getRootAST();
+    }
+
+    // program ::= method method-optional, method-optional ::= E | method method-optional
+    static NonTerminalNode stitch(NonTerminalNode[] methods) {
+        NonTerminalNode tail = new NonTerminalNode(NodeKind.METHOD_OPTIONAL, null);
+        for (int i = methods.length - 1; i >= 1; i--) tail = new NonTerminalNode(NodeKind.METHOD_OPTIONAL, null, methods[i], tail);
+        return new NonTerminalNode(NodeKind.PROGRAM, null, methods[0], tail);
+    }
+
+    private void parseSequential() {
+        Parser parser = new Parser(tokens, diagnostics, maxErrors);
+        parser.parse();
+        rootAST = parser.getRootAST();
+        error = parser.error;
+    }
+}
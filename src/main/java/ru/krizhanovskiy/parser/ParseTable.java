@@ -0,0 +1,304 @@
+package ru.krizhanovskiy.parser;
+
+import ru.krizhanovskiy.lexer.token.TokenType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Таблица LL(1) разбора: [нетерминал][терминал] -> номер альтернативы нетерминала.
+ * Строится один раз по грамматике: считаются множества FIRST и FOLLOW, альтернатива записывается
+ * во все клетки своего FIRST, а пустая (E) альтернатива - в клетки FOLLOW.
+ * <p>
+ * Конфликты (две альтернативы в одной клетке) сохраняются в {@link #getConflicts()}.
+ * Если одна из альтернатив выбрана по FIRST, а другая по FOLLOW, побеждает первая - так,
+ * например, else относится к ближайшему if. Две альтернативы по FIRST (или две пустые по FOLLOW)
+ * по одному токену не различить - для них нужен был бы разбор с возвратом, такие конфликты
+ * дополнительно попадают в {@link #getAmbiguities()}, и GrammarCompiler не собирает такую грамматику.
+ * Поэтому Parser никогда не откатывается назад и разбирает вход за линейное время.
+ * <p>
+ * После построения таблица не меняется, один экземпляр используется всеми экземплярами Parser.
+ */
+public class ParseTable {
+    public static final int NO_PRODUCTION = -1;
+    static final String EPSILON = "E";
+    static final String END = "$";
+
+    private final List<String> nonTerminals;
+    private final Map<String, Integer> nonTerminalIds = new HashMap<>();
+    private final List<String> terminals;
+    private final Map<String, Integer> terminalIds = new HashMap<>();
+    private final int[] tokenTerminals = new int[TokenType.values().length];
+
+    private final int[][] table;
+    private final boolean[][] first;
+    private final int[] epsilonProductions;
+    private final List<String> conflicts = new ArrayList<>();
+    private final List<String> ambiguities = new ArrayList<>();
+
+    private ParseTable(Map<String, List<List<String>>> grammar, String startSymbol) {
+        nonTerminals = new ArrayList<>(new TreeSet<>(grammar.keySet()));
+        Set<String> terminalSet = new TreeSet<>();
+        grammar.values().forEach(alternatives -> alternatives.forEach(alternative -> alternative.forEach(symbol -> {
+            if (!grammar.containsKey(symbol) && !symbol.equals(EPSILON)) terminalSet.add(symbol);
+        })));
+        terminalSet.add(END);
+        terminals = new ArrayList<>(terminalSet);
+        indexSymbols();
+
+        Map<String, Set<String>> firstSets = computeFirst(grammar);
+        Map<String, Set<String>> followSets = computeFollow(grammar, firstSets, startSymbol);
+
+        table = new int[nonTerminals.size()][terminals.size()];
+        first = new boolean[nonTerminals.size()][terminals.size()];
+        epsilonProductions = new int[nonTerminals.size()];
+        for (int[] row : table) Arrays.fill(row, NO_PRODUCTION);
+        Arrays.fill(epsilonProductions, NO_PRODUCTION);
+
+        for (String nonTerminal : nonTerminals) {
+            int id = nonTerminalIds.get(nonTerminal);
+            for (String terminal : firstSets.get(nonTerminal)) {
+                if (!terminal.equals(EPSILON)) first[id][terminalIds.get(terminal)] = true;
+            }
+
+            List<List<String>> alternatives = grammar.get(nonTerminal);
+            // Сначала альтернативы по FIRST, потом пустые по FOLLOW
+            for (int i = 0; i < alternatives.size(); i++) {
+                for (String terminal : firstOfSequence(alternatives.get(i), firstSets)) {
+                    if (!terminal.equals(EPSILON)) put(nonTerminal, terminal, i, true);
+                }
+            }
+            BitSet byFollow = new BitSet(terminals.size()); // клетки, заполненные по FOLLOW
+            for (int i = 0; i < alternatives.size(); i++) {
+                if (!firstOfSequence(alternatives.get(i), firstSets).contains(EPSILON)) continue;
+                if (epsilonProductions[id] == NO_PRODUCTION) epsilonProductions[id] = i;
+                for (String terminal : followSets.get(nonTerminal)) {
+                    int column = terminalIds.get(terminal);
+                    put(nonTerminal, terminal, i, byFollow.get(column));
+                    byFollow.set(column);
+                }
+            }
+        }
+    }
+
+    private ParseTable(List<String> nonTerminals, List<String> terminals, int[][] table, boolean[][] first,
+                       int[] epsilonProductions, List<String> conflicts, List<String> ambiguities) {
+        this.nonTerminals = nonTerminals;
+        this.terminals = terminals;
+        this.table = table;
+        this.first = first;
+        this.epsilonProductions = epsilonProductions;
+        this.conflicts.addAll(conflicts);
+        this.ambiguities.addAll(ambiguities);
+        indexSymbols();
+    }
+
+    private void indexSymbols() {
+        for (int i = 0; i < nonTerminals.size(); i++) nonTerminalIds.put(nonTerminals.get(i), i);
+        for (int i = 0; i < terminals.size(); i++) terminalIds.put(terminals.get(i), i);
+        for (TokenType type : TokenType.values()) tokenTerminals[type.ordinal()] = terminalIds.getOrDefault(terminalName(type), -1);
+    }
+
+    public static ParseTable build(Map<String, List<List<String>>> grammar, String startSymbol) {
+        return new ParseTable(grammar, startSymbol);
+    }
+
+    /*
+     * Двоичный вид: имена нетерминалов и терминалов, затем по строке на нетерминал - номер пустой альтернативы,
+     * клетки таблицы (номер альтернативы + 1, 0 - пусто) и FIRST битами. В конце - конфликты для диагностики
+     * и неразрешимые из них.
+     */
+    void write(DataOutputStream out) throws IOException {
+        writeStrings(out, nonTerminals);
+        writeStrings(out, terminals);
+        for (int nonTerminal = 0; nonTerminal < nonTerminals.size(); nonTerminal++) {
+            out.writeByte(epsilonProductions[nonTerminal] + 1);
+            for (int production : table[nonTerminal]) out.writeByte(production + 1);
+            BitSet bits = new BitSet(terminals.size());
+            for (int terminal = 0; terminal < terminals.size(); terminal++) bits.set(terminal, first[nonTerminal][terminal]);
+            byte[] bytes = bits.toByteArray();
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+        writeStrings(out, conflicts);
+        writeStrings(out, ambiguities);
+    }
+
+    static ParseTable read(DataInputStream in) throws IOException {
+        List<String> nonTerminals = readStrings(in);
+        List<String> terminals = readStrings(in);
+        int[][] table = new int[nonTerminals.size()][terminals.size()];
+        boolean[][] first = new boolean[nonTerminals.size()][terminals.size()];
+        int[] epsilonProductions = new int[nonTerminals.size()];
+        for (int nonTerminal = 0; nonTerminal < nonTerminals.size(); nonTerminal++) {
+            epsilonProductions[nonTerminal] = in.readUnsignedByte() - 1;
+            for (int terminal = 0; terminal < terminals.size(); terminal++) table[nonTerminal][terminal] = in.readUnsignedByte() - 1;
+            byte[] bytes = new byte[in.readUnsignedShort()];
+            in.readFully(bytes);
+            BitSet bits = BitSet.valueOf(bytes);
+            for (int terminal = 0; terminal < terminals.size(); terminal++) first[nonTerminal][terminal] = bits.get(terminal);
+        }
+        return new ParseTable(nonTerminals, terminals, table, first, epsilonProductions, readStrings(in), readStrings(in));
+    }
+
+    static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) out.writeUTF(string);
+    }
+
+    static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) strings.add(in.readUTF());
+        return strings;
+    }
+
+    // Запись терминала в грамматике для типа токена
+    static String terminalName(TokenType type) {
+        return switch (type) {
+            case IDENTIFIER -> "identifier";
+            case NUMBER -> "int-literal";
+            case FLOAT_NUMBER -> "float-literal";
+            case STRING -> "string-literal";
+            default -> type.getLexeme();
+        };
+    }
+
+    // ambiguous - конфликт в этой клетке нельзя разрешить правилом "FIRST важнее FOLLOW"
+    private void put(String nonTerminal, String terminal, int production, boolean ambiguous) {
+        int[] row = table[nonTerminalIds.get(nonTerminal)];
+        int column = terminalIds.get(terminal);
+        if (row[column] == NO_PRODUCTION) {
+            row[column] = production;
+            return;
+        }
+        if (row[column] == production) return;
+        String conflict = String.format("<%s> on \"%s\": alternatives %d and %d, chosen %d",
+                nonTerminal, terminal, row[column], production, row[column]);
+        conflicts.add(conflict);
+        if (ambiguous) ambiguities.add(conflict);
+    }
+
+    private static Map<String, Set<String>> computeFirst(Map<String, List<List<String>>> grammar) {
+        Map<String, Set<String>> firstSets = new HashMap<>();
+        grammar.keySet().forEach(nonTerminal -> firstSets.put(nonTerminal, new HashSet<>()));
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, List<List<String>>> entry : grammar.entrySet()) {
+                Set<String> set = firstSets.get(entry.getKey());
+                for (List<String> alternative : entry.getValue()) {
+                    changed |= set.addAll(firstOfSequence(alternative, firstSets));
+                }
+            }
+        }
+        return firstSets;
+    }
+
+    private static Map<String, Set<String>> computeFollow(Map<String, List<List<String>>> grammar,
+                                                         Map<String, Set<String>> firstSets, String startSymbol) {
+        Map<String, Set<String>> followSets = new HashMap<>();
+        grammar.keySet().forEach(nonTerminal -> followSets.put(nonTerminal, new HashSet<>()));
+        followSets.get(startSymbol).add(END);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, List<List<String>>> entry : grammar.entrySet()) {
+                for (List<String> alternative : entry.getValue()) {
+                    for (int i = 0; i < alternative.size(); i++) {
+                        String symbol = alternative.get(i);
+                        if (!grammar.containsKey(symbol)) continue;
+                        Set<String> rest = firstOfSequence(alternative.subList(i + 1, alternative.size()), firstSets);
+                        Set<String> follow = followSets.get(symbol);
+                        for (String terminal : rest) {
+                            if (!terminal.equals(EPSILON)) changed |= follow.add(terminal);
+                        }
+                        if (rest.contains(EPSILON)) changed |= follow.addAll(followSets.get(entry.getKey()));
+                    }
+                }
+            }
+        }
+        return followSets;
+    }
+
+    // FIRST цепочки символов; E в результате означает, что вся цепочка может быть пустой
+    private static Set<String> firstOfSequence(List<String> symbols, Map<String, Set<String>> firstSets) {
+        Set<String> result = new HashSet<>();
+        for (String symbol : symbols) {
+            if (symbol.equals(EPSILON)) continue;
+            Set<String> symbolFirst = firstSets.get(symbol);
+            if (symbolFirst == null) { // терминал
+                result.add(symbol);
+                return result;
+            }
+            for (String terminal : symbolFirst) {
+                if (!terminal.equals(EPSILON)) result.add(terminal);
+            }
+            if (!symbolFirst.contains(EPSILON)) return result;
+        }
+        result.add(EPSILON);
+        return result;
+    }
+
+    /**
+     * Номер альтернативы или {@link #NO_PRODUCTION}
+     */
+    public int production(int nonTerminal, int terminal) {
+        return terminal < 0 ? NO_PRODUCTION : table[nonTerminal][terminal];
+    }
+
+    /**
+     * Пустая альтернатива нетерминала или {@link #NO_PRODUCTION}, если он не может быть пустым
+     */
+    public int epsilonProduction(int nonTerminal) {
+        return epsilonProductions[nonTerminal];
+    }
+
+    public boolean inFirst(int nonTerminal, int terminal) {
+        return terminal >= 0 && first[nonTerminal][terminal];
+    }
+
+    public int nonTerminalId(String nonTerminal) {
+        return nonTerminalIds.getOrDefault(nonTerminal, -1);
+    }
+
+    public String nonTerminal(int id) {
+        return nonTerminals.get(id);
+    }
+
+    public int nonTerminalCount() {
+        return nonTerminals.size();
+    }
+
+    public String terminal(int id) {
+        return terminals.get(id);
+    }
+
+    public int terminalCount() {
+        return terminals.size();
+    }
+
+    public int terminalId(String terminal) {
+        return terminalIds.getOrDefault(terminal, -1);
+    }
+
+    /**
+     * Терминал для типа токена, для конца входа (type == null) - $
+     */
+    public int terminalId(TokenType type) {
+        return type == null ? terminalIds.get(END) : tokenTerminals[type.ordinal()];
+    }
+
+    public List<String> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    /**
+     * Конфликты, для которых одного токена недостаточно (FIRST/FIRST или FOLLOW/FOLLOW)
+     */
+    public List<String> getAmbiguities() {
+        return Collections.unmodifiableList(ambiguities);
+    }
+}
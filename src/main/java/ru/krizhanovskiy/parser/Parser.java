@@ -1,302 +1,262 @@
 package ru.krizhanovskiy.parser;
 
-import ru.krizhanovskiy.ast.Node;
+import ru.krizhanovskiy.ast.FlatAst;
+import ru.krizhanovskiy.ast.NodeKind;
 import ru.krizhanovskiy.ast.NonTerminalNode;
-import ru.krizhanovskiy.ast.TokenNode;
+import ru.krizhanovskiy.diagnostics.DiagnosticCode;
+import ru.krizhanovskiy.diagnostics.Diagnostics;
 import ru.krizhanovskiy.lexer.token.Token;
+import ru.krizhanovskiy.lexer.token.TokenBuffer;
 import ru.krizhanovskiy.lexer.token.TokenType;
 
 import java.util.*;
 
+/**
+ * Предиктивный LL(1) разбор одного потока токенов. Грамматика и таблица общие и неизменяемые,
+ * поэтому экземпляр создаётся дёшево, а разные экземпляры можно запускать в разных потоках.
+ * <p>
+ * После ошибки разбор продолжается в режиме паники (см. {@link ErrorRecovery}): токены пропускаются
+ * до точки синхронизации, символы стека, которые не могут её принять, снимаются, а вместо них в AST
+ * добавляются пустые узлы {@link NodeKind#ERROR}, так что дерево остаётся полным.
+ * <p>
+ * AST строится из объектов ({@link #getRootAST()}) или, для очень больших программ, в {@link FlatAst}.
+ */
 public class Parser {
-    private final List<Token> tokens;
-    private final Map<String, List<List<String>>> grammar;
-    private final Set<String> nonTerminals;
-    private final Map<String, Set<String>> firstElements;
-    private NonTerminalNode rootAST = null;
-    private NonTerminalNode currentNode;
+    private final TokenBuffer tokens;
+    private final CompiledGrammar grammar;
+    private final ParseTable table;
+    private final int semicolon;
+    private final int statement;
+    private final int expression;
+    private final int startSymbol;
+    private final int start; // разбираются токены [start, end), end играет роль $
+    private final int end;
+    private final ExpressionParser expressionParser;
+    private final ErrorRecovery recovery;
+    private final TreeBuilder builder;
+    private final ObjectTreeBuilder objectTree; // null - дерево строится в FlatAst
+
+    // Стек символов грамматики в кодах CompiledGrammar
+    private int[] stack = new int[64];
+    private int stackSize = 0;
 
     public boolean error = false;
 
-    private static final Map<String, String> rotationElements = Map.of(
-        "logical-and-expression", "logical-or-tail",
-        "equality-expression","logical-and-tail",
-        "relational-expression","equality-tail",
-        "additive-expression", "relational-tail",
-        "multiplicative-expression", "additive-tail",
-        "unary-expression", "multiplicative-tail"
-);
-    private static final Set<String> endSymbols = Set.of("(", ")", ",", ";");
+    // Конец входа. В буфер токенов не добавляется, возвращается для индекса end
+    static final Token END = new Token(null, "$", 0, 0);
 
-    public Parser(List<Token> tokens) {
-        this.tokens = tokens;
-        this.grammar = GrammarParser.getGrammar();
-        this.nonTerminals = grammar.keySet();
-        this.firstElements = new HashMap<>();
-        createFirstElements();
+    public Parser(TokenBuffer tokens, Diagnostics diagnostics) {
+        this(tokens, diagnostics, ErrorRecovery.DEFAULT_MAX_ERRORS);
     }
 
-    public NonTerminalNode getRootAST() {
-        return rootAST;
+    /**
+     * @param maxErrors после стольких сообщений об ошибках разбор прекращается
+     */
+    public Parser(TokenBuffer tokens, Diagnostics diagnostics, int maxErrors) {
+        this(tokens, 0, tokens.size(), diagnostics, maxErrors, GrammarParser.START_SYMBOL);
     }
 
-    record SelectProduction(String nonTerminal, int currentNumberProduction, List<Integer> productions, int currentIndexToken,
-                            Stack<String> currentStack) {}
-
-    public void parse() {
-        Stack<String> stack = new Stack<>();
-        stack.push("$");
-        stack.push("program");
-
-        tokens.add(new Token(null, "$", 0, 0));
-
-        Stack<SelectProduction> selectProductions = new Stack<>();
-
-        int currentIndexToken = 0;
+    /**
+     * Разбор в плоское дерево flatAst вместо объектов; {@link #getRootAST()} возвращает null
+     */
+    public Parser(TokenBuffer tokens, Diagnostics diagnostics, int maxErrors, FlatAst flatAst) {
+        this(tokens, 0, tokens.size(), diagnostics, maxErrors, GrammarParser.START_SYMBOL, null, new FlatTreeBuilder(flatAst));
+    }
 
-        while (!stack.isEmpty()) {
-//            System.out.println(stack);
+    /**
+     * Разбор токенов [start, end), начиная с нетерминала startSymbol (например, одного &lt;method&gt; в ParallelParser)
+     */
+    Parser(TokenBuffer tokens, int start, int end, Diagnostics diagnostics, int maxErrors, String startSymbol) {
+        this(tokens, start, end, diagnostics, maxErrors, startSymbol, new ObjectTreeBuilder(tokens), null);
+    }
 
-            String terminalOrNonTerminal = stack.pop();
+    private Parser(TokenBuffer tokens, int start, int end, Diagnostics diagnostics, int maxErrors, String startSymbol,
+                   ObjectTreeBuilder objectTree, TreeBuilder flatTree) {
+        this.tokens = tokens;
+        this.objectTree = objectTree;
+        this.builder = objectTree != null ? objectTree : flatTree;
+        this.start = start;
+        this.end = end;
+        this.grammar = GrammarParser.getCompiledGrammar();
+        this.table = grammar.table;
+        this.semicolon = table.terminalId(";");
+        this.statement = table.nonTerminalId("statement");
+        this.expression = table.nonTerminalId("expression");
+        this.startSymbol = table.nonTerminalId(startSymbol);
+        this.recovery = new ErrorRecovery(diagnostics, table, maxErrors);
+        this.expressionParser = new ExpressionParser(tokens, end, table, recovery, builder);
+    }
 
-            if (currentIndexToken >= tokens.size()) break;
-            Token currentToken = tokens.get(currentIndexToken);
+    public NonTerminalNode getRootAST() {
+        return objectTree != null ? objectTree.getRootAST() : null;
+    }
 
-            if (nonTerminals.contains(terminalOrNonTerminal)) {
-                List<List<String>> production = grammar.get(terminalOrNonTerminal);
-                List<String> productionList;
-                List<Integer> matchProduction = new ArrayList<>();
-                for (int i = 0; i < production.size(); i++) {
-                    if (productionHaveFirstToken(currentToken, production.get(i).get(0))) {
-                        matchProduction.add(i);
-                    }
-                }
+    private void push(int symbol) {
+        if (stackSize == stack.length) stack = Arrays.copyOf(stack, stackSize * 2);
+        stack[stackSize++] = symbol;
+    }
 
-                if (matchProduction.isEmpty()) {
-                    if (firstElements.get(terminalOrNonTerminal).contains("E")) {
-                        addNonTerminalToAST(terminalOrNonTerminal, 1);
-                        addTerminalToAST(null);
-                        // OK
-                    } else {
-                        // ERROR
-                        error = true;
-                        if (tokens.get(currentIndexToken).type() == TokenType.STRING) {
-                            System.err.println("Syntax error: the string must be the only argument to the function. Line: " +
-                                    currentToken.line() + ", column: " + currentToken.column());
-                        }
-                        else {
-                            System.err.println("Syntax Error in token: " + currentToken);
-                            stack.push(terminalOrNonTerminal);
-                        }
+    public void parse() {
+        push(grammar.endSymbol);
+        push(startSymbol);
+
+        int currentIndexToken = start;
+        int count = end + 1; // вместе с $
+
+        while (stackSize != 0 && currentIndexToken < count && !recovery.stopped) {
+            int symbol = stack[--stackSize];
+
+            if (symbol == expression) {
+                // Выражения разбираются по приоритетам операций, правила грамматики ниже <expression>
+                // используются только для множеств FIRST и FOLLOW
+                int expressionNode = expressionParser.parse(currentIndexToken);
+                currentIndexToken = expressionParser.index;
+                error |= expressionParser.error;
+                builder.attach(expressionNode);
+            } else if (!CompiledGrammar.isTerminal(symbol)) {
+                int numberProduction = table.production(symbol, terminal(currentIndexToken));
+                // Нетерминал, который может быть пустым, без подходящей альтернативы считается пустым:
+                // ошибку сообщит следующий терминал (например, пропущенная ;). Но только если за ним этот токен
+                // может идти - иначе пустая альтернатива увела бы разбор из текущего блока
+                if (numberProduction == ParseTable.NO_PRODUCTION && !recovery.reportedAt(currentIndexToken)
+                        && canFollow(currentIndexToken))
+                    numberProduction = table.epsilonProduction(symbol);
+
+                if (numberProduction == ParseTable.NO_PRODUCTION) {
+                    // ERROR
+                    error = true;
+                    if (type(currentIndexToken) == TokenType.STRING) {
+                        recovery.report(currentIndexToken, DiagnosticCode.STRING_ARGUMENT,
+                                tokens.line(currentIndexToken), tokens.column(currentIndexToken));
+                        builder.error();
                         currentIndexToken++;
                     }
-                } else {
-                    Stack<String> newStack = new Stack<>();
-                    newStack.addAll(stack);
-
-                    int indexProduction = 0;
-                    /*if (matchProduction.size() > 1) {
-                        if (currentIndexToken+1 == tokens.size()) {
-                            System.err.println("Syntax Error in token: " + currentToken);
-                        } else {
+                    else {
+                        Token currentToken = token(currentIndexToken);
+                        recovery.report(currentIndexToken, DiagnosticCode.UNEXPECTED_TOKEN,
+                                currentToken.line(), currentToken.column(), currentToken);
+                        push(symbol);
+                        currentIndexToken = synchronize(currentIndexToken);
+                    }
+                    continue;
+                }
 
-                            indexProduction = -1;
-                            int maxIndexToken = 0;
-                            int indexProductionSize1 = -1;
-                            for (int i = 0; i < matchProduction.size(); i++) {
-                                if (production.get(matchProduction.get(i)).size() == 1) {
-                                    indexProductionSize1 = i;
-                                    continue;
-                                }
-                                String operation = production.get(matchProduction.get(i)).get(1);
-                                int curIndex = currentIndexToken + 1;
-                                while (curIndex != tokens.size()) {
-                                    Token nextToken = tokens.get(curIndex);
-                                    if (endSymbols.contains(nextToken.name())) break;
-                                    if (nextToken.name().equals(operation)) {
-                                        if (maxIndexToken < curIndex) {
-                                            maxIndexToken = curIndex;
-                                            indexProduction = i;
-                                        }
-                                    }
-                                    curIndex++;
-                                }
-                            }
-                            if (indexProduction == -1) indexProduction = indexProductionSize1;
-                            if (indexProduction == -1) {
-                                System.err.println("Syntax Error in token: " + currentToken);
-                            }
-                        }
-                    }*/
+                int[] production = grammar.production(symbol, numberProduction);
+                if (production.length == 0) {
+                    builder.epsilon(grammar.kind(symbol));
+                    continue;
+                }
+                for (int i = production.length - 1; i >= 0; i--) push(production[i]);
 
-                    selectProductions.push(new SelectProduction(terminalOrNonTerminal, indexProduction,
-                            matchProduction, currentIndexToken, newStack));
-                    productionList = new ArrayList<>(production.get(matchProduction.get(indexProduction)));
-                    Collections.reverse(productionList);
-                    stack.addAll(productionList);
+                builder.open(grammar.kind(symbol), production.length);
 
-                    // --- AST ---
-                    addNonTerminalToAST(terminalOrNonTerminal, productionList.size());
-                    // -----------
+            } else if (symbol == grammar.endSymbol) {
+                // Дошли до конца. Токены после последнего метода - ошибка, дальше разбирать некуда
+                if (currentIndexToken < end) {
+                    error = true;
+                    Token currentToken = token(currentIndexToken);
+                    recovery.report(currentIndexToken, DiagnosticCode.UNEXPECTED_TOKEN,
+                            currentToken.line(), currentToken.column(), currentToken);
                 }
-
+            } else if (CompiledGrammar.terminal(symbol) == terminal(currentIndexToken)) {
+                builder.token(currentIndexToken);
+                currentIndexToken++;
             } else {
-                if (terminalOrNonTerminal.equals("$")) {
-                    if (currentToken.type() == null && currentToken.name().equals("$")) {
-//                        System.out.println("Ok");
-                        // Всё окей, дошли до конца
-                    }
-                } else if (terminalOrNonTerminal.equals("E")) {
-                    addTerminalToAST(null);
-                    continue;
-                } else if (equalToken(currentToken, terminalOrNonTerminal)) {
-                    // --- AST ---
-                    addTerminalToAST(currentToken);
-                    // -----------
+                error = true;
+                boolean repeated = recovery.reportedAt(currentIndexToken);
+                if (!repeated && currentIndexToken != 0 && type(currentIndexToken - 1) == TokenType.STRING) {
+                    Token currentToken = token(currentIndexToken);
+                    recovery.report(currentIndexToken, DiagnosticCode.STRING_ARGUMENT, currentToken.line(), currentToken.column());
+                    while (currentIndexToken != count && type(currentIndexToken) != TokenType.CLOSE_BRACKET)
+                        currentIndexToken++;
                     currentIndexToken++;
+                    builder.error();
+                    continue;
+                }
+                if (repeated) {
+                    // Ошибка на этом токене уже сообщена (например, при разборе выражения)
+                } else if (checkMissingSemicolon(symbol, currentIndexToken)) {
+                    recovery.report(currentIndexToken, DiagnosticCode.MISSING_SEMICOLON, tokens.line(currentIndexToken - 1), 0);
                 } else {
-                    while (!selectProductions.isEmpty()) {
-                        SelectProduction selectProduction = selectProductions.pop();
-                        int currentNumberProduction = selectProduction.currentNumberProduction + 1;
-                        if (currentNumberProduction == selectProduction.productions.size()) {
-                            continue;
-                        }
-                        selectProductions.add(new SelectProduction(selectProduction.nonTerminal, currentNumberProduction,
-                                selectProduction.productions, selectProduction.currentIndexToken, selectProduction.currentStack));
-                        stack.clear();
-                        stack.addAll(selectProduction.currentStack);
-                        currentIndexToken = selectProduction.currentIndexToken;
-                        List<String> productionList = new ArrayList<>(grammar.get(selectProduction.nonTerminal).get(selectProduction.productions.get(currentNumberProduction)));
-                        Collections.reverse(productionList);
-                        stack.addAll(productionList);
-                        System.out.println("Warning!!! " + stack + selectProduction);
-                        System.out.println(tokens.get(currentIndexToken));
-                        break;
-                    }
-
-                    // TODO: Откат или ошибка.
-                    if (checkMissingSemicolon(terminalOrNonTerminal, currentToken)) {
-                        error = true;
-                        System.err.println("Syntax error: missing semicolon in line " + tokens.get(currentIndexToken - 1).line());
-                    } else if (currentIndexToken != 0 && tokens.get(currentIndexToken-1).type() == TokenType.STRING) {
-                        error = true;
-                        System.err.println("Syntax error: the string must be the only argument to the function. Line: " +
-                                currentToken.line() + ", column: " + currentToken.column());
-                        while (currentIndexToken != tokens.size() && tokens.get(currentIndexToken).type() != TokenType.CLOSE_BRACKET)
-                            currentIndexToken++;
-                        currentIndexToken++;
-                    }
-                    else {
-                        error = true;
-                        System.err.println("Syntax Error in token: " + currentToken + ", expected: " + terminalOrNonTerminal);
-                    }
+                    Token currentToken = token(currentIndexToken);
+                    recovery.report(currentIndexToken, DiagnosticCode.UNEXPECTED_TOKEN_EXPECTED,
+                            currentToken.line(), currentToken.column(), currentToken, grammar.name(symbol));
+                }
+                if (accepts(stack[stackSize - 1], terminal(currentIndexToken))) {
+                    // Терминал считается пропущенным: со следующего символа разбор продолжается
+                    builder.error();
+                } else {
+                    // Пропущен не терминал, а лишние токены перед ним
+                    push(symbol);
+                    currentIndexToken = synchronize(currentIndexToken);
                 }
             }
-//            System.out.println(currentIndexToken);
         }
-        //System.out.println(tokens.get(currentIndexToken));
-    }
 
-    private boolean productionHaveFirstToken(Token token, String terminalOrNonTerminal) {
-        if (nonTerminals.contains(terminalOrNonTerminal)) {
-            return equalToken(token, firstElements.get(terminalOrNonTerminal));
+        // Разбор прерван: недостающие символы заменяются пустыми узлами, чтобы дерево было полным
+        while (stackSize != 0) {
+            if (stack[--stackSize] != grammar.endSymbol) builder.error();
         }
-        return equalToken(token, terminalOrNonTerminal);
     }
 
-    private boolean equalToken(Token token, Set<String> firstElementsSet) {
-        if (firstElementsSet.contains(token.name())) return true;
-        if (token.type() == TokenType.IDENTIFIER && firstElementsSet.contains("identifier")) return true;
-        if (token.type() == TokenType.NUMBER && firstElementsSet.contains("int-literal")) return true;
-        if (token.type() == TokenType.FLOAT_NUMBER && firstElementsSet.contains("float-literal")) return true;
-        if (token.type() == TokenType.STRING && firstElementsSet.contains("string-literal")) return true;
-        return false;
+    // Может ли токен идти за нетерминалом на вершине стека (символ под ним его принимает или это ;)
+    private boolean canFollow(int index) {
+        int next = stack[stackSize - 1];
+        return next == (CompiledGrammar.TERMINAL | semicolon) || accepts(next, terminal(index));
     }
 
-    private boolean equalToken(Token token, String tokenName) {
-        if (nonTerminals.contains(tokenName)) return false;
-        if (token.type() == TokenType.IDENTIFIER && tokenName.equals("identifier")) return true;
-        if (token.type() == TokenType.NUMBER && tokenName.equals("int-literal")) return true;
-        if (token.type() == TokenType.FLOAT_NUMBER && tokenName.equals("float-literal")) return true;
-        if (token.type() == TokenType.STRING && tokenName.equals("string-literal")) return true;
-        if (token.name().equals(tokenName)) return true;
-        return false;
-    }
-
-    private void createFirstElements() {
-        Set<String> visited = new HashSet<>();
-        for (String nonTerminal : nonTerminals) {
-            getFirstElements(visited, nonTerminal);
-        }
-    }
-    private Set<String> getFirstElements(Set<String> visited, String string) {
-        if (visited.contains(string)) return firstElements.get(string);
-        firstElements.put(string, new HashSet<>());
-        visited.add(string);
-        Set<String> currentSet = firstElements.get(string);
-        for (List<String> production : grammar.get(string)) {
-            String productionString = production.get(0);
-            if (nonTerminals.contains(productionString)) {
-                currentSet.addAll(getFirstElements(visited, productionString));
-            } else {
-                currentSet.add(productionString);
+    /*
+     * Режим паники. Токены пропускаются, пока очередной не сможет принять символ на вершине стека
+     * или пока не встретится точка синхронизации. На точке синхронизации со стека снимаются символы
+     * до ближайшего, который её принимает (на их месте в AST - узел ERROR); если такого нет, токен тоже пропускается.
+     * Конец входа всегда принимает $ на дне стека, поэтому цикл конечен. Возвращает индекс токена, с которого продолжать
+     */
+    private int synchronize(int index) {
+        while (true) {
+            int terminal = terminal(index);
+            if (recovery.isSync(terminal) || accepts(stack[stackSize - 1], terminal)) {
+                int depth = stackSize - 1;
+                while (depth >= 0 && !accepts(stack[depth], terminal)) depth--;
+                if (depth >= 0) {
+                    while (stackSize - 1 > depth) {
+                        stackSize--;
+                        builder.error();
+                    }
+                    return index;
+                }
             }
+            index++;
         }
-        return currentSet;
     }
 
-    private boolean checkMissingSemicolon(String terminalOrNonTerminal, Token currentToken) {
-        if (terminalOrNonTerminal.equals(";")) {
-            if (productionHaveFirstToken(currentToken, "statement")) return true;
-            if (!currentToken.name().isEmpty() && currentToken.name().equals("}")) return true;
-        }
-        return false;
+    // Может ли символ стека начаться с терминала (для нетерминала - есть ли клетка в таблице)
+    private boolean accepts(int symbol, int terminal) {
+        if (CompiledGrammar.isTerminal(symbol)) return CompiledGrammar.terminal(symbol) == terminal;
+        return table.production(symbol, terminal) != ParseTable.NO_PRODUCTION;
     }
 
-     /* ------------------- AST Actions ---------------------- */
-    private void addNonTerminalToAST(String terminalOrNonTerminal, int qtyProductions) {
-        if (rootAST == null) {
-            rootAST = new NonTerminalNode(terminalOrNonTerminal, null, qtyProductions);
-            currentNode = rootAST;
-            return;
-        }
-        NonTerminalNode newNode = new NonTerminalNode(terminalOrNonTerminal, currentNode, qtyProductions);
-        currentNode.getChildren().add(newNode);
-        currentNode = newNode;
+    /* ------------------- Доступ к токенам ------------------- */
+    // Тип токена, для $ - null
+    private TokenType type(int index) {
+        return index == end ? null : tokens.type(index);
     }
-    private void addTerminalToAST(Token currentToken) {
-        currentNode.getChildren().add(new TokenNode(currentToken));
-        while (currentNode != null && currentNode.getChildren().size() == currentNode.getQtyProductions()) {
-            currentNode = checkAndRotation(currentNode);
-            currentNode = currentNode.getPrev();
-        }
-    }
-    private NonTerminalNode checkAndRotation(NonTerminalNode currentNode) {
-        if (rotationElements.containsKey(currentNode.name)) {
-            NonTerminalNode parent = currentNode.getPrev();
-            if (parent.name.equals(rotationElements.get(currentNode.name))) {
-                NonTerminalNode parent2 = parent.getPrev();
-                List<Node> parent2Children = parent2.getChildren();
-                List<Node> parentChildren = parent.getChildren();
 
-                int index = parent2.name.equals(rotationElements.get(currentNode.name)) ? 1 : 0;
-                if (parent2.name.equals(rotationElements.get(currentNode.name))) {
-                    TokenNode tempOp = (TokenNode) parentChildren.get(0);
-                    parentChildren.set(0, parent2Children.get(0));
-                    parent2Children.set(0, tempOp);
-                }
+    // Объект Token создаётся только для листьев AST и сообщений об ошибках
+    private Token token(int index) {
+        return index == end ? END : tokens.get(index);
+    }
 
-                currentNode.setPrev(parent2);
-                NonTerminalNode secondNode = (NonTerminalNode) parent2Children.get(index);
-                secondNode.setPrev(parent);
+    // Номер терминала токена в ParseTable, для $ - номер $
+    private int terminal(int index) {
+        return table.terminalId(type(index));
+    }
+    /* ------------------------------------------------------ */
 
-                parentChildren.set(1, secondNode);
-                parent2Children.set(index, currentNode);
-                checkAndRotation(currentNode);
-                return secondNode;
-            }
+    private boolean checkMissingSemicolon(int symbol, int index) {
+        if (CompiledGrammar.terminal(symbol) == semicolon) {
+            if (table.inFirst(statement, terminal(index))) return true;
+            if (type(index) == TokenType.CLOSE_CURLY_BRACKET) return true;
         }
-        return currentNode;
+        return false;
     }
-    /* ------------------- AST Actions END -------------------- */
-}
\ No newline at end of file
+}
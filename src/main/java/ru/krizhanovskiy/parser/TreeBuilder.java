@@ -0,0 +1,37 @@
+package ru.krizhanovskiy.parser;
+
+import ru.krizhanovskiy.ast.NodeKind;
+
+/**
+ * Построение AST во время разбора. Parser строит дерево сверху вниз: открывает узел нетерминала
+ * и заполняет его детей по порядку, заполненный узел закрывается сам. ExpressionParser строит
+ * выражение снизу вверх из номеров готовых поддеревьев и передаёт его Parser через {@link #attach}.
+ * <p>
+ * Реализации: {@link ObjectTreeBuilder} - узлы-объекты NonTerminalNode / TokenNode,
+ * {@link FlatTreeBuilder} - {@link ru.krizhanovskiy.ast.FlatAst} без объекта на узел.
+ */
+interface TreeBuilder {
+    int NONE = -1;
+
+    /* ------------------- Сверху вниз (Parser) ------------------- */
+    // Узел нетерминала с qtyProductions детьми; следующие узлы добавляются в него
+    void open(NodeKind kind, int qtyProductions);
+
+    // Пустая (E) альтернатива
+    void epsilon(NodeKind kind);
+
+    // Лист с токеном tokens[index]
+    void token(int index);
+
+    // Пустой узел на месте пропущенного символа
+    void error();
+
+    // Готовое поддерево из {@link #leaf} / {@link #node}
+    void attach(int subtree);
+
+    /* ------------------- Снизу вверх (ExpressionParser) ------------------- */
+    int leaf(int index);
+
+    // Узел с детьми a, b, c; NONE - ребёнка нет
+    int node(NodeKind kind, int a, int b, int c);
+}
@@ -0,0 +1,13 @@
+package ru.krizhanovskiy.semantic_analyzer;
+
+import ru.krizhanovskiy.ast.NonTerminalNode;
+import ru.krizhanovskiy.diagnostics.Diagnostic;
+
+import java.util.List;
+
+/**
+ * Итог анализа одного метода: узел метода после всех преобразований, методы, которые он вызывает
+ * (в достижимом коде), и сообщения, выданные при анализе его тела
+ */
+public record AnalyzedMethod(NonTerminalNode node, List<Method> calls, List<Diagnostic> diagnostics) {
+}
@@ -0,0 +1,661 @@
+package ru.krizhanovskiy.semantic_analyzer;
+
+import ru.krizhanovskiy.ast.FlatAst;
+import ru.krizhanovskiy.diagnostics.DiagnosticCode;
+import ru.krizhanovskiy.diagnostics.Diagnostics;
+import ru.krizhanovskiy.lexer.token.TokenBuffer;
+import ru.krizhanovskiy.lexer.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Семантический анализ AST из {@link FlatAst} (Main --flat-ast): те же проверки и сообщения, что у
+ * {@link SemanticAnalyzer}, и те же таблицы - {@link Method}, {@link Scope}, {@link Variable}.
+ * <p>
+ * Дерево только читается: узел - номер в FlatAst, токен - номер в TokenBuffer. Результат выражения
+ * (тип, значение константы) возвращается через поля, а не объектом на узел. Оптимизации, которые
+ * меняют дерево (удаление недостижимого кода, неиспользуемых методов и переменных), не выполняются.
+ */
+public class FlatSemanticAnalyzer {
+    private final FlatAst ast;
+    private final TokenBuffer tokens;
+    private final Diagnostics diagnostics;
+    public final List<Method> methods = new ArrayList<>();
+    private final List<Integer> methodNodes = new ArrayList<>(); // узлы method в порядке methods
+    public boolean errors = false;
+    private Method currentMethod;
+    private boolean hasMainMethod = false;
+    // Имена, о которых уже сообщено в текущем методе
+    private final Set<String> noDeclaredVariables = new HashSet<>();
+    private final Set<String> noDeclaredMethods = new HashSet<>();
+
+    // Результат последнего проанализированного выражения; тип - возвращаемое значение
+    private String value; // значение константы; null - известно только при выполнении
+    private boolean hasVariables; // в выражении есть переменные
+
+    public FlatSemanticAnalyzer(FlatAst ast, Diagnostics diagnostics) {
+        this.ast = ast;
+        this.tokens = ast.tokens();
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Узлы method в порядке {@link #methods}: main - первый
+     */
+    public int[] methodNodes() {
+        return methodNodes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public void analyze() {
+        for (int method = ast.listFirst(ast.root()); method != FlatAst.NONE; method = ast.listNext(method)) {
+            analyzeMethod(method);
+        }
+        for (int i = 0; i < methods.size(); i++) {
+            currentMethod = methods.get(i);
+            noDeclaredVariables.clear();
+            noDeclaredMethods.clear();
+            Scope scope = new Scope();
+            currentMethod.parameters().forEach(scope::addVariable);
+            boolean hasReturn = analyzeStatements(node(methodNodes.get(i), 6), scope);
+            if (currentMethod.returnType() != TokenType.VOID && !hasReturn) {
+                errors = true;
+                diagnostics.report(DiagnosticCode.MISSING_RETURN, 0, 0, currentMethod.name());
+            }
+        }
+        if (!hasMainMethod) {
+            errors = true;
+            diagnostics.report(DiagnosticCode.MAIN_NOT_FOUND, 0, 0);
+        }
+    }
+
+    // Ребёнок узла с номером index
+    private int node(int node, int index) {
+        return ast.child(node, index);
+    }
+
+    // Номер в TokenBuffer токена - ребёнка узла с номером index
+    private int token(int node, int index) {
+        return ast.token(ast.child(node, index));
+    }
+
+    private void analyzeMethod(int method) {
+        TokenType returnType = getType(node(method, 0));
+        String name = tokens.text(token(method, 1));
+
+        List<Variable> parameters = analyzeParameters(node(method, 3));
+
+        // Проверка - существует ли уже метод с таким название и параметрами
+        boolean hasMethod = false;
+        for (Method method1 : methods) {
+            if (method1.name().equals(name) && method1.parameters().size() == parameters.size()) {
+                boolean flag = true;
+                for (int i = 0; i < parameters.size(); i++) {
+                    if (parameters.get(i).getType() != method1.parameters().get(i).getType()) {
+                        flag = false;
+                        break;
+                    }
+                }
+                hasMethod = flag;
+            }
+        }
+
+        Method signature = new Method(getReturnType(returnType), parameters, name);
+        if (!hasMethod && name.equals("main") && returnType == TokenType.VOID && parameters.isEmpty()) {
+            hasMainMethod = true;
+            // main становится первым методом, первый метод - последним (как в SemanticAnalyzer)
+            methods.add(0, signature);
+            methodNodes.add(0, method);
+            if (methods.size() > 1) {
+                methods.add(methods.remove(1));
+                methodNodes.add(methodNodes.remove(1));
+            }
+            return;
+        }
+        if (hasMethod) {
+            errors = true;
+            diagnostics.report(DiagnosticCode.DUPLICATE_METHOD, 0, 0, name);
+        }
+        methods.add(signature);
+        methodNodes.add(method);
+    }
+
+    private List<Variable> analyzeParameters(int parameters) {
+        List<Variable> list = new ArrayList<>();
+        for (int parameter = ast.listFirst(parameters); parameter != FlatAst.NONE; parameter = ast.listNext(parameter)) {
+            int name = token(parameter, 1);
+            Variable variable = new Variable(getReturnType(getType(node(parameter, 0))), tokens.text(name), tokens.symbol(name), null);
+            variable.setAnnounced(true);
+            variable.setMutable(true);
+            list.add(variable);
+        }
+        return list;
+    }
+
+    // Сообщение с позицией токена
+    private void reportAt(int token, DiagnosticCode code, Object... args) {
+        diagnostics.report(code, tokens.line(token), tokens.column(token), args);
+    }
+
+    private TokenType getType(int returnTypeOrType) {
+        int child = ast.firstChild(returnTypeOrType);
+        if (!ast.isToken(child)) child = ast.firstChild(child); // returnType
+        return ast.tokenType(child);
+    }
+
+    // true - в statements есть return
+    private boolean analyzeStatements(int statements, Scope scope) {
+        boolean hasReturn = false;
+        for (int statement = ast.listFirst(statements); statement != FlatAst.NONE; statement = ast.listNext(statement)) {
+            hasReturn |= analyzeStatement(statement, scope);
+        }
+        return hasReturn;
+    }
+
+    private boolean analyzeStatement(int statement, Scope scope) {
+        int current = ast.firstChild(statement);
+        if (current == FlatAst.NONE) return false; // ε
+        if (ast.isToken(current)) {
+            switch (ast.tokenType(current)) {
+                case OPEN_CURLY_BRACKET -> {
+                    return analyzeStatements(node(statement, 1), new Scope(scope));
+                }
+                case BREAK, CONTINUE -> {
+                    if (!scope.isForOrWhileScope()) {
+                        reportAt(ast.token(current), ast.tokenType(current) == TokenType.BREAK
+                                ? DiagnosticCode.BREAK_OUTSIDE_LOOP : DiagnosticCode.CONTINUE_OUTSIDE_LOOP);
+                    }
+                    return false;
+                }
+                default -> throw new RuntimeException(); // Grammar Error
+            }
+        }
+        switch (ast.kind(current)) {
+            case DECLARATION -> analyzeDeclaration(current, scope, false);
+            case ASSIGNMENT_OR_FUNCTION_CALL -> analyzeAssignmentOrFunctionCall(current, scope);
+            case IF_STATEMENT -> {
+                return analyzeIfStatement(current, scope);
+            }
+            case WHILE_LOOP -> {
+                return analyzeWhileStatement(current, scope);
+            }
+            case FOR_LOOP -> {
+                return forLoop(current, new Scope(scope));
+            }
+            case RETURN_STATEMENT -> {
+                return returnStatement(current, scope);
+            }
+            default -> throw new RuntimeException(); // Grammar Error
+        }
+        return false;
+    }
+
+    private void analyzeDeclaration(int declaration, Scope scope, boolean forLoop) {
+        TokenType returnType = getType(node(declaration, 0));
+        int nameToken = token(declaration, 1);
+        String name = tokens.text(nameToken);
+        int symbol = tokens.symbol(nameToken);
+
+        Variable variable = scope.getVariable(symbol);
+        boolean localError = false;
+        if (variable != null) {
+            errors = true;
+            localError = true;
+            reportAt(nameToken, DiagnosticCode.DUPLICATE_VARIABLE, name);
+        } else {
+            variable = new Variable(getReturnType(returnType), name, symbol, null);
+        }
+        variable.setAnnounced(true);
+
+        // statement [declaration, optional-assignment, ";"] или declaration-and-assigment [declaration, "=", expression]
+        int expression = ast.nextSibling(declaration);
+        if (ast.isToken(expression)) expression = ast.nextSibling(expression);
+        else expression = ast.isEpsilon(expression) ? FlatAst.NONE : node(expression, 1);
+
+        if (expression != FlatAst.NONE) {
+            TokenType type = analyzeExpression(expression, scope);
+            if (type == null) return;
+            if (noMatchReturnType(type, variable.getType())) {
+                errors = true;
+                reportAt(nameToken, DiagnosticCode.DECLARATION_TYPE_MISMATCH,
+                        getStringFromReturnType(variable.getType()), getStringFromReturnType(type));
+                return;
+            }
+            if (!localError) {
+                variable.setMutable(value == null);
+                variable.setValue(value);
+            }
+        }
+        if (!localError) scope.addVariable(variable);
+    }
+
+    private TokenType getReturnType(TokenType type) {
+        return switch (type) {
+            case INT -> TokenType.NUMBER;
+            case FLOAT -> TokenType.FLOAT_NUMBER;
+            default -> type;
+        };
+    }
+
+    private String getStringFromReturnType(TokenType type) {
+        return switch (type) {
+            case NUMBER -> "INT";
+            case FLOAT_NUMBER -> "FLOAT";
+            case BOOLEAN -> "BOOLEAN";
+            default -> type.toString();
+        };
+    }
+
+    private void analyzeAssignmentOrFunctionCall(int assignmentOrFunctionCall, Scope scope) {
+        int identity = token(assignmentOrFunctionCall, 0);
+        int continueAssignmentOrFunctionCall = node(assignmentOrFunctionCall, 1);
+        int next = node(continueAssignmentOrFunctionCall, 1);
+        if (tokens.type(token(continueAssignmentOrFunctionCall, 0)) == TokenType.EQUALS) {
+            analyzeAssigment(identity, analyzeExpression(next, scope), scope);
+        } else {
+            analyzeFunctionCall(next, identity, scope);
+        }
+    }
+
+    // type и value - результат выражения справа
+    private void analyzeAssigment(int identity, TokenType type, Scope scope) {
+        if (type == null) return;
+
+        Variable variable = scope.getVariable(tokens.symbol(identity));
+        if (variable == null) {
+            reportUndeclaredVariable(identity);
+            return;
+        }
+        if (noMatchReturnType(type, variable.getType())) {
+            errors = true;
+            reportAt(identity, DiagnosticCode.ASSIGNMENT_TYPE_MISMATCH);
+            return;
+        }
+        if (value != null) {
+            variable.setMutable(false);
+            variable.setValue(value);
+        }
+    }
+
+    private void reportUndeclaredVariable(int identity) {
+        String name = tokens.text(identity);
+        if (noDeclaredVariables.add(name)) {
+            errors = true;
+            reportAt(identity, DiagnosticCode.UNDECLARED_VARIABLE, name);
+        }
+    }
+
+    private TokenType analyzeFunctionCall(int arguments, int identity, Scope scope) {
+        String name = tokens.text(identity);
+        List<Method> currentMethods = methods.stream().filter(method -> method.name().equals(name)).toList();
+        if (!(name.equals("print") || name.equals("intInput") || name.equals("floatInput")) && currentMethods.isEmpty()) {
+            if (noDeclaredMethods.add(name)) {
+                errors = true;
+                reportAt(identity, DiagnosticCode.METHOD_NOT_FOUND, name);
+            }
+            return null;
+        }
+
+        boolean string = !ast.isEpsilon(arguments) && ast.isToken(ast.firstChild(arguments)); // print("...")
+        int argumentList = ast.isEpsilon(arguments) || string ? FlatAst.NONE : node(arguments, 0);
+        int argumentCount = 0;
+        if (argumentList != FlatAst.NONE) {
+            for (int e = ast.listFirst(argumentList); e != FlatAst.NONE; e = ast.listNext(e)) argumentCount++;
+        }
+        int count = argumentCount;
+        List<Method> filterMethods = currentMethods.stream().filter(method -> method.parameters().size() == count).toList();
+        if (filterMethods.isEmpty()) {
+            if (argumentCount == 0 && !string) {
+                value = null;
+                hasVariables = false;
+                if (name.equals("intInput")) return TokenType.NUMBER;
+                if (name.equals("floatInput")) return TokenType.FLOAT_NUMBER;
+            }
+            if (name.equals("print") && (string || argumentCount == 1)) {
+                if (!string && analyzeExpression(ast.listFirst(argumentList), scope) == null) return null;
+                value = null;
+                hasVariables = false;
+                return TokenType.VOID;
+            }
+            reportAt(identity, DiagnosticCode.ARGUMENT_COUNT_MISMATCH);
+            return null;
+        }
+
+        // Аргументы проверяются для каждого метода с подходящим числом параметров - как в SemanticAnalyzer
+        Method method = null;
+        boolean usedVariables = false;
+        for (Method meth : filterMethods) {
+            boolean parametersError = false;
+            int i = 0;
+            for (int e = ast.listFirst(argumentList); e != FlatAst.NONE; e = ast.listNext(e), i++) {
+                TokenType type = analyzeExpression(e, scope);
+                if (type == null) continue;
+                usedVariables |= hasVariables;
+                if (noMatchReturnType(type, meth.parameters().get(i).getType())) parametersError = true;
+            }
+            if (!parametersError) method = meth;
+        }
+        if (method == null) return null;
+
+        value = null;
+        hasVariables = usedVariables;
+        return method.returnType();
+    }
+
+    private boolean analyzeIfStatement(int ifStatement, Scope scope) {
+        TokenType type = analyzeExpression(node(ifStatement, 2), scope);
+        String condition = value;
+        boolean localError = type == null;
+        if (!localError && type != TokenType.BOOLEAN) {
+            errors = true;
+            localError = true;
+            reportAt(token(ifStatement, 0), DiagnosticCode.EXPECTED_BOOLEAN);
+        }
+
+        boolean hasReturn = analyzeStatement(node(ifStatement, 4), new Scope(scope));
+        int elseOptional = node(ifStatement, 5);
+        boolean hasElse = !ast.isEpsilon(elseOptional);
+        boolean elseHasReturn = hasElse && analyzeStatement(node(elseOptional, 1), new Scope(scope));
+
+        if (!localError && condition != null) {
+            if (condition.equals("true")) {
+                reportAt(token(ifStatement, 0), DiagnosticCode.ALWAYS_TRUE);
+                return hasReturn;
+            }
+            reportAt(token(ifStatement, 0), DiagnosticCode.ALWAYS_FALSE);
+            if (hasElse) return elseHasReturn;
+        }
+        return hasReturn && elseHasReturn;
+    }
+
+    private boolean analyzeWhileStatement(int whileStatement, Scope scope) {
+        int token = token(whileStatement, 0);
+        boolean doWhile = tokens.type(token) != TokenType.WHILE; // do {} while
+        int expression = node(whileStatement, doWhile ? 4 : 2);
+        int statement = node(whileStatement, doWhile ? 1 : 4);
+
+        TokenType type = analyzeExpression(expression, scope);
+        String condition = value;
+        boolean conditionVariables = hasVariables;
+        boolean localError = type == null;
+        if (!localError && type != TokenType.BOOLEAN) {
+            localError = true;
+            errors = true;
+            reportAt(token, DiagnosticCode.EXPECTED_BOOLEAN);
+        }
+
+        Scope statementScope = new Scope.Builder().setParent(scope).setForOrWhileScope(true).build();
+        boolean hasReturn = analyzeStatement(statement, statementScope);
+
+        if (!localError && condition != null) {
+            if (condition.equals("true") && !conditionVariables) {
+                reportAt(token, DiagnosticCode.ALWAYS_TRUE);
+                return hasReturn;
+            } else if (condition.equals("false")) {
+                reportAt(token, DiagnosticCode.ALWAYS_FALSE);
+            }
+        }
+        return doWhile && hasReturn;
+    }
+
+    private boolean forLoop(int forLoop, Scope scope) {
+        Scope forScope = new Scope(scope, true);
+        analyzeDeclaration(node(node(forLoop, 2), 0), forScope, true);
+        TokenType type = analyzeExpression(node(forLoop, 4), forScope);
+        String condition = value;
+        boolean conditionVariables = hasVariables;
+
+        int assignment = node(forLoop, 6);
+        analyzeAssigment(token(assignment, 0), analyzeExpression(node(assignment, 2), forScope), forScope);
+
+        boolean localError = type == null;
+        if (!localError && type != TokenType.BOOLEAN) {
+            localError = true;
+            errors = true;
+            reportAt(token(forLoop, 0), DiagnosticCode.EXPECTED_BOOLEAN);
+        }
+        boolean hasReturn = analyzeStatement(node(forLoop, 8), forScope);
+
+        if (!localError && condition != null) {
+            if (condition.equals("true") && !conditionVariables) {
+                reportAt(token(forLoop, 0), DiagnosticCode.ALWAYS_TRUE);
+                return hasReturn;
+            } else if (condition.equals("false")) {
+                reportAt(token(forLoop, 0), DiagnosticCode.ALWAYS_FALSE);
+            }
+        }
+        return false;
+    }
+
+    private boolean returnStatement(int returnStatement, Scope scope) {
+        int returnExpressionOrVoid = node(returnStatement, 1);
+        TokenType returnType = TokenType.VOID;
+        if (!ast.isEpsilon(returnExpressionOrVoid)) {
+            returnType = analyzeExpression(node(returnExpressionOrVoid, 0), scope);
+            if (returnType == null) return true;
+        }
+        if (noMatchReturnType(returnType, currentMethod.returnType())) {
+            errors = true;
+            reportAt(token(returnStatement, 0), DiagnosticCode.RETURN_TYPE_MISMATCH);
+        }
+        return true;
+    }
+
+    private boolean noMatchReturnType(TokenType returnType, TokenType returnTypeMethod) {
+        if (returnType == TokenType.NUMBER && returnTypeMethod == TokenType.INT) return false;
+        if (returnType == TokenType.FLOAT_NUMBER && returnTypeMethod == TokenType.FLOAT) return false;
+        return returnType != returnTypeMethod;
+    }
+
+    /* ------------------- Выражения ------------------- */
+    // Тип выражения или null (ошибка); значение и наличие переменных - в value и hasVariables
+
+    private TokenType analyzeExpression(int expression, Scope scope) {
+        return analyzeOperand(ast.firstChild(expression), scope);
+    }
+
+    private TokenType analyzeOperand(int operand, Scope scope) {
+        return switch (ast.kind(operand)) {
+            case BINARY_EXPRESSION -> analyzeBinaryExpression(operand, scope);
+            case UNARY_EXPRESSION -> analyzeUnaryExpression(operand, scope);
+            case PRIMARY_EXPRESSION -> analyzePrimaryExpression(operand, scope);
+            default -> throw new RuntimeException(); // Ошибка грамматики
+        };
+    }
+
+    private TokenType analyzeBinaryExpression(int binaryExpression, Scope scope) { // <левый> op <правый>
+        TokenType left = analyzeOperand(node(binaryExpression, 0), scope);
+        String leftValue = value;
+        boolean leftVariables = hasVariables;
+        int op = token(binaryExpression, 1);
+        TokenType right = analyzeOperand(node(binaryExpression, 2), scope);
+        if (left == null || right == null) return null;
+
+        TokenType type = getBinaryType(op, left, right);
+        if (type == null) return null;
+
+        hasVariables |= leftVariables;
+        if (leftValue == null || value == null) {
+            value = null;
+            return type;
+        }
+        value = calcBinary(tokens.type(op), left, leftValue, value);
+        return value == null ? null : type;
+    }
+
+    // Тип результата операции или null (с сообщением об ошибке), если типы операндов не подходят
+    private TokenType getBinaryType(int op, TokenType left, TokenType right) {
+        boolean numbers = left == right && (left == TokenType.NUMBER || left == TokenType.FLOAT_NUMBER);
+        String name = tokens.text(op);
+        switch (tokens.type(op)) {
+            case OR, AND -> {
+                if (left == TokenType.BOOLEAN && right == TokenType.BOOLEAN) return TokenType.BOOLEAN;
+                errors = true;
+                diagnostics.report(DiagnosticCode.LOGICAL_OPERAND_TYPES, 0, 0, name);
+                return null;
+            }
+            case DOUBLE_EQUAL, NOT_EQUALS -> {
+                if (numbers || (left == TokenType.BOOLEAN && right == TokenType.BOOLEAN)) return TokenType.BOOLEAN;
+                errors = true;
+                diagnostics.report(DiagnosticCode.EQUALITY_OPERAND_TYPES, 0, 0, name,
+                        getStringFromReturnType(left), getStringFromReturnType(right));
+                return null;
+            }
+            case LESS_THAN, GREATER_THAN, LESS_THAN_EQUALS, GREATER_THAN_EQUALS, PLUS, MINUS, MULTIPLICATION, DIVISION -> {
+                if (numbers) return isComparison(tokens.type(op)) ? TokenType.BOOLEAN : left;
+                errors = true;
+                diagnostics.report(DiagnosticCode.ARITHMETIC_OPERAND_TYPES, 0, 0, name,
+                        getStringFromReturnType(left), getStringFromReturnType(right));
+                return null;
+            }
+            default -> throw new RuntimeException(); // Ошибка грамматики
+        }
+    }
+
+    private boolean isComparison(TokenType op) {
+        return op == TokenType.LESS_THAN || op == TokenType.GREATER_THAN
+                || op == TokenType.LESS_THAN_EQUALS || op == TokenType.GREATER_THAN_EQUALS;
+    }
+
+    // Вычисление операции над константами; null - деление на ноль
+    private String calcBinary(TokenType op, TokenType type, String l, String r) {
+        boolean isInteger = type == TokenType.NUMBER;
+        boolean isBoolean = type == TokenType.BOOLEAN;
+
+        Object result;
+        switch (op) {
+            case OR -> result = Boolean.parseBoolean(l) || Boolean.parseBoolean(r);
+            case AND -> result = Boolean.parseBoolean(l) && Boolean.parseBoolean(r);
+            case DOUBLE_EQUAL, NOT_EQUALS -> {
+                boolean equal;
+                if (isBoolean) equal = Boolean.parseBoolean(l) == Boolean.parseBoolean(r);
+                else if (isInteger) equal = Integer.parseInt(l) == Integer.parseInt(r);
+                else equal = Float.parseFloat(l) == Float.parseFloat(r);
+                result = op == TokenType.DOUBLE_EQUAL ? equal : !equal;
+            }
+            case LESS_THAN -> result = isInteger ? Integer.parseInt(l) < Integer.parseInt(r) : Float.parseFloat(l) < Float.parseFloat(r);
+            case GREATER_THAN -> result = isInteger ? Integer.parseInt(l) > Integer.parseInt(r) : Float.parseFloat(l) > Float.parseFloat(r);
+            case LESS_THAN_EQUALS -> result = isInteger ? Integer.parseInt(l) <= Integer.parseInt(r) : Float.parseFloat(l) <= Float.parseFloat(r);
+            case GREATER_THAN_EQUALS -> result = isInteger ? Integer.parseInt(l) >= Integer.parseInt(r) : Float.parseFloat(l) >= Float.parseFloat(r);
+            case PLUS -> result = isInteger ? (Object) (Integer.parseInt(l) + Integer.parseInt(r)) : (Object) (Float.parseFloat(l) + Float.parseFloat(r));
+            case MINUS -> result = isInteger ? (Object) (Integer.parseInt(l) - Integer.parseInt(r)) : (Object) (Float.parseFloat(l) - Float.parseFloat(r));
+            case MULTIPLICATION -> result = isInteger ? (Object) (Integer.parseInt(l) * Integer.parseInt(r)) : (Object) (Float.parseFloat(l) * Float.parseFloat(r));
+            case DIVISION -> {
+                if (Float.parseFloat(r) == 0.0) {
+                    errors = true;
+                    // TODO: ошибка деления на ноль
+                    return null;
+                }
+                result = isInteger ? (Object) (Integer.parseInt(l) / Integer.parseInt(r)) : (Object) (Float.parseFloat(l) / Float.parseFloat(r));
+            }
+            default -> throw new RuntimeException(); // Ошибка грамматики
+        }
+        return String.valueOf(result);
+    }
+
+    private TokenType analyzeUnaryExpression(int unaryExpression, Scope scope) { // op <операнд>
+        int token = token(unaryExpression, 0);
+        TokenType type = analyzeOperand(node(unaryExpression, 1), scope);
+        if (type == null) return null;
+        switch (tokens.type(token)) {
+            case MINUS -> {
+                if (type != TokenType.NUMBER && type != TokenType.FLOAT_NUMBER) {
+                    errors = true;
+                    reportAt(token, DiagnosticCode.EXPECTED_NUMBER);
+                    return null;
+                }
+                if (value != null) value = value.charAt(0) == '-' ? value.substring(1) : '-' + value;
+            }
+            case NOT -> {
+                if (type != TokenType.BOOLEAN) {
+                    errors = true;
+                    reportAt(token, DiagnosticCode.EXPECTED_BOOLEAN);
+                    return null;
+                }
+                if (value != null) value = value.equals("true") ? "false" : "true";
+            }
+            default -> throw new RuntimeException(); // Ошибка грамматики
+        }
+        return type;
+    }
+
+    private TokenType analyzePrimaryExpression(int primaryExpression, Scope scope) {
+        int current = ast.firstChild(primaryExpression);
+        if (ast.isToken(current)) return analyzeExpression(node(primaryExpression, 1), scope); // "(" <expression> ")"
+        switch (ast.kind(current)) {
+            case IDENTIFIER_OR_FUNCTION_CALL -> {
+                int identity = token(current, 0);
+                int identifierEndOrFunctionCall = node(current, 1);
+                if (ast.isEpsilon(identifierEndOrFunctionCall)) return analyzeIdentifier(identity, scope);
+                return analyzeFunctionCall(node(identifierEndOrFunctionCall, 1), identity, scope);
+            }
+            case NUMBER -> {
+                return analyzeNumber(token(current, 0));
+            }
+            case BOOLEAN_LITERAL -> {
+                int token = token(current, 0);
+                hasVariables = false;
+                switch (tokens.type(token)) {
+                    case TRUE -> value = "true";
+                    case FALSE -> value = "false";
+                    default -> throw new RuntimeException();
+                }
+                return TokenType.BOOLEAN;
+            }
+            default -> throw new RuntimeException(); // Ошибка грамматики
+        }
+    }
+
+    private TokenType analyzeIdentifier(int token, Scope scope) {
+        Variable variable = scope.getVariable(tokens.symbol(token));
+        if (variable == null) {
+            reportUndeclaredVariable(token);
+            return null;
+        }
+        hasVariables = true;
+        if (!variable.isMutable() && !scope.isForOrWhileScope()) { // const
+            if (!variable.isAnnounced()) {
+                errors = true;
+                reportAt(token, DiagnosticCode.UNDEFINED_VALUE, tokens.text(token));
+                return null;
+            }
+            value = variable.getValue(); // null - переменная объявлена без значения
+        } else {
+            variable.setMutable(true); // из-за цикла while
+            value = null;
+        }
+        return variable.getType();
+    }
+
+    private TokenType analyzeNumber(int token) {
+        TokenType type = tokens.type(token);
+        if (type != TokenType.NUMBER && type != TokenType.FLOAT_NUMBER) throw new RuntimeException();
+        hasVariables = false;
+        value = getRemoveZerosAndGetNumber(type, tokens.text(token));
+        try {
+            if (type == TokenType.NUMBER) Integer.parseInt(value);
+            else if (Float.isInfinite(Float.parseFloat(value))) throw new NumberFormatException();
+        } catch (NumberFormatException e) {
+            errors = true;
+            reportAt(token, type == TokenType.NUMBER ? DiagnosticCode.INT_OVERFLOW : DiagnosticCode.FLOAT_OVERFLOW);
+            value = null; // дальше не вычисляется
+        }
+        return type;
+    }
+
+    // Удаление ненужных нулей
+    private String getRemoveZerosAndGetNumber(TokenType type, String value) {
+        if (type == TokenType.FLOAT_NUMBER) value += '0';
+        int left = 0;
+        int right = value.length();
+        while (left != value.length() - 1 && value.charAt(left) == '0') left++;
+        if (value.charAt(left) == '.') left--;
+        if (type == TokenType.FLOAT_NUMBER) {
+            while (right - 1 != left && value.charAt(right - 1) == '0') right--;
+        }
+        if (value.charAt(right - 1) == '.') right++;
+        return value.substring(left, right);
+    }
+}
@@ -1,12 +1,10 @@
 package ru.krizhanovskiy.semantic_analyzer;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class Scope {
-    private final Map<String, Variable> variables = new HashMap<>();
+    private final SymbolMap<Variable> variables = new SymbolMap<>(); // ключ - номер имени в таблице символов
     private Scope parent;
     private final List<Scope> children = new ArrayList<>();
     private boolean forOrWhileScope = false;
@@ -29,20 +27,19 @@ public class Scope {
         parent.addChildren(this);
     }
 
-    public Variable getVariable(String name) {
-        if (variables.containsKey(name)) {
-            return variables.get(name);
-        }
+    public Variable getVariable(int symbol) {
+        Variable variable = variables.get(symbol);
+        if (variable != null) return variable;
         if (parent == null) return null;
-        return parent.getVariable(name);
+        return parent.getVariable(symbol);
     }
 
     public void addVariable(Variable variable) {
-        variables.put(variable.getName(), variable);
+        variables.put(variable.getSymbol(), variable);
     }
 
     public List<Variable> getVariables() {
-        return variables.values().stream().toList();
+        return variables.values();
     }
 
     public boolean isForOrWhileScope() {
@@ -1,8 +1,12 @@
 package ru.krizhanovskiy.semantic_analyzer;
 
+import ru.krizhanovskiy.ast.AstWalker;
 import ru.krizhanovskiy.ast.Node;
+import ru.krizhanovskiy.ast.NodeKind;
 import ru.krizhanovskiy.ast.NonTerminalNode;
 import ru.krizhanovskiy.ast.TokenNode;
+import ru.krizhanovskiy.diagnostics.DiagnosticCode;
+import ru.krizhanovskiy.diagnostics.Diagnostics;
 import ru.krizhanovskiy.lexer.token.Token;
 import ru.krizhanovskiy.lexer.token.TokenType;
 
@@ -25,24 +29,41 @@ public class SemanticAnalyzer {
     private final List<NonTerminalNode> clearValueNodes = new ArrayList<>();
     private final List<AddAssignment> addAssignmentNodes = new ArrayList<>();
     record AddAssignment(NonTerminalNode node, List<Variable> variables){}
-    private final Map<String, List<ImmutableExpression>> removeImmutableExpression = new HashMap<>();
+    private final SymbolMap<List<ImmutableExpression>> removeImmutableExpression = new SymbolMap<>(); // по номеру символа переменной
     record ImmutableExpression(NonTerminalNode node, boolean forWhileUsed){}
 
     private int currentIndexMethod = 0;
+    private int statementIndex = 0; // номер анализируемого statement в его списке - для replaceStatement
     private NonTerminalNode mainMethod = null;
 
-    private static String yellowColorCode = "\u001B[33m";
-    private static String resetColorCode = "\u001B[0m";
-    private static void warningPrint(String text) {
-        System.out.println(yellowColorCode + text + resetColorCode);
+    private final Diagnostics diagnostics;
+
+    // Итоги анализа методов - в том же порядке, что methods
+    public final List<AnalyzedMethod> analyzedMethods = new ArrayList<>();
+    // Результаты прошлой сборки; null - все методы анализируются
+    public Cache cache = null;
+    private final Map<Method, Integer> methodIndexes = new IdentityHashMap<>(); // номера в methods - для вызовов из кэша
+
+    /**
+     * Анализ метода из прошлой сборки
+     */
+    public interface Cache {
+        /**
+         * @param methods все методы программы - по ним проверяются сигнатуры вызываемых методов
+         * @return null - метод изменился и анализируется заново
+         */
+        AnalyzedMethod find(NonTerminalNode method, List<Method> methods);
     }
 
-    public SemanticAnalyzer(NonTerminalNode rootAST) {
+    public SemanticAnalyzer(NonTerminalNode rootAST, Diagnostics diagnostics) {
         this.rootAST = rootAST;
+        this.diagnostics = diagnostics;
     }
 
     public void analyze() {
-        analyzeMethod((NonTerminalNode) rootAST.getChildren().get(0));
+        for (int i = 0; i < rootAST.size(); i++) {
+            analyzeMethod(rootAST.node(i), i);
+        }
         usedMethods = new boolean[methods.size()][methods.size()];
         scopes = new Scope[methods.size()];
         noDeclaredVariables = new Set[methods.size()];
@@ -52,7 +73,15 @@ public class SemanticAnalyzer {
             noDeclaredMethods[i] = new HashSet<>();
         });
 
+        // Без main анализ прерывается до удаления недостижимого кода и т.п. - деревья из кэша уже после него
+        Cache cache = mainMethod == null ? null : this.cache;
         for (int i = 0; i < statementsMethod.size(); i++) {
+            AnalyzedMethod cached = cache == null ? null : cache.find(rootAST.node(i), methods);
+            if (cached != null) {
+                reuseMethod(i, cached);
+                continue;
+            }
+            int reported = diagnostics.getDiagnostics().size();
             currentIndexMethod = i;
             currentMethod = methods.get(i);
             Scope scope = new Scope();
@@ -61,12 +90,18 @@ public class SemanticAnalyzer {
             DataStatement dataStatement = analyzeStatements(statementsMethod.get(i), scope);
             if (currentMethod.returnType() != TokenType.VOID && !dataStatement.hasReturn) {
                 errors = true;
-                System.err.printf("Method \"%s\" does not return a value on all execution paths.\n", currentMethod.name());
+                diagnostics.report(DiagnosticCode.MISSING_RETURN, 0, 0, currentMethod.name());
+            }
+            List<Method> calls = new ArrayList<>();
+            for (int j = 0; j < methods.size(); j++) {
+                if (usedMethods[i][j]) calls.add(methods.get(j));
             }
+            analyzedMethods.add(new AnalyzedMethod(rootAST.node(i),
+                    calls, List.copyOf(diagnostics.getDiagnostics().subList(reported, diagnostics.getDiagnostics().size()))));
         }
         if (mainMethod == null) {
             errors = true;
-            System.err.println("Main method not detected");
+            diagnostics.report(DiagnosticCode.MAIN_NOT_FOUND, 0, 0);
             return;
         }
         clearValueNodes();
@@ -74,37 +109,60 @@ public class SemanticAnalyzer {
         addAssignmentNodesInAST();
     }
 
+    // Метод не изменился с прошлой сборки: дерево после анализа, вызовы и сообщения берутся оттуда
+    private void reuseMethod(int index, AnalyzedMethod cached) {
+        cached.node().setPrev(rootAST);
+        rootAST.set(index, cached.node());
+        if (methodIndexes.isEmpty()) {
+            for (int i = 0; i < methods.size(); i++) methodIndexes.put(methods.get(i), i);
+        }
+        for (Method call : cached.calls()) {
+            usedMethods[index][methodIndexes.get(call)] = true;
+        }
+        cached.diagnostics().forEach(diagnostics::report);
+        analyzedMethods.add(cached);
+    }
+
     private void clearValueNodes() {
         clearValueNodes.forEach(this::clearValueNode);
     }
-    private boolean clearValueNode(NonTerminalNode node) {
-        //if (node.getValue() != null) {
-            if (node.name.equals("number")) return false;
-            if (node.name.equals("identifier-or-function-call")) {
+    // Значение узла сбрасывается, если в поддереве есть переменная или вызов функции
+    private void clearValueNode(NonTerminalNode node) {
+        AstWalker.walk(node, new AstWalker.Visitor() {
+            // Для каждого открытого узла - сброшено ли значение у кого-то из его детей
+            private boolean[] cleared = new boolean[64];
+            private int depth = 0;
+
+            @Override
+            public boolean enter(NonTerminalNode node) {
+                if (depth == cleared.length) cleared = Arrays.copyOf(cleared, depth * 2);
+                cleared[depth++] = false;
+                return node.getKind() != NodeKind.NUMBER && node.getKind() != NodeKind.IDENTIFIER_OR_FUNCTION_CALL;
+            }
+
+            @Override
+            public void leave(NonTerminalNode node) {
+                boolean clear = node.getKind() != NodeKind.NUMBER
+                        && (node.getKind() == NodeKind.IDENTIFIER_OR_FUNCTION_CALL || cleared[depth - 1]);
+                depth--;
+                if (!clear) return;
                 node.setValueAndType(null, null);
-                return true;
+                if (depth != 0) cleared[depth - 1] = true;
             }
-
-            List<Boolean> list = new ArrayList<>();
-            for (Node child : node.getChildren()) {
-                if (child instanceof NonTerminalNode n) {
-                    list.add(clearValueNode(n));
-                }
-            }
-            if (list.stream().anyMatch(el -> el)) {
-                node.setValueAndType(null, null);
-                return true;
-            }
-        //}
-        return false;
+        });
     }
 
     private void removeUnreachableCode() {
-        endStatementNodes.forEach(statementNode -> {
-            // Удаление кода за break, continue, return
-            NonTerminalNode statementOptionalUp = statementNode.getPrev();
-            NonTerminalNode statementOptionalDown = (NonTerminalNode) statementOptionalUp.getChildren().get(1);
-            statementOptionalDown.setChildren(List.of(new TokenNode(null)));
+        groupByParent(endStatementNodes).forEach((statements, endStatements) -> {
+            // Удаление кода за break, continue, return: список обрезается после первого из них.
+            // У тела if / while без {} (один statement) обрезать нечего
+            if (statements.getKind() != NodeKind.STATEMENTS) return;
+            for (int i = 0; i < statements.size(); i++) {
+                if (endStatements.contains(statements.child(i))) {
+                    statements.setChildren(statements.getChildren().subList(0, i + 1).toArray(new Node[0]));
+                    return;
+                }
+            }
         });
 
         // TODO: Добавить удаление неиспользуемых методов
@@ -114,15 +172,14 @@ public class SemanticAnalyzer {
     }
 
     private void removeImmutableExpressions() {
-        removeImmutableExpression.forEach((k, v) -> v.forEach(immutableExpression -> {
+        removeImmutableExpression.values().forEach(list -> list.forEach(immutableExpression -> {
             if (!immutableExpression.forWhileUsed) {
-                immutableExpression.node.setChildren(new ArrayList<>(List.of(new TokenNode(null))));
+                immutableExpression.node.setChildren(); // ε
             }
         }));
     }
 
     private void removeUnusedMethods() {
-        NonTerminalNode currentNode = (NonTerminalNode) rootAST.getChildren().get(1);
         boolean[] finalUsedMethods = new boolean[methods.size()];
         finalUsedMethods[0] = true;
         Set<Integer> checked = new HashSet<>();
@@ -142,27 +199,24 @@ public class SemanticAnalyzer {
         }
 
 
+        List<Node> methodNodes = new ArrayList<>(rootAST.getChildren());
         int unusedMethods = 0;
         for (int i = 1; i < methods.size(); i++) {
             if (!finalUsedMethods[i]) {
-                NonTerminalNode methodOptionalOrProgram = currentNode.getPrev();
-                NonTerminalNode methodOptionalDown = (NonTerminalNode) currentNode.getChildren().get(1);
-                methodOptionalOrProgram.getChildren().set(1, methodOptionalDown);
-                methodOptionalDown.setPrev(methodOptionalOrProgram);
-                currentNode = methodOptionalOrProgram;
-
+                methodNodes.remove(i - unusedMethods);
                 methods.remove(i - unusedMethods);
+                analyzedMethods.remove(i - unusedMethods);
                 unusedMethods++;
             }
-            currentNode = (NonTerminalNode) currentNode.getChildren().get(1);
         }
+        rootAST.setChildren(methodNodes.toArray(new Node[0]));
 
         detectUnusedVariable(finalUsedMethods);
     }
 
     private void detectUnusedVariable(boolean[] usedMethods) {
         for (int i = 0; i < usedMethods.length; i++) {
-            if (usedMethods[i]) {
+            if (usedMethods[i] && scopes[i] != null) { // у метода из прошлой сборки переменные уже удалены
                 detectUnusedVariableInScope(scopes[i]);
             }
         }
@@ -173,7 +227,7 @@ public class SemanticAnalyzer {
             if (var.isUsed()) continue;
             if (var.getDeclarationStatement() == null) continue;
 
-            var.getDeclarationStatement().setChildren(List.of(new TokenNode(null))); // statement ребёнок ε
+            var.getDeclarationStatement().setChildren(); // statement без детей - ε
         }
         for (Scope scope1 : scope.getChildren()) {
             detectUnusedVariableInScope(scope1);
@@ -181,75 +235,109 @@ public class SemanticAnalyzer {
     }
 
     private void removeEmptyStatementsNodes() {
-        emptyStatementNodes.forEach(emptyStatement -> {
-            NonTerminalNode statementOptionalUp = emptyStatement.getPrev();
-            NonTerminalNode statementOptionalDown = (NonTerminalNode) emptyStatement.getChildren().get(1);
-            int index = 1;
-            if (statementOptionalUp.name.equals("method")) {
-                index = 6;
-                statementOptionalDown.name = "statements";
+        groupByParent(emptyStatementNodes).forEach((statements, emptyStatements) -> {
+            if (statements.getKind() != NodeKind.STATEMENTS) {
+                // Тело if / while без {} - statement остаётся пустым
+                emptyStatements.forEach(statement -> ((NonTerminalNode) statement).setChildren()); // ε
+                return;
             }
-            statementOptionalDown.setPrev(statementOptionalUp);
-            statementOptionalUp.getChildren().set(index, statementOptionalDown);
+            statements.setChildren(statements.getChildren().stream()
+                    .filter(statement -> !emptyStatements.contains(statement)).toArray(Node[]::new));
         });
     }
 
     private void addAssignmentNodesInAST() {
+        // Присваивания вставляются перед statement цикла
+        Map<Node, List<NonTerminalNode>> assignments = new IdentityHashMap<>();
         for (AddAssignment addAssignment : addAssignmentNodes) {
-            NonTerminalNode currentNode = addAssignment.node;
+            List<NonTerminalNode> list = new ArrayList<>();
             for (Variable variable : addAssignment.variables) {
                 NonTerminalNode assignmentNode = createAssignmentNode(variable);
-                if (assignmentNode == null) continue;
-                currentNode = insertStatementNode(currentNode, assignmentNode);
+                if (assignmentNode != null) list.add(assignmentNode);
             }
+            if (!list.isEmpty()) assignments.put(addAssignment.node, list);
         }
+        List<NonTerminalNode> loops = new ArrayList<>();
+        assignments.keySet().forEach(loop -> loops.add((NonTerminalNode) loop));
+        groupByParent(loops).forEach((parent, statements) -> {
+            if (parent.getKind() != NodeKind.STATEMENTS) {
+                // Тело if / while без {} - цикл вместе с присваиваниями оборачивается в блок
+                statements.forEach(statement -> wrapInBlock((NonTerminalNode) statement, assignments.get(statement)));
+                return;
+            }
+            List<Node> children = new ArrayList<>();
+            for (Node statement : parent.getChildren()) {
+                List<NonTerminalNode> list = assignments.get(statement);
+                if (list != null) children.addAll(list);
+                children.add(statement);
+            }
+            parent.setChildren(children.toArray(new Node[0]));
+        });
+    }
 
+    // { before... statement }
+    private void wrapInBlock(NonTerminalNode statement, List<NonTerminalNode> before) {
+        NonTerminalNode parent = statement.getPrev();
+        List<Node> children = new ArrayList<>(before);
+        children.add(statement);
+        NonTerminalNode statements = new NonTerminalNode(NodeKind.STATEMENTS, null, children.toArray(new Node[0]));
+        TokenNode open = new TokenNode(new Token(TokenType.OPEN_CURLY_BRACKET, "{", -10, -10));
+        TokenNode close = new TokenNode(new Token(TokenType.CLOSE_CURLY_BRACKET, "}", -10, -10));
+        NonTerminalNode block = new NonTerminalNode(NodeKind.STATEMENT, parent, open, statements, close);
+        parent.set(indexOf(parent, statement, 0), block);
     }
 
-    private NonTerminalNode insertStatementNode(NonTerminalNode current, NonTerminalNode statement) {
-        NonTerminalNode newNode = new NonTerminalNode("statements-optional", current, 2);
-        List<Node> children = current.getChildren();
-        children.forEach(child -> {
-            if (child instanceof NonTerminalNode) {
-                ((NonTerminalNode) child).setPrev(newNode);
-            }
-        });
-        statement.setPrev(current);
-        current.setChildren(new ArrayList<>(List.of(statement, newNode)));
-        newNode.setChildren(children);
+    // statement по узлам, детьми которых они являются
+    private static Map<NonTerminalNode, Set<Node>> groupByParent(List<NonTerminalNode> statements) {
+        Map<NonTerminalNode, Set<Node>> byParent = new IdentityHashMap<>();
+        for (NonTerminalNode statement : statements) {
+            byParent.computeIfAbsent(statement.getPrev(), parent -> Collections.newSetFromMap(new IdentityHashMap<>()))
+                    .add(statement);
+        }
+        return byParent;
+    }
+
+    // Номер child в детях parent; сначала проверяется hint
+    private static int indexOf(NonTerminalNode parent, Node child, int hint) {
+        if (hint < parent.size() && parent.child(hint) == child) return hint;
+        for (int i = 0; i < parent.size(); i++) {
+            if (parent.child(i) == child) return i;
+        }
+        throw new IllegalStateException("Node is not a child of its prev");
+    }
 
-        return newNode;
+    // Замена statement на replacement на том же месте (в списке statements или в теле if / while)
+    private void replaceStatement(NonTerminalNode statement, NonTerminalNode replacement) {
+        NonTerminalNode parent = statement.getPrev();
+        parent.set(indexOf(parent, statement, statementIndex), replacement);
+        replacement.setPrev(parent);
     }
 
     private NonTerminalNode createAssignmentNode(Variable variable) {
         String name = variable.getName();
         if (variable.isMutable()) return null;
 
-        NonTerminalNode statement = new NonTerminalNode("statement");
-
-        NonTerminalNode assignmentOrFunctionCall = new NonTerminalNode("assignment-or-function-call", statement, 2);
-        statement.setChildren(new ArrayList<>(List.of(assignmentOrFunctionCall)));
-
-        TokenNode identity = new TokenNode(new Token(TokenType.IDENTIFIER, name, -10, -10));
-        NonTerminalNode continueAssignmentOrFunctionCall = new NonTerminalNode("continue-assignment-or-function-call", assignmentOrFunctionCall, 2);
-        assignmentOrFunctionCall.setChildren(new ArrayList<>(List.of(identity, continueAssignmentOrFunctionCall)));
+        // Значение уже вычислено, поэтому у primary-expression нет детей
+        NonTerminalNode primaryExpression = new NonTerminalNode(NodeKind.PRIMARY_EXPRESSION, null, 0);
+        primaryExpression.setValueAndType(variable.getValue(), variable.getType());
+        NonTerminalNode expression = new NonTerminalNode(NodeKind.EXPRESSION, null, primaryExpression);
 
         TokenNode equal = new TokenNode(new Token(TokenType.EQUALS, "=", -10, -10));
-        NonTerminalNode expression = new NonTerminalNode("expression", continueAssignmentOrFunctionCall, 1);
-        continueAssignmentOrFunctionCall.setChildren(new ArrayList<>(List.of(equal, expression)));
+        NonTerminalNode continueAssignmentOrFunctionCall =
+                new NonTerminalNode(NodeKind.CONTINUE_ASSIGNMENT_OR_FUNCTION_CALL, null, equal, expression);
 
-        NonTerminalNode logicalOrExpression = new NonTerminalNode("logical-or-expression", expression, 1);
-        logicalOrExpression.setValueAndType(variable.getValue(), variable.getType());
-        expression.setChildren(new ArrayList<>(List.of(logicalOrExpression)));
+        TokenNode identity = new TokenNode(new Token(TokenType.IDENTIFIER, name, -10, -10, variable.getSymbol()));
+        NonTerminalNode assignmentOrFunctionCall =
+                new NonTerminalNode(NodeKind.ASSIGNMENT_OR_FUNCTION_CALL, null, identity, continueAssignmentOrFunctionCall);
 
-        return statement;
+        return new NonTerminalNode(NodeKind.STATEMENT, null, assignmentOrFunctionCall);
     }
 
-    private void analyzeMethod(NonTerminalNode method) {
-        TokenType returnType = getType((NonTerminalNode) method.getChildren().get(0));
-        String name = ((TokenNode) method.getChildren().get(1)).token.name();
+    private void analyzeMethod(NonTerminalNode method, int index) {
+        TokenType returnType = getType(method.node(0));
+        String name = method.token(1).name();
 
-        List<Variable> parameters = analyzeParameters((NonTerminalNode) method.getChildren().get(3));
+        List<Variable> parameters = analyzeParameters(method.node(3));
 
         // Проверка - существует ли уже метод с таким название и параметрами
         AtomicBoolean hasMethod = new AtomicBoolean(false);
@@ -268,113 +356,101 @@ public class SemanticAnalyzer {
 
         if (hasMethod.get()) {
             errors = true;
-            System.err.println("Method \"" + name + "\" has already been analyzed.");
+            diagnostics.report(DiagnosticCode.DUPLICATE_METHOD, 0, 0, name);
             methods.add(new Method(getReturnType(returnType), parameters, name));
-            statementsMethod.add((NonTerminalNode) method.getChildren().get(6));
+            statementsMethod.add(method.node(6));
         } else {
             if (name.equals("main") && returnType == TokenType.VOID && parameters.isEmpty()) {
                 mainMethod = method;
                 if (methods.isEmpty()) {
                     methods.add(0, new Method(getReturnType(returnType), parameters, name));
-                    statementsMethod.add(0, (NonTerminalNode) method.getChildren().get(6));
+                    statementsMethod.add(0, method.node(6));
                 } else {
-                    NonTerminalNode statement = (NonTerminalNode) method.getChildren().get(6);
+                    NonTerminalNode statement = method.node(6);
                     methods.add(0, new Method(getReturnType(returnType), parameters, name));
                     statementsMethod.add(0, statement);
-                    method = analyzeMainMethod(method);
+                    analyzeMainMethod(method, index);
                 }
             } else {
                 methods.add(new Method(getReturnType(returnType), parameters, name));
-                statementsMethod.add((NonTerminalNode) method.getChildren().get(6));
+                statementsMethod.add(method.node(6));
             }
         }
-
-        NonTerminalNode methodOptional = (NonTerminalNode) method.getPrev().getChildren().get(1);
-        if (methodOptional.getChildren().get(0) instanceof NonTerminalNode) {
-            analyzeMethod((NonTerminalNode) methodOptional.getChildren().get(0));
-        }
     }
 
-    // return newCurrentMethod
-    private NonTerminalNode analyzeMainMethod(NonTerminalNode method) {
+    // main становится первым методом, первый метод - на место main
+    private void analyzeMainMethod(NonTerminalNode method, int index) {
         methods.add(methods.remove(1));
         statementsMethod.add(statementsMethod.remove(1));
 
-        NonTerminalNode methodOptional = method.getPrev();
-        NonTerminalNode rotateMethod = (NonTerminalNode) rootAST.getChildren().get(0);
-        rotateMethod.setPrev(methodOptional);
-        methodOptional.getChildren().set(0, rotateMethod);
-
-        method.setPrev(rootAST);
-        rootAST.getChildren().set(0, method);
-        return rotateMethod;
+        rootAST.set(index, rootAST.node(0));
+        rootAST.set(0, method);
     }
 
     private List<Variable> analyzeParameters(NonTerminalNode parameters) {
-        if (parameters.getChildren().get(0) instanceof NonTerminalNode) {
-            List<Variable> list = analyzeParameter((NonTerminalNode) parameters.getChildren().get(0)); // parameter
-            list.addAll(analyzeParameters((NonTerminalNode) parameters.getChildren().get(1))); // parameter-optional
-            return list;
-        } else {
-            if (((TokenNode) parameters.getChildren().get(0)).token == null) { // ε
-                return new ArrayList<>();
-            } else {
-                List<Variable> list = analyzeParameter((NonTerminalNode) parameters.getChildren().get(1)); // index 0 - ","
-                list.addAll(analyzeParameters((NonTerminalNode) parameters.getChildren().get(2)));
-                return list;
-            }
+        List<Variable> list = new ArrayList<>();
+        for (int i = 0; i < parameters.size(); i++) {
+            list.addAll(analyzeParameter(parameters.node(i)));
         }
+        return list;
     }
 
     private List<Variable> analyzeParameter(NonTerminalNode parameter) {
-        TokenType type = getType((NonTerminalNode) parameter.getChildren().get(0));
+        TokenType type = getType(parameter.node(0));
         TokenType variableType = getReturnType(type);
-        String name = ((TokenNode) parameter.getChildren().get(1)).token.name();
+        Token name = parameter.token(1);
         List<Variable> list = new ArrayList<>();
-        Variable variable = new Variable(variableType, name, null);
+        Variable variable = new Variable(variableType, name.name(), name.symbol(), null);
         variable.setAnnounced(true);
         variable.setMutable(true);
         list.add(variable);
         return list;
     }
 
+    // Сообщение с позицией первого токена оператора (if, while, for)
+    private void reportAt(NonTerminalNode statement, DiagnosticCode code) {
+        Token token = statement.token(0);
+        diagnostics.report(code, token.line(), token.column());
+    }
+
     private TokenType getType(NonTerminalNode returnTypeOrType) {
-        if (returnTypeOrType.getChildren().get(0) instanceof NonTerminalNode) { // returnType
-            return ((TokenNode) ((NonTerminalNode) returnTypeOrType.getChildren().get(0))
-                    .getChildren().get(0)).token.type();
+        if (returnTypeOrType.child(0) instanceof NonTerminalNode) { // returnType
+            return returnTypeOrType.node(0).token(0).type();
         }
-        return ((TokenNode) returnTypeOrType.getChildren().get(0)).token.type();
+        return returnTypeOrType.token(0).type();
     }
 
     private DataStatement analyzeStatements(NonTerminalNode statements, Scope scope) {
-        if (statements.getChildren().get(0) instanceof NonTerminalNode) { // statement
-            DataStatement ds1 = analyzeStatement((NonTerminalNode) statements.getChildren().get(0), scope);
-            DataStatement ds2 = analyzeStatements((NonTerminalNode) statements.getChildren().get(1), scope);
-            return new DataStatement(ds1.hasReturn || ds2.hasReturn);
+        int outerIndex = statementIndex;
+        boolean hasReturn = false;
+        for (int i = 0; i < statements.size(); i++) {
+            statementIndex = i;
+            hasReturn |= analyzeStatement(statements.node(i), scope).hasReturn;
         }
-        return new DataStatement(false);
+        statementIndex = outerIndex;
+        return new DataStatement(hasReturn);
     }
 
     private DataStatement analyzeStatement(NonTerminalNode statement, Scope scope) {
-        if (statement.getChildren().get(0) instanceof NonTerminalNode current) {
-            String firstNonTerminal = current.name;
-            switch (firstNonTerminal) {
-                case "declaration" -> {
+        if (statement.isEpsilon()) return new DataStatement(false); // ε
+        if (statement.child(0) instanceof NonTerminalNode current) {
+            switch (current.getKind()) {
+                case DECLARATION -> {
                     analyzeDeclaration(current, scope, false);
                 }
-                case "assignment-or-function-call" -> {
+                case ASSIGNMENT_OR_FUNCTION_CALL -> {
                     analyzeAssignmentOrFunctionCall(current, scope);
                 }
-                case "if-statement" -> {
+                case IF_STATEMENT -> {
                     return analyzeIfStatement(current, scope);
                 }
-                case "while-loop" -> {
+                case WHILE_LOOP -> {
                     return analyzeWhileStatement(current, scope);
                 }
-                case "for-loop" -> {
+                case FOR_LOOP -> {
                     return forLoop(current, new Scope(scope));
                 }
-                case "return-statement" -> {
+                case RETURN_STATEMENT -> {
                     return returnStatement(current, scope);
                 }
                 default -> throw new RuntimeException(); // Grammar Error
@@ -382,10 +458,9 @@ public class SemanticAnalyzer {
             }
             return new DataStatement(false);
         }
-        if (((TokenNode) statement.getChildren().get(0)).token == null) return new DataStatement(false); // ε
-        switch (((TokenNode) statement.getChildren().get(0)).token.type()) {
+        switch (statement.token(0).type()) {
             case OPEN_CURLY_BRACKET -> {
-                return analyzeStatements((NonTerminalNode) statement.getChildren().get(1), new Scope(scope));
+                return analyzeStatements(statement.node(1), new Scope(scope));
             }
             case BREAK -> {
                 analyzeBreak((NonTerminalNode) statement, scope);
@@ -400,28 +475,29 @@ public class SemanticAnalyzer {
     }
 
     private void analyzeDeclaration(NonTerminalNode declaration, Scope scope, boolean forLoop) {
-        TokenType returnType = getType((NonTerminalNode) declaration.getChildren().get(0));
-        String name = ((TokenNode) declaration.getChildren().get(1)).token.name();
+        TokenType returnType = getType(declaration.node(0));
+        String name = declaration.token(1).name();
+        int symbol = declaration.token(1).symbol();
 
-        Variable variable = scope.getVariable(name);
+        Variable variable = scope.getVariable(symbol);
         boolean localError = false;
         if (variable != null) {
             errors = true;
             localError = true;
-            System.err.printf("The variable \"%s\" has already been declared. Error in line: %d.\n",
-                    name, ((TokenNode) declaration.getChildren().get(1)).token.line());
+            Token token = declaration.token(1);
+            diagnostics.report(DiagnosticCode.DUPLICATE_VARIABLE, token.line(), token.column(), name);
         } else {
-            if (forLoop) variable = new Variable(getReturnType(returnType), name, null);
-            else variable = new Variable(getReturnType(returnType), name, declaration.getPrev());
+            if (forLoop) variable = new Variable(getReturnType(returnType), name, symbol, null);
+            else variable = new Variable(getReturnType(returnType), name, symbol, declaration.getPrev());
         }
         variable.setAnnounced(true);
 
         NonTerminalNode expression = null;
-        if (declaration.getPrev().getChildren().get(1) instanceof NonTerminalNode optionalAssignment) {
-            if (((TokenNode) optionalAssignment.getChildren().get(0)).token != null)
-                expression = (NonTerminalNode) optionalAssignment.getChildren().get(1);
+        if (declaration.getPrev().child(1) instanceof NonTerminalNode optionalAssignment) {
+            if (!optionalAssignment.isEpsilon())
+                expression = optionalAssignment.node(1);
         } else {
-            expression = (NonTerminalNode) declaration.getPrev().getChildren().get(2);
+            expression = declaration.getPrev().node(2);
         }
 
         if (expression != null) {
@@ -429,9 +505,9 @@ public class SemanticAnalyzer {
             if (typeExpression == null) return;
             if (noMatchReturnType(typeExpression.type(), variable.getType())) {
                 errors = true;
-                System.err.printf("The expression type does not match the variable type. Expected %s, but got %s. Error in line: %d.\n",
-                        getStringFromReturnType(variable.getType()), getStringFromReturnType(typeExpression.type()),
-                        ((TokenNode) declaration.getChildren().get(1)).token.line());
+                Token token = declaration.token(1);
+                diagnostics.report(DiagnosticCode.DECLARATION_TYPE_MISMATCH, token.line(), token.column(),
+                        getStringFromReturnType(variable.getType()), getStringFromReturnType(typeExpression.type()));
                 return;
             }
             if (!localError) {
@@ -442,9 +518,9 @@ public class SemanticAnalyzer {
 
                 if (typeExpression.mutable || forLoop) variable.setUsed(true);
                 else {
-                    if (!removeImmutableExpression.containsKey(name)) removeImmutableExpression.put(name, new ArrayList<>());
-                    removeImmutableExpression.get(name).add(new ImmutableExpression(expression.getPrev(), false));
-                    //expression.getPrev().setChildren(new ArrayList<>(List.of(new TokenNode(null))));
+                    if (!removeImmutableExpression.containsKey(symbol)) removeImmutableExpression.put(symbol, new ArrayList<>());
+                    removeImmutableExpression.get(symbol).add(new ImmutableExpression(expression.getPrev(), false));
+                    //expression.getPrev().setChildren();
                 }
 
                 // TODO: в байт код
@@ -473,30 +549,13 @@ public class SemanticAnalyzer {
         };
     }
 
-    private String getStringFromOperand(TokenType type) {
-        return switch (type) {
-            case PLUS -> "+";
-            case MINUS -> "-";
-            case MULTIPLICATION -> "*";
-            case DIVISION -> "/";
-            case EQUALS -> "=";
-            case DOUBLE_EQUAL -> "==";
-            case NOT_EQUALS -> "!=";
-            case LESS_THAN -> "<";
-            case GREATER_THAN -> ">";
-            case LESS_THAN_EQUALS -> "<=";
-            case GREATER_THAN_EQUALS -> ">=";
-            default -> type.toString();
-        };
-    }
-
     private void analyzeAssignmentOrFunctionCall(NonTerminalNode assignmentOrFunctionCall, Scope scope) {
-        Token identity = ((TokenNode) assignmentOrFunctionCall.getChildren().get(0)).token;
-        NonTerminalNode continueAssignmentOrFunctionCall = (NonTerminalNode) assignmentOrFunctionCall.getChildren().get(1);
-        NonTerminalNode next = (NonTerminalNode) continueAssignmentOrFunctionCall.getChildren().get(1);
-        if (((TokenNode) continueAssignmentOrFunctionCall.getChildren().get(0)).token.type() == TokenType.EQUALS) {
+        Token identity = assignmentOrFunctionCall.token(0);
+        NonTerminalNode continueAssignmentOrFunctionCall = assignmentOrFunctionCall.node(1);
+        NonTerminalNode next = continueAssignmentOrFunctionCall.node(1);
+        if (continueAssignmentOrFunctionCall.token(0).type() == TokenType.EQUALS) {
             TypeExpression typeExpression = analyzeExpression(next, scope);
-            analyzeAssigment(identity, typeExpression, scope, assignmentOrFunctionCall.getPrev().getPrev());
+            analyzeAssigment(identity, typeExpression, scope, assignmentOrFunctionCall.getPrev());
         } else {
             analyzeFunctionCall(next, identity, scope);
         }
@@ -505,20 +564,18 @@ public class SemanticAnalyzer {
     private void analyzeAssigment(Token identity, TypeExpression typeExpression, Scope scope, NonTerminalNode statement) {
         if (typeExpression == null) return;
 
-        Variable variable = scope.getVariable(identity.name());
+        Variable variable = scope.getVariable(identity.symbol());
         if (variable == null) {
             if (!noDeclaredVariables[currentIndexMethod].contains(identity.name())) {
                 noDeclaredVariables[currentIndexMethod].add(identity.name());
                 errors = true;
-                System.err.printf("The variable \"%s\" not declared. Error in line: %d.\n",
-                        identity.name(), identity.line());
+                diagnostics.report(DiagnosticCode.UNDECLARED_VARIABLE, identity.line(), identity.column(), identity.name());
             }
             return;
         }
         if (noMatchReturnType(typeExpression.type(), variable.getType())) {
             errors = true;
-            System.err.println("The expression type does not match the variable type. Error in line: " +
-                    identity.line());
+            diagnostics.report(DiagnosticCode.ASSIGNMENT_TYPE_MISMATCH, identity.line(), identity.column());
             return;
         }
         if (!typeExpression.mutable()) {
@@ -542,48 +599,43 @@ public class SemanticAnalyzer {
                 if (!noDeclaredMethods[currentIndexMethod].contains(identity.name())) {
                     noDeclaredMethods[currentIndexMethod].add(identity.name());
                     errors = true;
-                    System.err.printf("Method \"%s\" not found\n", identity.name());
+                    diagnostics.report(DiagnosticCode.METHOD_NOT_FOUND, identity.line(), identity.column(), identity.name());
                 }
                 return null;
             }
         }
 
-        boolean zeroArgumentsOrString = (arguments.getChildren().get(0) instanceof  TokenNode);
+        boolean zeroArgumentsOrString = arguments.isEpsilon() || arguments.child(0) instanceof TokenNode;
 
-        if (zeroArgumentsOrString || arguments.getChildren().get(0) instanceof NonTerminalNode) { // expression
+        if (zeroArgumentsOrString || arguments.child(0) instanceof NonTerminalNode) { // expression
             List<NonTerminalNode> expressions = new ArrayList<>();
 
             if (!zeroArgumentsOrString) {
-                NonTerminalNode argumentList = (NonTerminalNode) arguments.getChildren().get(0);
-                do {
-                    NonTerminalNode expression = (NonTerminalNode) argumentList.getChildren().get(0);
-                    expressions.add(expression);
-                    argumentList = (NonTerminalNode) argumentList.getChildren().get(1); // argument-list-optional
-                    if (((TokenNode) argumentList.getChildren().get(0)).token == null) break;
-                    argumentList = (NonTerminalNode) argumentList.getChildren().get(1);
-                } while (true);
+                NonTerminalNode argumentList = arguments.node(0);
+                for (int i = 0; i < argumentList.size(); i++) {
+                    expressions.add(argumentList.node(i));
+                }
             }
             List<Method> filterMethods = currentMethods.stream().filter(method -> method.parameters().size() == expressions.size()).toList();
             if (filterMethods.isEmpty()) {
-                if (expressions.isEmpty() && ((TokenNode) arguments.getChildren().get(0)).token != null) { // STRING
+                if (expressions.isEmpty() && !arguments.isEpsilon()) { // STRING
                     expressions.add(null);
                 }
                 if (expressions.isEmpty()) {
                     if (identity.name().equals("intInput")) {
                         // TODO: код добавления в промежуточное представление
-                        return new TypeExpression(TokenType.NUMBER, true, null, null, new HashSet<>());
+                        return new TypeExpression(TokenType.NUMBER, true, null, new HashSet<>());
                     }
                     if (identity.name().equals("floatInput")) {
                         // TODO: код добавления в промежуточное представление
-                        return new TypeExpression(TokenType.FLOAT_NUMBER, true, null, null, new HashSet<>());
+                        return new TypeExpression(TokenType.FLOAT_NUMBER, true, null, new HashSet<>());
                     }
                 }
                 if (expressions.size() == 1 && identity.name().equals("print"))  {
 
-                    if (arguments.getChildren().get(0) instanceof TokenNode
-                            && ((TokenNode) arguments.getChildren().get(0)).token != null) { // STRING
+                    if (!arguments.isEpsilon() && arguments.child(0) instanceof TokenNode) { // STRING
                         // TODO: Код для вывода строки в консоль
-                        return new TypeExpression(TokenType.VOID, false, null, null, new HashSet<>());
+                        return new TypeExpression(TokenType.VOID, false, null, new HashSet<>());
                     }
                     TypeExpression typeExpression = analyzeExpression(expressions.get(0), scope);
                     if (typeExpression == null) return null;
@@ -591,15 +643,15 @@ public class SemanticAnalyzer {
                         // TODO: тип не воид
                     }
                     // TODO: код добавления в промежуточное представление
-                    return new TypeExpression(TokenType.VOID, true, null, null, new HashSet<>());
+                    return new TypeExpression(TokenType.VOID, true, null, new HashSet<>());
                 }
 
-                System.err.println("No method found with given number of arguments.");
+                diagnostics.report(DiagnosticCode.ARGUMENT_COUNT_MISMATCH, identity.line(), identity.column());
                 return null;
             }
 
             Method method = null;
-            Set<String> usedVariables = new HashSet<>();
+            Set<Integer> usedVariables = new HashSet<>();
             for (Method meth : filterMethods) {
                 boolean parametersError = false;
                 for (int i = 0; i < expressions.size(); i++) {
@@ -635,12 +687,12 @@ public class SemanticAnalyzer {
             }
 
 
-            return new TypeExpression(method.returnType(), true, null, null, usedVariables);
+            return new TypeExpression(method.returnType(), true, null, usedVariables);
         }
-        if (((TokenNode) arguments.getChildren().get(0)).token != null) { // STRING
+        if (!arguments.isEpsilon()) { // STRING
             if (identity.name().equals("print")) {
                 // TODO: Код для вывода строки в консоль
-                return new TypeExpression(TokenType.VOID, false, null, null, new HashSet<>());
+                return new TypeExpression(TokenType.VOID, false, null, new HashSet<>());
             } else {
                 // TODO: Метода с таким аргументом нет
                 return null;
@@ -653,8 +705,8 @@ public class SemanticAnalyzer {
         // Удаление кода за break
         endStatementNodes.add(statement);
         if (!scope.isForOrWhileScope()) {
-            int line = ((TokenNode) statement.getChildren().get(0)).token.line();
-            System.err.printf("Break is outside the loop. Error in line: %d.\n", line);
+            Token token = statement.token(0);
+            diagnostics.report(DiagnosticCode.BREAK_OUTSIDE_LOOP, token.line(), token.column());
         }
 
     }
@@ -663,24 +715,24 @@ public class SemanticAnalyzer {
         // Удаление кода за continue
         endStatementNodes.add(statement);
         if (!scope.isForOrWhileScope()) {
-            int line = ((TokenNode) statement.getChildren().get(0)).token.line();
-            System.err.printf("Continue is outside the loop.. Error in line: %d.\n", line);
+            Token token = statement.token(0);
+            diagnostics.report(DiagnosticCode.CONTINUE_OUTSIDE_LOOP, token.line(), token.column());
         }
 
     }
 
     private DataStatement analyzeIfStatement(NonTerminalNode ifStatement, Scope scope) {
-        NonTerminalNode expression = (NonTerminalNode) ifStatement.getChildren().get(2);
+        NonTerminalNode expression = ifStatement.node(2);
         TypeExpression typeExpression = analyzeExpression(expression, scope);
         boolean localError = typeExpression == null;
         if (!localError && typeExpression.type() != TokenType.BOOLEAN) {
             errors = true;
             localError = true;
-            Token token = ((TokenNode) ifStatement.getChildren().get(0)).token;
-            System.err.printf("Invalid data type. Expected boolean. Error in line: %d.\n", token.line());
+            Token token = ifStatement.token(0);
+            diagnostics.report(DiagnosticCode.EXPECTED_BOOLEAN, token.line(), token.column());
         }
 
-        NonTerminalNode statement = (NonTerminalNode) ifStatement.getChildren().get(4);
+        NonTerminalNode statement = ifStatement.node(4);
 
         Scope statementScope = new Scope(scope);
         if (!localError && !typeExpression.mutable() && typeExpression.value().equals("false")) {
@@ -688,11 +740,11 @@ public class SemanticAnalyzer {
         }
 
         DataStatement dataStatement = analyzeStatement(statement, statementScope);
-        NonTerminalNode elseOptional = (NonTerminalNode) ifStatement.getChildren().get(5);
+        NonTerminalNode elseOptional = ifStatement.node(5);
         NonTerminalNode elseStatement = null;
         DataStatement elseDataStatement = null;
-        if (((TokenNode) elseOptional.getChildren().get(0)).token != null) {
-            elseStatement = (NonTerminalNode) elseOptional.getChildren().get(1);
+        if (!elseOptional.isEpsilon()) {
+            elseStatement = elseOptional.node(1);
 
             Scope elseStatementScope = new Scope(scope);
             if (!localError && !typeExpression.mutable() && typeExpression.value().equals("true")) {
@@ -703,19 +755,16 @@ public class SemanticAnalyzer {
         }
         if (!localError && !typeExpression.mutable()) {
             NonTerminalNode statementUp = ifStatement.getPrev();
-            NonTerminalNode statementOptional = statementUp.getPrev();
             if (typeExpression.value().equals("true")) {
-                warningPrint("Warning! Expression is always true.");
-                statementOptional.getChildren().set(0, statement);
-                statement.setPrev(statementOptional);
+                reportAt(ifStatement, DiagnosticCode.ALWAYS_TRUE);
+                replaceStatement(statementUp, statement);
                 return dataStatement;
             } else {
-                warningPrint("Warning! Expression is always false.");
+                reportAt(ifStatement, DiagnosticCode.ALWAYS_FALSE);
                 if (elseStatement == null) {
-                    emptyStatementNodes.add(statementOptional);
+                    emptyStatementNodes.add(statementUp);
                 } else {
-                    statementOptional.getChildren().set(0, elseStatement);
-                    elseStatement.setPrev(statementOptional);
+                    replaceStatement(statementUp, elseStatement);
                     return elseDataStatement;
                 }
             }
@@ -728,15 +777,15 @@ public class SemanticAnalyzer {
     private DataStatement analyzeWhileStatement(NonTerminalNode whileStatement, Scope scope) {
         NonTerminalNode expression;
         NonTerminalNode statement;
-        Token token = ((TokenNode) whileStatement.getChildren().get(0)).token;
+        Token token = whileStatement.token(0);
         boolean doWhile = false;
         if (token.type() == TokenType.WHILE) {
-            expression = (NonTerminalNode) whileStatement.getChildren().get(2);
-            statement = (NonTerminalNode) whileStatement.getChildren().get(4);
+            expression = whileStatement.node(2);
+            statement = whileStatement.node(4);
         } else { // do {} while
             doWhile = true;
-            expression = (NonTerminalNode) whileStatement.getChildren().get(4);
-            statement = (NonTerminalNode) whileStatement.getChildren().get(1);
+            expression = whileStatement.node(4);
+            statement = whileStatement.node(1);
         }
         TypeExpression typeExpression = analyzeExpression(expression, scope);
 
@@ -744,7 +793,7 @@ public class SemanticAnalyzer {
         if (!localError && typeExpression.type() != TokenType.BOOLEAN) {
             localError = true;
             errors = true;
-            System.err.printf("Invalid data type. Expected boolean. Error in line: %d.\n", token.line());
+            diagnostics.report(DiagnosticCode.EXPECTED_BOOLEAN, token.line(), token.column());
         }
 
         Scope statementScope = new Scope.Builder().setParent(scope).setForOrWhileScope(true).build();
@@ -753,37 +802,33 @@ public class SemanticAnalyzer {
         }
 
         if (!localError && (typeExpression.mutable || typeExpression.value().equals("true"))) {
-            clearValueNodes.add((NonTerminalNode) expression.getChildren().get(0));
+            clearValueNodes.add(expression.node(0));
         }
 
         if (!localError && !typeExpression.mutable() && typeExpression.value().equals("true")) {
-            NonTerminalNode currentNode = whileStatement.getPrev().getPrev();
-
             List<Variable> variables = new ArrayList<>();
-            for (String var : typeExpression.variables) {
+            for (int var : typeExpression.variables) {
                 Variable variable = scope.getVariable(var);
                 if (variable.isMutable()) continue;
                 variables.add(variable);
                 variable.setUsed(true);
             }
-            if (!variables.isEmpty()) addAssignmentNodes.add(new AddAssignment(whileStatement.getPrev().getPrev(), variables));
+            if (!variables.isEmpty()) addAssignmentNodes.add(new AddAssignment(whileStatement.getPrev(), variables));
         }
         DataStatement dataStatement = analyzeStatement(statement, statementScope);
 
         if (!localError && !typeExpression.mutable()) {
             NonTerminalNode statementUp = whileStatement.getPrev();
-            NonTerminalNode statementOptional = statementUp.getPrev();
             if (typeExpression.value().equals("true") && typeExpression.variables.isEmpty()) {
-                warningPrint("Warning! Expression is always true.");
+                reportAt(whileStatement, DiagnosticCode.ALWAYS_TRUE);
                 return dataStatement;
             } else if (typeExpression.value().equals("false")) {
-                warningPrint("Warning! Expression is always false.");
+                reportAt(whileStatement, DiagnosticCode.ALWAYS_FALSE);
                 if (doWhile) {
-                    statementOptional.getChildren().set(0, statement);
-                    statement.setPrev(statementOptional);
+                    replaceStatement(statementUp, statement);
                     return dataStatement;
                 } else {
-                    emptyStatementNodes.add(statementOptional);
+                    emptyStatementNodes.add(statementUp);
                 }
             }
         }
@@ -795,33 +840,34 @@ public class SemanticAnalyzer {
 
     private DataStatement forLoop(NonTerminalNode forLoop, Scope scope) {
         Scope forScope = new Scope(scope, true);
-        NonTerminalNode declarationAndAssigment = (NonTerminalNode) forLoop.getChildren().get(2);
-        analyzeDeclaration((NonTerminalNode) declarationAndAssigment.getChildren().get(0), forScope, true);
-        NonTerminalNode expression = (NonTerminalNode) forLoop.getChildren().get(4);
+        NonTerminalNode declarationAndAssigment = forLoop.node(2);
+        analyzeDeclaration(declarationAndAssigment.node(0), forScope, true);
+        NonTerminalNode expression = forLoop.node(4);
         TypeExpression typeExpression = analyzeExpression(expression, forScope);
 
         if (typeExpression != null) {
             List<Variable> variables = new ArrayList<>();
-            for (String var : typeExpression.variables) {
+            for (int var : typeExpression.variables) {
                 Variable variable = forScope.getVariable(var);
                 if (variable.isMutable()) continue;
                 variables.add(variable);
                 variable.setUsed(true);
             }
-            if (!variables.isEmpty()) addAssignmentNodes.add(new AddAssignment(forLoop.getPrev().getPrev(), variables));
+            if (!variables.isEmpty()) addAssignmentNodes.add(new AddAssignment(forLoop.getPrev(), variables));
         }
 
-        NonTerminalNode assignment = (NonTerminalNode) forLoop.getChildren().get(6);
-        Token identity = ((TokenNode) assignment.getChildren().get(0)).token;
-        TypeExpression typeExpressionAssignment = analyzeExpression((NonTerminalNode) assignment.getChildren().get(2), forScope);
+        NonTerminalNode assignment = forLoop.node(6);
+        Token identity = assignment.token(0);
+        TypeExpression typeExpressionAssignment = analyzeExpression(assignment.node(2), forScope);
         analyzeAssigment(identity, typeExpressionAssignment, forScope, null);
-        NonTerminalNode statement = (NonTerminalNode) forLoop.getChildren().get(8);
+        NonTerminalNode statement = forLoop.node(8);
 
         boolean localError = typeExpression == null;
         if (!localError && typeExpression.type() != TokenType.BOOLEAN) {
             localError = true;
             errors = true;
-            System.err.print("Invalid data type. Expected boolean.\n");
+            Token token = forLoop.token(0);
+            diagnostics.report(DiagnosticCode.EXPECTED_BOOLEAN, token.line(), token.column());
         }
 
 
@@ -831,19 +877,18 @@ public class SemanticAnalyzer {
         DataStatement dataStatement = analyzeStatement(statement, forScope);
 
         if (!localError && (typeExpression.mutable || typeExpression.value().equals("true"))) {
-            clearValueNodes.add((NonTerminalNode) expression.getChildren().get(0));
+            clearValueNodes.add(expression.node(0));
         }
 
         if (!localError && !typeExpression.mutable()) {
             NonTerminalNode statementUp = forLoop.getPrev();
-            NonTerminalNode statementOptional = statementUp.getPrev();
 
             if (typeExpression.value().equals("true") && typeExpression.variables.isEmpty()) {
-                warningPrint("Warning! Expression is always true.");
+                reportAt(forLoop, DiagnosticCode.ALWAYS_TRUE);
                 return dataStatement;
             } else if (typeExpression.value().equals("false")) {
-                warningPrint("Warning! Expression is always false.");
-                emptyStatementNodes.add(statementOptional);
+                reportAt(forLoop, DiagnosticCode.ALWAYS_FALSE);
+                emptyStatementNodes.add(statementUp);
             }
         }
         return new DataStatement(false);
@@ -851,20 +896,20 @@ public class SemanticAnalyzer {
 
     private DataStatement returnStatement(NonTerminalNode returnStatement, Scope scope) {
         endStatementNodes.add(returnStatement.getPrev());
-        NonTerminalNode returnExpressionOrVoid = (NonTerminalNode) returnStatement.getChildren().get(1);
+        NonTerminalNode returnExpressionOrVoid = returnStatement.node(1);
         TokenType returnType;
-        if (returnExpressionOrVoid.getChildren().get(0) instanceof TokenNode) {
+        if (returnExpressionOrVoid.isEpsilon()) {
             returnType = TokenType.VOID;
         } else {
-            NonTerminalNode expression = (NonTerminalNode) returnExpressionOrVoid.getChildren().get(0);
+            NonTerminalNode expression = returnExpressionOrVoid.node(0);
             TypeExpression typeExpression = analyzeExpression(expression, scope);
             if (typeExpression == null) return new DataStatement(true);
             returnType = typeExpression.type();
         }
         if (noMatchReturnType(returnType, currentMethod.returnType())) {
             errors = true;
-            int line = ((TokenNode) returnStatement.getChildren().get(0)).token.line();
-            System.err.println("Return type does not match method return type. Error in line: " + line);
+            Token token = returnStatement.token(0);
+            diagnostics.report(DiagnosticCode.RETURN_TYPE_MISMATCH, token.line(), token.column());
         }
         return new DataStatement(true);
     }
@@ -876,685 +921,198 @@ public class SemanticAnalyzer {
     }
 
     private TypeExpression analyzeExpression(NonTerminalNode expression, Scope scope) {
-        NonTerminalNode logicalOrExpression = (NonTerminalNode) expression.getChildren().get(0);
-        TypeExpression typeLogicalOrExpression = analyzeLogicalOrExpression(logicalOrExpression, scope);
-        //System.out.println(typeLogicalOrExpression);
-        return typeLogicalOrExpression;
+        return analyzeOperand(expression.node(0), scope);
     }
 
-    private TypeExpression analyzeLogicalOrExpression(NonTerminalNode logicalOrExpression, Scope scope) {
-        NonTerminalNode logicalAndExpression = (NonTerminalNode) logicalOrExpression.getChildren().get(0);
-        TypeExpression typeLogicalAndExpression = analyzeLogicalAndExpression(logicalAndExpression, scope);
-        NonTerminalNode logicalOrTail = (NonTerminalNode) logicalOrExpression.getChildren().get(1);
-        TypeExpression typeExpressionLogicalOrTail = analyzeLogicalOrTail(logicalOrTail, scope);
-
-        TypeExpression typeExpression = analyzeLogicalOrExpressionAndLogicalOrTail(typeLogicalAndExpression,
-                typeExpressionLogicalOrTail, null);
-        setStaticValueInNonTerminalNode(logicalOrExpression, typeExpression);
-        return typeExpression;
-    }
-
-    private TypeExpression analyzeLogicalOrTail(NonTerminalNode logicalOrTail, Scope scope) { // ε | "||" <logical-and-expression> <logical-or-tail>
-        if (((TokenNode) logicalOrTail.getChildren().get(0)).token == null) return null;
-
-        NonTerminalNode logicalAndExpression = (NonTerminalNode) logicalOrTail.getChildren().get(1);
-        TypeExpression typeLogicalAndExpression = analyzeLogicalAndExpression(logicalAndExpression, scope);
-        NonTerminalNode logicalOrTail2 = (NonTerminalNode) logicalOrTail.getChildren().get(2);
-        TypeExpression typeExpressionLogicalOrTail = analyzeLogicalOrTail(logicalOrTail2, scope);
-
-        TypeExpression typeExpression = analyzeLogicalOrExpressionAndLogicalOrTail(typeLogicalAndExpression,
-                typeExpressionLogicalOrTail, TokenType.OR);
-        setStaticValueInNonTerminalNode(logicalOrTail, typeExpression);
-        return typeExpression;
+    private TypeExpression analyzeOperand(NonTerminalNode operand, Scope scope) {
+        return switch (operand.getKind()) {
+            case BINARY_EXPRESSION -> analyzeBinaryExpression(operand, scope);
+            case UNARY_EXPRESSION -> analyzeUnaryExpression(operand, scope);
+            case PRIMARY_EXPRESSION -> analyzePrimaryExpression(operand, scope);
+            default -> throw new RuntimeException(); // Ошибка грамматики
+        };
     }
 
-    private TypeExpression analyzeLogicalOrExpressionAndLogicalOrTail(TypeExpression typeLogicalAndExpression,
-                                                                      TypeExpression typeExpressionLogicalOrTail, TokenType newOp) {
-        if (typeLogicalAndExpression == null) return null;
-        if (typeExpressionLogicalOrTail != null) typeLogicalAndExpression.variables.addAll(typeExpressionLogicalOrTail.variables);
-
-        if (!typeLogicalAndExpression.mutable()) {
-            // Правой ветки нет
-            if (typeExpressionLogicalOrTail == null) return new TypeExpression(typeLogicalAndExpression.type(),
-                    false, typeLogicalAndExpression.value(), newOp, typeLogicalAndExpression.variables);
-
-            if (typeLogicalAndExpression.type() == TokenType.BOOLEAN && typeExpressionLogicalOrTail.type() == TokenType.BOOLEAN) {
-                if (!typeExpressionLogicalOrTail.mutable()) {
-                    return calcOr(typeLogicalAndExpression, typeExpressionLogicalOrTail, newOp);
-                }
-                // TODO: байт код
-                return new TypeExpression(typeExpressionLogicalOrTail.type(), true, null, newOp, typeLogicalAndExpression.variables);
-            }
-
-            errors = true;
-            // TODO: ошибка - неверный тип выражения
-            System.err.println("Error: Incompatible operand types for '||': both operands must be boolean.");
-            return null;
-        }
-        // TODO: написание в байткод
+    private TypeExpression analyzeBinaryExpression(NonTerminalNode binaryExpression, Scope scope) { // <левый> op <правый>
+        TypeExpression left = analyzeOperand(binaryExpression.node(0), scope);
+        Token op = binaryExpression.token(1);
+        TypeExpression right = analyzeOperand(binaryExpression.node(2), scope);
+        if (left == null || right == null) return null;
 
-
-        if (typeExpressionLogicalOrTail != null) {
-            // TODO: написание в байткод для правой ветки
-            return new TypeExpression(TokenType.BOOLEAN, true, null, newOp, typeLogicalAndExpression.variables);
-        }
-        return new TypeExpression(typeLogicalAndExpression.type(), true, null, newOp, typeLogicalAndExpression.variables);
-    }
-
-    private TypeExpression calcOr(TypeExpression left, TypeExpression right, TokenType newOp) {
-        boolean result;
-        if (Objects.requireNonNull(right.op()) == TokenType.OR) {
-            result = Boolean.parseBoolean(right.value()) || Boolean.parseBoolean(left.value());
-        } else {
-            throw new RuntimeException(); // Ошибка грамматики
-        }
+        TokenType type = getBinaryType(op, left, right);
+        if (type == null) return null;
 
         left.variables.addAll(right.variables);
-        return new TypeExpression(TokenType.BOOLEAN, false, String.valueOf(result), newOp, left.variables);
-    }
-
-    private TypeExpression analyzeLogicalAndExpression(NonTerminalNode logicalAndExpression, Scope scope) {
-        NonTerminalNode equalityExpression = (NonTerminalNode) logicalAndExpression.getChildren().get(0);
-        TypeExpression typeEqualityExpression = analyzeEqualityExpression(equalityExpression, scope);
-        NonTerminalNode logicalAndTail = (NonTerminalNode) logicalAndExpression.getChildren().get(1);
-        TypeExpression typeExpressionLogicalAndTail = analyzeLogicalAndTail(logicalAndTail, scope);
-
-        TypeExpression typeExpression = analyzeLogicalAndExpressionAndLogicalAndTail(typeEqualityExpression,
-                typeExpressionLogicalAndTail, null);
-        setStaticValueInNonTerminalNode(logicalAndExpression, typeExpression);
-        return typeExpression;
-    }
-
-    private TypeExpression analyzeLogicalAndTail(NonTerminalNode logicalAndTail, Scope scope) {
-        if (((TokenNode) logicalAndTail.getChildren().get(0)).token == null) return null;
-
-        NonTerminalNode equalityExpression = (NonTerminalNode) logicalAndTail.getChildren().get(1);
-        TypeExpression typeEqualityExpression = analyzeEqualityExpression(equalityExpression, scope);
-        NonTerminalNode logicalAndTail2 = (NonTerminalNode) logicalAndTail.getChildren().get(2);
-        TypeExpression typeExpressionLogicalAndTail = analyzeLogicalAndTail(logicalAndTail2, scope);
-
-        TypeExpression typeExpression = analyzeLogicalAndExpressionAndLogicalAndTail(typeEqualityExpression,
-                typeExpressionLogicalAndTail, TokenType.AND);
-        setStaticValueInNonTerminalNode(logicalAndTail, typeExpression);
-        return typeExpression;
-    }
-
-    private TypeExpression analyzeLogicalAndExpressionAndLogicalAndTail(TypeExpression typeEqualityExpression,
-                                                                        TypeExpression typeExpressionLogicalAndTail, TokenType newOp) {
-        if (typeEqualityExpression == null) return null;
-        if (typeExpressionLogicalAndTail != null) typeEqualityExpression.variables.addAll(typeExpressionLogicalAndTail.variables);
-
-        if (!typeEqualityExpression.mutable()) {
-            // Правой ветки нет
-            if (typeExpressionLogicalAndTail == null) return new TypeExpression(typeEqualityExpression.type(),
-                    false, typeEqualityExpression.value(), newOp, typeEqualityExpression.variables);
-
-            if (typeEqualityExpression.type() == TokenType.BOOLEAN && typeExpressionLogicalAndTail.type() == TokenType.BOOLEAN) {
-                if (!typeExpressionLogicalAndTail.mutable()) {
-                    return calcAnd(typeEqualityExpression, typeExpressionLogicalAndTail, newOp);
-                }
-                // TODO: байт код
-                return new TypeExpression(typeExpressionLogicalAndTail.type(), true, null, newOp, typeEqualityExpression.variables);
-            }
-
-            errors = true;
-            // TODO: ошибка - неверный тип выражения
-            System.err.println("Error: Incompatible operand types for '&&': both operands must be boolean.");
-            return null;
+        if (left.mutable() || right.mutable()) {
+            // TODO: байт код
+            return new TypeExpression(type, true, null, left.variables);
         }
-        // TODO: написание в байткод
-
-
-        if (typeExpressionLogicalAndTail != null) {
-            // TODO: написание в байткод для правой ветки
-            return new TypeExpression(TokenType.BOOLEAN, true, null, newOp, typeEqualityExpression.variables);
-        }
-        return new TypeExpression(typeEqualityExpression.type(), true, null, newOp, typeEqualityExpression.variables);
-    }
-
-    private TypeExpression calcAnd(TypeExpression left, TypeExpression right, TokenType newOp) {
-        boolean result;
-        if (Objects.requireNonNull(right.op()) == TokenType.AND) {
-            result = Boolean.parseBoolean(right.value()) && Boolean.parseBoolean(left.value());
-        } else {
-            throw new RuntimeException(); // Ошибка грамматики
-        }
-
-        left.variables.addAll(right.variables);
-        return new TypeExpression(TokenType.BOOLEAN, false, String.valueOf(result), newOp, left.variables);
-    }
-
-    private TypeExpression analyzeEqualityExpression(NonTerminalNode equalityExpression, Scope scope) {
-        NonTerminalNode relationalExpression = (NonTerminalNode) equalityExpression.getChildren().get(0);
-        TypeExpression typeRelationalExpression = analyzeRelationalExpression(relationalExpression, scope);
-        NonTerminalNode equalityTail = (NonTerminalNode) equalityExpression.getChildren().get(1);
-        TypeExpression typeExpressionEqualityTail = analyzeEqualityTail(equalityTail, scope);
-
-        TypeExpression typeExpression = analyzeEqualityExpressionAndEqualityTail(typeRelationalExpression,
-                typeExpressionEqualityTail, null);
-        setStaticValueInNonTerminalNode(equalityExpression, typeExpression);
+        TypeExpression typeExpression = calcBinary(op.type(), left, right, type);
+        setStaticValueInNonTerminalNode(binaryExpression, typeExpression);
         return typeExpression;
     }
 
-    private TypeExpression analyzeEqualityTail(NonTerminalNode equalityTail, Scope scope) {
-        Token token = ((TokenNode) equalityTail.getChildren().get(0)).token;
-        if (token == null) return null;
-
-        NonTerminalNode relationalExpression = (NonTerminalNode) equalityTail.getChildren().get(1);
-        TypeExpression typeRelationalExpression = analyzeRelationalExpression(relationalExpression, scope);
-        NonTerminalNode equalityTail2 = (NonTerminalNode) equalityTail.getChildren().get(2);
-        TypeExpression typeExpressionEqualityTail = analyzeEqualityTail(equalityTail2, scope);
-
-        TypeExpression typeExpression = analyzeEqualityExpressionAndEqualityTail(typeRelationalExpression,
-                typeExpressionEqualityTail, token.type());
-        setStaticValueInNonTerminalNode(equalityTail, typeExpression);
-        return typeExpression;
-    }
-
-    private TypeExpression analyzeEqualityExpressionAndEqualityTail(TypeExpression typeRelationalExpression,
-                                                                    TypeExpression typeExpressionEqualityTail, TokenType newOp) {
-        if (typeRelationalExpression == null) return null;
-        if (typeExpressionEqualityTail != null) typeRelationalExpression.variables.addAll(typeExpressionEqualityTail.variables);
-
-        if (!typeRelationalExpression.mutable()) {
-            // Правой ветки нет
-            if (typeExpressionEqualityTail == null) return new TypeExpression(typeRelationalExpression.type(),
-                    false, typeRelationalExpression.value(), newOp, typeRelationalExpression.variables);
-
-            // TODO: подумать над типами множителей одинаковые они или нет
-            if (typeRelationalExpression.type() == TokenType.NUMBER && typeExpressionEqualityTail.type() == TokenType.NUMBER) {
-                if (!typeExpressionEqualityTail.mutable()) {
-                    return calcEqual(typeRelationalExpression, typeExpressionEqualityTail, newOp);
-                }
-                // TODO: байт код
-                return new TypeExpression(TokenType.BOOLEAN, true, null, newOp, typeRelationalExpression.variables);
-            }
-            if (typeRelationalExpression.type() == TokenType.FLOAT_NUMBER && typeExpressionEqualityTail.type() == TokenType.FLOAT_NUMBER) {
-                if (!typeExpressionEqualityTail.mutable()) {
-                    return calcEqual(typeRelationalExpression, typeExpressionEqualityTail, newOp);
-                }
-                // TODO: байт код
-                return new TypeExpression(TokenType.BOOLEAN, true, null, newOp, typeRelationalExpression.variables);
-            }
-            if (typeRelationalExpression.type() == TokenType.BOOLEAN && typeExpressionEqualityTail.type() == TokenType.BOOLEAN) {
-                if (!typeExpressionEqualityTail.mutable()) {
-                    return calcEqual(typeRelationalExpression, typeExpressionEqualityTail, newOp);
-                }
-                // TODO: байт код
-                return new TypeExpression(TokenType.BOOLEAN, true, null, newOp, typeRelationalExpression.variables);
+    // Тип результата операции или null (с сообщением об ошибке), если типы операндов не подходят
+    private TokenType getBinaryType(Token op, TypeExpression left, TypeExpression right) {
+        boolean numbers = left.type() == right.type()
+                && (left.type() == TokenType.NUMBER || left.type() == TokenType.FLOAT_NUMBER);
+        switch (op.type()) {
+            case OR, AND -> {
+                if (left.type() == TokenType.BOOLEAN && right.type() == TokenType.BOOLEAN) return TokenType.BOOLEAN;
+                errors = true;
+                diagnostics.report(DiagnosticCode.LOGICAL_OPERAND_TYPES, 0, 0, op.name());
+                return null;
             }
-
-            errors = true;
-            // TODO: ошибка - неверный тип выражения
-            System.err.printf("Error: Incompatible operand types for '%s': found '%s' and '%s', expected matching types.\n",
-                    getStringFromOperand(typeExpressionEqualityTail.op),
-                    getStringFromReturnType(typeRelationalExpression.type),
-                    getStringFromReturnType(typeExpressionEqualityTail.type()));
-            return null;
-        }
-        // TODO: написание в байткод
-
-
-        if (typeExpressionEqualityTail != null) {
-            // TODO: написание в байткод для правой ветки
-            return new TypeExpression(TokenType.BOOLEAN, true, null, newOp, typeRelationalExpression.variables);
-        }
-        return new TypeExpression(typeRelationalExpression.type(), true, null, newOp, typeRelationalExpression.variables);
-    }
-
-    private TypeExpression calcEqual(TypeExpression left, TypeExpression right, TokenType newOp) {
-        boolean result;
-        switch (right.op()) {
-            case DOUBLE_EQUAL -> {
-                if (left.type == TokenType.BOOLEAN) result = Boolean.parseBoolean(right.value()) == Boolean.parseBoolean(left.value());
-                else if (left.type == TokenType.NUMBER) result = Integer.parseInt(right.value()) == Integer.parseInt(left.value());
-                else result = Float.parseFloat(right.value()) == Float.parseFloat(left.value());
+            case DOUBLE_EQUAL, NOT_EQUALS -> {
+                if (numbers || (left.type() == TokenType.BOOLEAN && right.type() == TokenType.BOOLEAN)) return TokenType.BOOLEAN;
+                errors = true;
+                diagnostics.report(DiagnosticCode.EQUALITY_OPERAND_TYPES, 0, 0, op.name(),
+                        getStringFromReturnType(left.type()), getStringFromReturnType(right.type()));
+                return null;
             }
-            case NOT_EQUALS -> {
-                if (left.type == TokenType.BOOLEAN) result = Boolean.parseBoolean(right.value()) != Boolean.parseBoolean(left.value());
-                else if (left.type == TokenType.NUMBER) result = Integer.parseInt(right.value()) != Integer.parseInt(left.value());
-                else result = Float.parseFloat(right.value()) != Float.parseFloat(left.value());
+            case LESS_THAN, GREATER_THAN, LESS_THAN_EQUALS, GREATER_THAN_EQUALS, PLUS, MINUS, MULTIPLICATION, DIVISION -> {
+                if (numbers) return isComparison(op.type()) ? TokenType.BOOLEAN : left.type();
+                errors = true;
+                diagnostics.report(DiagnosticCode.ARITHMETIC_OPERAND_TYPES, 0, 0, op.name(),
+                        getStringFromReturnType(left.type()), getStringFromReturnType(right.type()));
+                return null;
             }
             default -> throw new RuntimeException(); // Ошибка грамматики
         }
-
-        left.variables.addAll(right.variables);
-        return new TypeExpression(TokenType.BOOLEAN, false, String.valueOf(result), newOp, left.variables);
     }
 
-    private TypeExpression analyzeRelationalExpression(NonTerminalNode relationalExpression, Scope scope) {
-        NonTerminalNode additiveExpression = (NonTerminalNode) relationalExpression.getChildren().get(0);
-        TypeExpression typeAdditiveExpression = analyzeAdditiveExpression(additiveExpression, scope);
-        NonTerminalNode relationalTail = (NonTerminalNode) relationalExpression.getChildren().get(1);
-        TypeExpression typeExpressionRelationalTail = analyzeRelationalTail(relationalTail, scope);
-
-        TypeExpression typeExpression = analyzeRelationalExpressionAndRelationalTail(typeAdditiveExpression,
-                typeExpressionRelationalTail, null);
-        setStaticValueInNonTerminalNode(relationalExpression, typeExpression);
-        return typeExpression;
+    private boolean isComparison(TokenType op) {
+        return op == TokenType.LESS_THAN || op == TokenType.GREATER_THAN
+                || op == TokenType.LESS_THAN_EQUALS || op == TokenType.GREATER_THAN_EQUALS;
     }
 
-    private TypeExpression analyzeRelationalTail(NonTerminalNode relationalTail, Scope scope) {
-        Token token = ((TokenNode) relationalTail.getChildren().get(0)).token;
-        if (token == null) return null;
-
-        NonTerminalNode additiveExpression = (NonTerminalNode) relationalTail.getChildren().get(1);
-        TypeExpression typeAdditiveExpression = analyzeAdditiveExpression(additiveExpression, scope);
-        NonTerminalNode relationalTail2 = (NonTerminalNode) relationalTail.getChildren().get(2);
-        TypeExpression typeExpressionRelationalTail = analyzeRelationalTail(relationalTail2, scope);
-
-        TypeExpression typeExpression = analyzeRelationalExpressionAndRelationalTail(typeAdditiveExpression,
-                typeExpressionRelationalTail, token.type());
-        setStaticValueInNonTerminalNode(relationalTail, typeExpression);
-        return typeExpression;
-    }
-
-    private TypeExpression analyzeRelationalExpressionAndRelationalTail(TypeExpression typeAdditiveExpression,
-                                                                        TypeExpression typeExpressionRelationalTail, TokenType newOp) {
-        if (typeAdditiveExpression == null) return null;
-        if (typeExpressionRelationalTail != null) typeAdditiveExpression.variables.addAll(typeExpressionRelationalTail.variables);
-
-        if (!typeAdditiveExpression.mutable()) {
-            // Правой ветки нет
-            if (typeExpressionRelationalTail == null) return new TypeExpression(typeAdditiveExpression.type(),
-                    false, typeAdditiveExpression.value(), newOp, typeAdditiveExpression.variables);
-
-            // TODO: подумать над типами множителей одинаковые они или нет
-            if (typeAdditiveExpression.type() == TokenType.NUMBER && typeExpressionRelationalTail.type() == TokenType.NUMBER) {
-                if (!typeExpressionRelationalTail.mutable()) {
-                    return calcComparison(typeAdditiveExpression, typeExpressionRelationalTail, newOp);
-                }
-                // TODO: байт код
-                return new TypeExpression(TokenType.BOOLEAN, true, null, newOp,typeAdditiveExpression.variables);
-            }
-            if (typeAdditiveExpression.type() == TokenType.FLOAT_NUMBER && typeExpressionRelationalTail.type() == TokenType.FLOAT_NUMBER) {
-                if (!typeExpressionRelationalTail.mutable()) {
-                    return calcComparison(typeAdditiveExpression, typeExpressionRelationalTail, newOp);
-                }
-                // TODO: байт код
-                return new TypeExpression(TokenType.BOOLEAN, true, null, newOp,typeAdditiveExpression.variables);
-            }
-
-            errors = true;
-            System.err.printf("Error: Incompatible operand types for '%s': found '%s' and '%s', expected matching types. " +
-                            "(FLOAT and FLOAT) or (INT and INT)\n",
-                    getStringFromOperand(typeExpressionRelationalTail.op),
-                    getStringFromReturnType(typeAdditiveExpression.type),
-                    getStringFromReturnType(typeExpressionRelationalTail.type()));
-            return null;
-        }
-        // TODO: написание в байткод
-
-
-        if (typeExpressionRelationalTail != null) {
-            // TODO: написание в байткод для правой ветки
-            return new TypeExpression(TokenType.BOOLEAN, true, null, newOp, typeAdditiveExpression.variables);
-        }
-        return new TypeExpression(typeAdditiveExpression.type(), true, null, newOp, typeAdditiveExpression.variables);
-    }
-
-    private TypeExpression calcComparison(TypeExpression left, TypeExpression right, TokenType newOp) {
+    // Вычисление операции над константами
+    private TypeExpression calcBinary(TokenType op, TypeExpression left, TypeExpression right, TokenType type) {
         boolean isInteger = left.type() == TokenType.NUMBER;
-
-        Number v1;
-        Number v2;
-
-        if (isInteger) {
-            v1 = Integer.valueOf(left.value());
-            v2 = Integer.valueOf(right.value());
-        } else {
-            v1 = Float.valueOf(left.value());
-            v2 = Float.valueOf(right.value());
-        }
-
-        boolean result;
-        switch (right.op()) {
-            case LESS_THAN -> {
-                if (isInteger) result = v2.intValue() < v1.intValue();
-                else result = v2.floatValue() < v1.floatValue();
-            }
-            case GREATER_THAN -> {
-                if (isInteger) result = v2.intValue() > v1.intValue();
-                else result = v2.floatValue() > v1.floatValue();
-            }
-            case LESS_THAN_EQUALS -> {
-                if (isInteger) result = v2.intValue() <= v1.intValue();
-                else result = v2.floatValue() <= v1.floatValue();
-            }
-            case GREATER_THAN_EQUALS -> {
-                if (isInteger) result = v2.intValue() >= v1.intValue();
-                else result = v2.floatValue() >= v1.floatValue();
-            }
-            default -> throw new RuntimeException(); // Ошибка грамматики
-        }
-
-        left.variables.addAll(right.variables);
-        return new TypeExpression(TokenType.BOOLEAN, false, String.valueOf(result), newOp, left.variables);
-    }
-
-    private TypeExpression analyzeAdditiveExpression(NonTerminalNode additiveExpression, Scope scope) {
-        NonTerminalNode multiplicativeExpression = (NonTerminalNode) additiveExpression.getChildren().get(0);
-        TypeExpression typeMultiplicativeExpression = analyzeMultiplicativeExpression(multiplicativeExpression, scope);
-        NonTerminalNode additiveTail = (NonTerminalNode) additiveExpression.getChildren().get(1);
-        TypeExpression typeExpressionAdditiveTail = analyzeAdditiveTail(additiveTail, scope);
-
-        TypeExpression typeExpression = analyzeAdditiveExpressionAndAdditiveTail(typeMultiplicativeExpression,
-                typeExpressionAdditiveTail, null);
-        setStaticValueInNonTerminalNode(additiveExpression, typeExpression);
-        return typeExpression;
-    }
-
-    private TypeExpression analyzeAdditiveTail(NonTerminalNode additiveTail, Scope scope) {
-        Token token = ((TokenNode) additiveTail.getChildren().get(0)).token;
-        if (token == null) return null;
-
-        NonTerminalNode multiplicativeExpression = (NonTerminalNode) additiveTail.getChildren().get(1);
-        TypeExpression typeMultiplicativeExpression = analyzeMultiplicativeExpression(multiplicativeExpression, scope);
-        NonTerminalNode additiveTail2 = (NonTerminalNode) additiveTail.getChildren().get(2);
-        TypeExpression typeExpressionAdditiveTail = analyzeAdditiveTail(additiveTail2, scope);
-
-        TypeExpression typeExpression = analyzeAdditiveExpressionAndAdditiveTail(typeMultiplicativeExpression,
-                typeExpressionAdditiveTail, token.type());
-        setStaticValueInNonTerminalNode(additiveTail, typeExpression);
-        return typeExpression;
-    }
-
-    private TypeExpression analyzeAdditiveExpressionAndAdditiveTail(TypeExpression typeMultiplicativeExpression,
-                                                                    TypeExpression typeExpressionAdditiveTail, TokenType newOp) {
-        if (typeMultiplicativeExpression == null) return null;
-        if (typeExpressionAdditiveTail != null) typeMultiplicativeExpression.variables.addAll(typeExpressionAdditiveTail.variables);
-
-        if (!typeMultiplicativeExpression.mutable()) {
-            // Правой ветки нет
-            if (typeExpressionAdditiveTail == null) return new TypeExpression(typeMultiplicativeExpression.type(),
-                    false, typeMultiplicativeExpression.value(), newOp, typeMultiplicativeExpression.variables);
-
-            // TODO: подумать над типами множителей одинаковые они или нет
-            if (typeMultiplicativeExpression.type() == TokenType.NUMBER && typeExpressionAdditiveTail.type() == TokenType.NUMBER) {
-                if (!typeExpressionAdditiveTail.mutable()) {
-                    return calcSumDifference(typeMultiplicativeExpression, typeExpressionAdditiveTail, newOp);
-                }
-                // TODO: байт код
-                return new TypeExpression(typeMultiplicativeExpression.type(), true, null, newOp, typeMultiplicativeExpression.variables);
-            }
-            if (typeMultiplicativeExpression.type() == TokenType.FLOAT_NUMBER && typeExpressionAdditiveTail.type() == TokenType.FLOAT_NUMBER) {
-                if (!typeExpressionAdditiveTail.mutable()) {
-                    return calcSumDifference(typeMultiplicativeExpression, typeExpressionAdditiveTail, newOp);
+        boolean isBoolean = left.type() == TokenType.BOOLEAN;
+        String l = left.value();
+        String r = right.value();
+
+        Object result;
+        switch (op) {
+            case OR -> result = Boolean.parseBoolean(l) || Boolean.parseBoolean(r);
+            case AND -> result = Boolean.parseBoolean(l) && Boolean.parseBoolean(r);
+            case DOUBLE_EQUAL, NOT_EQUALS -> {
+                boolean equal;
+                if (isBoolean) equal = Boolean.parseBoolean(l) == Boolean.parseBoolean(r);
+                else if (isInteger) equal = Integer.parseInt(l) == Integer.parseInt(r);
+                else equal = Float.parseFloat(l) == Float.parseFloat(r);
+                result = op == TokenType.DOUBLE_EQUAL ? equal : !equal;
+            }
+            case LESS_THAN -> result = isInteger ? Integer.parseInt(l) < Integer.parseInt(r) : Float.parseFloat(l) < Float.parseFloat(r);
+            case GREATER_THAN -> result = isInteger ? Integer.parseInt(l) > Integer.parseInt(r) : Float.parseFloat(l) > Float.parseFloat(r);
+            case LESS_THAN_EQUALS -> result = isInteger ? Integer.parseInt(l) <= Integer.parseInt(r) : Float.parseFloat(l) <= Float.parseFloat(r);
+            case GREATER_THAN_EQUALS -> result = isInteger ? Integer.parseInt(l) >= Integer.parseInt(r) : Float.parseFloat(l) >= Float.parseFloat(r);
+            case PLUS -> result = isInteger ? (Object) (Integer.parseInt(l) + Integer.parseInt(r)) : (Object) (Float.parseFloat(l) + Float.parseFloat(r));
+            case MINUS -> result = isInteger ? (Object) (Integer.parseInt(l) - Integer.parseInt(r)) : (Object) (Float.parseFloat(l) - Float.parseFloat(r));
+            case MULTIPLICATION -> result = isInteger ? (Object) (Integer.parseInt(l) * Integer.parseInt(r)) : (Object) (Float.parseFloat(l) * Float.parseFloat(r));
+            case DIVISION -> {
+                if (Float.parseFloat(r) == 0.0) {
+                    errors = true;
+                    // TODO: ошибка деления на ноль
+                    return null;
                 }
-                // TODO: байт код
-
-                return new TypeExpression(typeMultiplicativeExpression.type(), true, null, newOp, typeMultiplicativeExpression.variables);
-            }
-
-            errors = true;
-            // TODO: ошибка - неверный тип выражения
-            System.err.printf("Error: Incompatible operand types for '%s': found '%s' and '%s', expected matching types. " +
-                            "(FLOAT and FLOAT) or (INT and INT)\n",
-                    getStringFromOperand(typeExpressionAdditiveTail.op),
-                    getStringFromReturnType(typeMultiplicativeExpression.type),
-                    getStringFromReturnType(typeExpressionAdditiveTail.type()));
-            return null;
-        }
-        // TODO: написание в байткод
-
-
-        if (typeExpressionAdditiveTail != null) {
-            // TODO: написание в байткод для правой ветки
-            return new TypeExpression(typeMultiplicativeExpression.type(), true, null, newOp, typeMultiplicativeExpression.variables);
-        }
-        return new TypeExpression(typeMultiplicativeExpression.type(), true, null, newOp, typeMultiplicativeExpression.variables);
-    }
-
-    private TypeExpression calcSumDifference(TypeExpression left, TypeExpression right, TokenType newOp) {
-        boolean isInteger = left.type() == TokenType.NUMBER;
-
-        Number v1;
-        Number v2;
-
-        if (isInteger) {
-            v1 = Integer.valueOf(left.value());
-            v2 = Integer.valueOf(right.value());
-        } else {
-            v1 = Float.valueOf(left.value());
-            v2 = Float.valueOf(right.value());
-        }
-
-
-        Number result;
-        switch (right.op()) {
-            case MINUS -> {
-                if (isInteger) result = v2.intValue() - v1.intValue();
-                else result = v2.floatValue() - v1.floatValue();
-            }
-            case PLUS -> {
-                if (isInteger)  result = v2.intValue() + v1.intValue();
-                else result = v2.floatValue() + v1.floatValue();
+                result = isInteger ? (Object) (Integer.parseInt(l) / Integer.parseInt(r)) : (Object) (Float.parseFloat(l) / Float.parseFloat(r));
             }
             default -> throw new RuntimeException(); // Ошибка грамматики
         }
-
-        left.variables.addAll(right.variables);
-        return new TypeExpression(left.type(), false, String.valueOf(result), newOp, left.variables);
+        return new TypeExpression(type, false, String.valueOf(result), left.variables);
     }
 
-    private TypeExpression analyzeMultiplicativeExpression(NonTerminalNode multiplicativeExpression, Scope scope) {
-        NonTerminalNode unaryExpression = (NonTerminalNode) multiplicativeExpression.getChildren().get(0);
-        TypeExpression typeUnaryExpression = analyzeUnaryExpression(unaryExpression, scope);
-        NonTerminalNode multiplicativeTail = (NonTerminalNode) multiplicativeExpression.getChildren().get(1);
-        TypeExpression typeExpressionMultiplicativeTail = analyzeMultiplicativeTail(multiplicativeTail, scope);
-
-        TypeExpression typeExpression = analyzeMultiplicativeExpressionAndMultiplicativeTail(typeUnaryExpression,
-                typeExpressionMultiplicativeTail, null);
-        setStaticValueInNonTerminalNode(multiplicativeExpression, typeExpression);
-        return typeExpression;
-    }
-
-    private TypeExpression analyzeMultiplicativeTail(NonTerminalNode multiplicativeTail, Scope scope) {
-        Token token = ((TokenNode) multiplicativeTail.getChildren().get(0)).token;
-        if (token == null) return null;
-
-        NonTerminalNode unaryExpression = (NonTerminalNode) multiplicativeTail.getChildren().get(1);
-        TypeExpression typeUnaryExpression = analyzeUnaryExpression(unaryExpression, scope);
-        NonTerminalNode multiplicativeTail2 = (NonTerminalNode) multiplicativeTail.getChildren().get(2);
-        TypeExpression typeExpressionMultiplicativeTail = analyzeMultiplicativeTail(multiplicativeTail2, scope);
-
-        TypeExpression typeExpression = analyzeMultiplicativeExpressionAndMultiplicativeTail(typeUnaryExpression,
-                typeExpressionMultiplicativeTail, token.type());
-        setStaticValueInNonTerminalNode(multiplicativeTail, typeExpression);
-        return typeExpression;
-    }
-
-    private TypeExpression analyzeMultiplicativeExpressionAndMultiplicativeTail(TypeExpression typeUnaryExpression,
-                                                                                TypeExpression typeExpressionMultiplicativeTail,
-                                                                                TokenType newOp) {
-        if (typeUnaryExpression == null) return null;
-        if (typeExpressionMultiplicativeTail != null) typeUnaryExpression.variables.addAll(typeExpressionMultiplicativeTail.variables);
-
-        if (!typeUnaryExpression.mutable()) {
-            // Правой ветки нет
-            if (typeExpressionMultiplicativeTail == null) return new TypeExpression(typeUnaryExpression.type(),
-                    false, typeUnaryExpression.value(), newOp, typeUnaryExpression.variables);
-
-            // TODO: подумать над типами множителей одинаковые они или нет
-            if (typeUnaryExpression.type() == TokenType.NUMBER && typeExpressionMultiplicativeTail.type() == TokenType.NUMBER) {
-                if (!typeExpressionMultiplicativeTail.mutable()) {
-                    return calcMultiOrDiv(typeUnaryExpression, typeExpressionMultiplicativeTail, newOp);
+    private TypeExpression analyzeUnaryExpression(NonTerminalNode unaryExpression, Scope scope) { // op <операнд>
+        Token token = unaryExpression.token(0);
+        TypeExpression typeExpression = analyzeOperand(unaryExpression.node(1), scope);
+        if (typeExpression == null) return null;
+        TokenType type = typeExpression.type();
+        String value = typeExpression.value();
+        switch (token.type()) {
+            case MINUS -> {
+                if (type != TokenType.NUMBER && type != TokenType.FLOAT_NUMBER) {
+                    errors = true;
+                    diagnostics.report(DiagnosticCode.EXPECTED_NUMBER, token.line(), token.column());
+                    return null;
                 }
-                // TODO: байт код
-                return new TypeExpression(typeUnaryExpression.type(), true, null, newOp, typeUnaryExpression.variables);
-            }
-            if (typeUnaryExpression.type() == TokenType.FLOAT_NUMBER && typeExpressionMultiplicativeTail.type() == TokenType.FLOAT_NUMBER) {
-                if (!typeExpressionMultiplicativeTail.mutable()) {
-                    return calcMultiOrDiv(typeUnaryExpression, typeExpressionMultiplicativeTail, newOp);
+                if (typeExpression.mutable()) {
+                    // TODO: В промежуточное представление
+                    return typeExpression;
                 }
-                // TODO: байт код
-                return new TypeExpression(typeUnaryExpression.type(), true, null, newOp, typeUnaryExpression.variables);
+                if (value.charAt(0) == '-') value = value.substring(1);
+                else value = '-' + value;
             }
-
-            errors = true;
-            // TODO: ошибка - неверный тип выражения
-            System.err.printf("Error: Incompatible operand types for '%s': found '%s' and '%s', expected matching types. " +
-                            "(FLOAT and FLOAT) or (INT and INT)\n",
-                    getStringFromOperand(typeExpressionMultiplicativeTail.op),
-                    getStringFromReturnType(typeUnaryExpression.type),
-                    getStringFromReturnType(typeExpressionMultiplicativeTail.type()));
-            return null;
-        }
-        // TODO: написание в байткод
-
-
-        if (typeExpressionMultiplicativeTail != null) {
-            // TODO: написание в байткод для правой ветки
-        }
-        return new TypeExpression(typeUnaryExpression.type(), true, null, newOp, typeUnaryExpression.variables);
-    }
-
-    private TypeExpression calcMultiOrDiv(TypeExpression left, TypeExpression right, TokenType newOp) {
-        boolean isInteger = left.type() == TokenType.NUMBER;
-
-        Number v1;
-        Number v2;
-
-        if (isInteger) {
-            v1 = Integer.valueOf(left.value());
-            v2 = Integer.valueOf(right.value());
-        } else {
-            v1 = Float.valueOf(left.value());
-            v2 = Float.valueOf(right.value());
-        }
-
-
-        Number result;
-        switch (right.op()) {
-            case MULTIPLICATION -> {
-                if (isInteger) result = v1.intValue() * v2.intValue();
-                else result = v1.floatValue() * v2.floatValue();
-            }
-            case DIVISION -> {
-                if (v1.doubleValue() == 0.0) {
+            case NOT -> {
+                if (type != TokenType.BOOLEAN) {
                     errors = true;
-                    // TODO: ошибка деления на ноль
+                    diagnostics.report(DiagnosticCode.EXPECTED_BOOLEAN, token.line(), token.column());
                     return null;
                 }
-                if (isInteger)  result = v2.intValue() / v1.intValue();
-                else result = v2.floatValue() / v1.floatValue();
-            }
-            default -> throw new RuntimeException(); // Ошибка грамматики
-        }
-
-        left.variables.addAll(right.variables);
-        return new TypeExpression(left.type(), false, String.valueOf(result), newOp, left.variables);
-    }
-
-    private TypeExpression analyzeUnaryExpression(NonTerminalNode unaryExpression, Scope scope) {
-        if (unaryExpression.getChildren().get(0) instanceof NonTerminalNode primaryExpression) {
-            TypeExpression typeExpression = analyzePrimaryExpression(primaryExpression, scope);
-            setStaticValueInNonTerminalNode(unaryExpression, typeExpression);
-            return typeExpression;
-        } else {
-            Token token = ((TokenNode) unaryExpression.getChildren().get(0)).token;
-            TokenType tokenType = token.type();
-            NonTerminalNode primaryExpression = (NonTerminalNode) unaryExpression.getChildren().get(1);
-            switch (tokenType) {
-                case MINUS -> {
-                    TypeExpression typeExpression = analyzeUnaryExpression(primaryExpression, scope);
-                    if (typeExpression == null) return null;
-                    TokenType type = typeExpression.type();
-                    if (type != TokenType.NUMBER && type != TokenType.FLOAT_NUMBER) {
-                        errors = true;
-                        System.err.printf("Invalid data type. Expected int or float. Error in line: %d.\n", token.line());
-                        return null;
-                    }
-                    if (typeExpression.mutable()) {
-                        // TODO: В промежуточное представление
-                        return typeExpression;
-                    }
-
-                    String value = typeExpression.value();
-                    if (value.charAt(0) == '-') value = value.substring(1);
-                    else value = '-' + value;
-
-                    TypeExpression newTypeExpression = new TypeExpression(type, false, value, null, typeExpression.variables);
-                    setStaticValueInNonTerminalNode(unaryExpression, typeExpression);
-                    return newTypeExpression;
-                }
-                case NOT -> {
-                    TypeExpression typeExpression = analyzeUnaryExpression(primaryExpression, scope);
-                    if (typeExpression == null) return null;
-                    TokenType type = typeExpression.type();
-                    if (type != TokenType.BOOLEAN) {
-                        errors = true;
-                        System.err.printf("Invalid data type. Expected boolean. Error in line: %d.\n", token.line());
-                        return null;
-                    }
-                    if (typeExpression.mutable()) {
-                        // TODO: В промежуточное представление
-                        return typeExpression;
-                    }
-
-                    String value = typeExpression.value();
-                    value = value.equals("true") ? "false" : "true";
-
-                    TypeExpression newTypeExpression = new TypeExpression(type, false, value, null, typeExpression.variables);
-                    setStaticValueInNonTerminalNode(unaryExpression, typeExpression);
-                    return newTypeExpression;
+                if (typeExpression.mutable()) {
+                    // TODO: В промежуточное представление
+                    return typeExpression;
                 }
-                default -> throw new RuntimeException(); // Ошибка грамматики
+                value = value.equals("true") ? "false" : "true";
             }
+            default -> throw new RuntimeException(); // Ошибка грамматики
         }
+        TypeExpression newTypeExpression = new TypeExpression(type, false, value, typeExpression.variables);
+        setStaticValueInNonTerminalNode(unaryExpression, newTypeExpression);
+        return newTypeExpression;
     }
 
     private TypeExpression analyzePrimaryExpression(NonTerminalNode primaryExpression, Scope scope) {
-        if (primaryExpression.getChildren().get(0) instanceof TokenNode) { // "(" <expression> ")"
-            NonTerminalNode expression = (NonTerminalNode) primaryExpression.getChildren().get(1);
-            return analyzeExpression(expression, scope);
+        TypeExpression typeExpression;
+        if (primaryExpression.child(0) instanceof TokenNode) { // "(" <expression> ")"
+            NonTerminalNode expression = primaryExpression.node(1);
+            typeExpression = analyzeExpression(expression, scope);
         } else {
-            NonTerminalNode current = (NonTerminalNode) primaryExpression.getChildren().get(0);
-            TypeExpression typeExpression;
-            switch (current.name) {
-                case "identifier-or-function-call" -> {
+            NonTerminalNode current = primaryExpression.node(0);
+            switch (current.getKind()) {
+                case IDENTIFIER_OR_FUNCTION_CALL -> {
                     typeExpression = analyzeIdentifierOrFunctionCall(current, scope);
                 }
-                case "number" -> {
+                case NUMBER -> {
                     typeExpression = analyzeNumber(current);
                 }
-                case "boolean-literal" -> {
+                case BOOLEAN_LITERAL -> {
                     typeExpression = analyzeBooleanLiteral(current);
                 }
                 default -> throw new RuntimeException(); // Ошибка грамматики
             }
-            setStaticValueInNonTerminalNode(primaryExpression, typeExpression);
-            return typeExpression;
         }
+        setStaticValueInNonTerminalNode(primaryExpression, typeExpression);
+        return typeExpression;
     }
 
     private TypeExpression analyzeIdentifierOrFunctionCall(NonTerminalNode identifierOrFunctionCall, Scope scope) {
-        Token token = ((TokenNode) identifierOrFunctionCall.getChildren().get(0)).token;
-        NonTerminalNode identifierEndOrFunctionCall = (NonTerminalNode) identifierOrFunctionCall.getChildren().get(1);
-        if (((TokenNode) identifierEndOrFunctionCall.getChildren().get(0)).token == null) {
+        Token token = identifierOrFunctionCall.token(0);
+        NonTerminalNode identifierEndOrFunctionCall = identifierOrFunctionCall.node(1);
+        if (identifierEndOrFunctionCall.isEpsilon()) {
             return analyzeIdentifier(token, identifierOrFunctionCall, scope);
         } else {
-            NonTerminalNode arguments = (NonTerminalNode) identifierEndOrFunctionCall.getChildren().get(1);
+            NonTerminalNode arguments = identifierEndOrFunctionCall.node(1);
             return analyzeFunctionCall(arguments, token, scope);
         }
     }
 
     private TypeExpression analyzeIdentifier(Token token, NonTerminalNode identifierOrFunctionCall, Scope scope) {
-        Variable variable = scope.getVariable(token.name());
+        Variable variable = scope.getVariable(token.symbol());
         if (variable == null) {
             if (!noDeclaredVariables[currentIndexMethod].contains(token.name())) {
                 noDeclaredVariables[currentIndexMethod].add(token.name());
                 errors = true;
-                System.err.printf("The variable \"%s\" not declared. Error in line: %d.\n",
-                        token.name(), token.line());
+                diagnostics.report(DiagnosticCode.UNDECLARED_VARIABLE, token.line(), token.column(), token.name());
             }
             return null;
         }
         // Если используется в цикле, то меняем значение на true, чтобы потом не удалился код значения
         if (scope.isForOrWhileScope()) {
-            if (removeImmutableExpression.containsKey(variable.getName())) {
-                if (!removeImmutableExpression.get(variable.getName()).isEmpty()) {
-                    List<ImmutableExpression> list = removeImmutableExpression.get(variable.getName());
+            if (removeImmutableExpression.containsKey(variable.getSymbol())) {
+                if (!removeImmutableExpression.get(variable.getSymbol()).isEmpty()) {
+                    List<ImmutableExpression> list = removeImmutableExpression.get(variable.getSymbol());
                     if (!list.get(list.size()-1).forWhileUsed) {
                         list.add(new ImmutableExpression(list.remove(list.size()-1).node, true));
                     }
@@ -1565,23 +1123,22 @@ public class SemanticAnalyzer {
             String value = variable.getValue();
             if (!variable.isAnnounced()) {
                 errors = true;
-                System.err.printf("The variable \"%s\" has no defined value. Error in line: %d.\n",
-                        token.name(), token.line());
+                diagnostics.report(DiagnosticCode.UNDEFINED_VALUE, token.line(), token.column(), token.name());
                 return null;
             }
             TypeExpression typeExpression = new TypeExpression(variable.getType(), variable.isMutable(), value,
-                    null, new HashSet<>(Set.of(token.name())));
+                    new HashSet<>(Set.of(token.symbol())));
             setStaticValueInNonTerminalNode(identifierOrFunctionCall, typeExpression);
             return typeExpression;
         } else {
             variable.setMutable(true); // из-за цикла while
             variable.setUsed(true);
         }
-        return new TypeExpression(variable.getType(), variable.isMutable(), null, null, new HashSet<>(Set.of(token.name())));
+        return new TypeExpression(variable.getType(), variable.isMutable(), null, new HashSet<>(Set.of(token.symbol())));
     }
 
     private TypeExpression analyzeNumber(NonTerminalNode number) {
-        Token token = ((TokenNode) number.getChildren().get(0)).token;
+        Token token = number.token(0);
         switch (token.type()) {
             case NUMBER, FLOAT_NUMBER -> {
                 String value = getRemoveZerosAndGetNumber(token);
@@ -1590,7 +1147,7 @@ public class SemanticAnalyzer {
                     try {
                         Integer.parseInt(value);
                     } catch (NumberFormatException e) {
-                        System.err.println("Error: Integer value exceeds the 32-bit storage limit (-2,147,483,648 to 2,147,483,647).");
+                        diagnostics.report(DiagnosticCode.INT_OVERFLOW, token.line(), token.column());
                         errors = true;
                     }
                 } else {
@@ -1598,12 +1155,12 @@ public class SemanticAnalyzer {
                         float f = Float.parseFloat(value);
                         if (Float.isInfinite(f)) throw new NumberFormatException();
                     } catch (NumberFormatException e) {
-                        System.err.println("Error: Float value exceeds the 32-bit storage limit (approximately ±3.4e38).");
+                        diagnostics.report(DiagnosticCode.FLOAT_OVERFLOW, token.line(), token.column());
                         errors = true;
                     }
                 }
 
-                TypeExpression typeExpression = new TypeExpression(token.type(), false, value, null, new HashSet<>());
+                TypeExpression typeExpression = new TypeExpression(token.type(), false, value, new HashSet<>());
                 setStaticValueInNonTerminalNode(number, typeExpression);
                 return typeExpression;
             }
@@ -1628,14 +1185,14 @@ public class SemanticAnalyzer {
     }
 
     private TypeExpression analyzeBooleanLiteral(NonTerminalNode booleanLiteral) {
-        Token token = ((TokenNode) booleanLiteral.getChildren().get(0)).token;
+        Token token = booleanLiteral.token(0);
         TypeExpression typeExpression;
         switch (token.type()) {
             case TRUE -> {
-                typeExpression = new TypeExpression(TokenType.BOOLEAN, false, "true", null, new HashSet<>());
+                typeExpression = new TypeExpression(TokenType.BOOLEAN, false, "true", new HashSet<>());
             }
             case FALSE -> {
-                typeExpression = new TypeExpression(TokenType.BOOLEAN, false, "false", null, new HashSet<>());
+                typeExpression = new TypeExpression(TokenType.BOOLEAN, false, "false", new HashSet<>());
             }
             default -> throw new RuntimeException();
         }
@@ -1643,7 +1200,7 @@ public class SemanticAnalyzer {
         return typeExpression;
     }
 
-    private record TypeExpression(TokenType type, boolean mutable, String value, TokenType op, Set<String> variables) {}
+    private record TypeExpression(TokenType type, boolean mutable, String value, Set<Integer> variables) {}
     private record DataStatement(boolean hasReturn){}
 
 
@@ -0,0 +1,68 @@
+package ru.krizhanovskiy.semantic_analyzer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Отображение номер символа -> значение без упаковки ключей в Integer.
+ * Открытая адресация, как в SymbolTable; значения перечисляются в порядке добавления.
+ */
+final class SymbolMap<V> {
+    // Номер символа + 1 (0 - пустая ячейка) и номер значения в values
+    private int[] keys = new int[8];
+    private int[] indexes = new int[8];
+    private final List<V> values = new ArrayList<>();
+
+    V get(int symbol) {
+        int slot = find(symbol);
+        return keys[slot] == 0 ? null : values.get(indexes[slot]);
+    }
+
+    boolean containsKey(int symbol) {
+        return keys[find(symbol)] != 0;
+    }
+
+    void put(int symbol, V value) {
+        int slot = find(symbol);
+        if (keys[slot] != 0) {
+            values.set(indexes[slot], value);
+            return;
+        }
+        keys[slot] = symbol + 1;
+        indexes[slot] = values.size();
+        values.add(value);
+        if (values.size() * 2 > keys.length) rehash();
+    }
+
+    List<V> values() {
+        return Collections.unmodifiableList(values);
+    }
+
+    // Ячейка символа или пустая ячейка, куда его положить
+    private int find(int symbol) {
+        int mask = keys.length - 1;
+        int slot = mix(symbol) & mask;
+        while (keys[slot] != 0 && keys[slot] != symbol + 1) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        int[] oldIndexes = indexes;
+        keys = new int[oldKeys.length * 2];
+        indexes = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int slot = find(oldKeys[i] - 1);
+            keys[slot] = oldKeys[i];
+            indexes[slot] = oldIndexes[i];
+        }
+    }
+
+    // Номера символов плотные - соседние номера разносятся по таблице
+    private static int mix(int symbol) {
+        int hash = symbol * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -6,6 +6,7 @@ import ru.krizhanovskiy.lexer.token.TokenType;
 public class Variable {
     private final TokenType type;
     private final String name;
+    private final int symbol;
     private String value;
     private boolean isMutable = false;
     private boolean used = false;
@@ -14,9 +15,10 @@ public class Variable {
     private String lastValue;
     private int index;
 
-    public Variable(TokenType type, String name, NonTerminalNode declarationStatement) {
+    public Variable(TokenType type, String name, int symbol, NonTerminalNode declarationStatement) {
         this.type = type;
         this.name = name;
+        this.symbol = symbol;
         this.declarationStatement = declarationStatement;
     }
 
@@ -36,6 +38,10 @@ public class Variable {
         return name;
     }
 
+    public int getSymbol() {
+        return symbol;
+    }
+
     public String getValue() {
         return value;
     }
@@ -1,6 +1,8 @@
 package ru.krizhanovskiy.translation;
 
 import javassist.*;
+import ru.krizhanovskiy.ast.FlatAst;
+import ru.krizhanovskiy.ast.NodeKind;
 import ru.krizhanovskiy.ast.NonTerminalNode;
 import ru.krizhanovskiy.ast.TokenNode;
 import ru.krizhanovskiy.lexer.token.TokenType;
@@ -8,24 +10,55 @@ import ru.krizhanovskiy.lexer.token.Token;
 import ru.krizhanovskiy.semantic_analyzer.Method;
 import ru.krizhanovskiy.semantic_analyzer.Variable;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.List;
 import java.util.HashSet;
 import java.util.Set;
 
 public class Translator {
     private final NonTerminalNode ast;
+    private final FlatAst flatAst; // AST из FlatAst (Main --flat-ast); тогда ast == null
+    private final int[] methodNodes; // узлы method в flatAst в порядке methods
     private final List<Method> methods;
     private CtClass mainClass;
     private ClassPool pool;
     private boolean hasMainMethod;
+    private CtClass previousClass; // Main.class прошлой сборки
+    private Set<NonTerminalNode> reusedMethods = Set.of();
+    public byte[] bytecode; // Main.class после translate()
 
     public Translator(NonTerminalNode ast, List<Method> methods) {
         this.ast = ast;
+        this.flatAst = null;
+        this.methodNodes = null;
         this.methods = methods;
         this.pool = ClassPool.getDefault();
         this.hasMainMethod = false;
     }
 
+    /**
+     * Трансляция AST из FlatAst после {@link ru.krizhanovskiy.semantic_analyzer.FlatSemanticAnalyzer}:
+     * дерево не оптимизировано, тела методов строятся прямо по исходным операторам
+     */
+    public Translator(FlatAst ast, int[] methodNodes, List<Method> methods) {
+        this.ast = null;
+        this.flatAst = ast;
+        this.methodNodes = methodNodes;
+        this.methods = methods;
+        this.pool = ClassPool.getDefault();
+        this.hasMainMethod = false;
+    }
+
+    /**
+     * Тела методов methods не транслируются, а копируются из Main.class прошлой сборки
+     */
+    public void reuse(byte[] classFile, Set<NonTerminalNode> methods) throws IOException {
+        // Отдельный ClassPool - в основном класс Main создаётся заново
+        previousClass = new ClassPool(true).makeClass(new ByteArrayInputStream(classFile));
+        reusedMethods = methods;
+    }
+
     public void translate() throws Exception {
         // Create the Main class
         pool.insertClassPath(new ClassClassPath(this.getClass()));
@@ -51,6 +84,7 @@ public class Translator {
 
         // Write the class file
         mainClass.writeFile();
+        bytecode = mainClass.toBytecode();
     }
 
     private void addBaseMethods() throws Exception {
@@ -108,10 +142,9 @@ public class Translator {
     }
 
     private void declareMethods() throws Exception {
-        NonTerminalNode current = (NonTerminalNode) ast.getChildren().get(0); // First method
         int methodIndex = 0;
 
-        while (current != null && current.getChildren().get(0) instanceof NonTerminalNode) {
+        for (; methodIndex < methodCount(); methodIndex++) {
             if (methodIndex >= methods.size()) {
                 throw new IllegalStateException("Mismatch: More AST method nodes than methods in list");
             }
@@ -119,18 +152,19 @@ public class Translator {
             if (method.name().equals("main") && method.parameters().isEmpty()) {
                 hasMainMethod = true;
             }
-            declareMethod(current, method);
-            NonTerminalNode methodOptional = (NonTerminalNode) current.getPrev().getChildren().get(1);
-            current = (methodOptional.getChildren().get(0) instanceof NonTerminalNode) ?
-                    (NonTerminalNode) methodOptional.getChildren().get(0) : null;
-            methodIndex++;
+            declareMethod(method);
         }
         if (methodIndex < methods.size()) {
             throw new IllegalStateException("Mismatch: Fewer AST method nodes than methods in list");
         }
     }
 
-    private void declareMethod(NonTerminalNode methodNode, Method method) throws Exception {
+    // Число узлов method в AST
+    private int methodCount() {
+        return ast != null ? ast.size() : methodNodes.length;
+    }
+
+    private void declareMethod(Method method) throws Exception {
         String returnType = getJavaType(method.returnType());
         StringBuilder methodSignature = new StringBuilder("private static ");
         methodSignature.append(returnType).append(" ").append(method.name()).append("(");
@@ -156,25 +190,21 @@ public class Translator {
     }
 
     private void translateMethodBodies() throws Exception {
-        NonTerminalNode current = (NonTerminalNode) ast.getChildren().get(0); // First method
         int methodIndex = 0;
 
-        while (current != null && current.getChildren().get(0) instanceof NonTerminalNode) {
+        for (; methodIndex < methodCount(); methodIndex++) {
             if (methodIndex >= methods.size()) {
                 throw new IllegalStateException("Mismatch: More AST method nodes than methods in list");
             }
-            translateMethodBody(current, methods.get(methodIndex));
-            NonTerminalNode methodOptional = (NonTerminalNode) current.getPrev().getChildren().get(1);
-            current = (methodOptional.getChildren().get(0) instanceof NonTerminalNode) ?
-                    (NonTerminalNode) methodOptional.getChildren().get(0) : null;
-            methodIndex++;
+            if (ast != null && reusedMethods.contains(ast.node(methodIndex))) copyMethodBody(methods.get(methodIndex));
+            else translateMethodBody(methodIndex, methods.get(methodIndex));
         }
         if (methodIndex < methods.size()) {
             throw new IllegalStateException("Mismatch: Fewer AST method nodes than methods in list");
         }
     }
 
-    private void translateMethodBody(NonTerminalNode methodNode, Method method) throws Exception {
+    private void translateMethodBody(int methodIndex, Method method) throws Exception {
         String returnType = getJavaType(method.returnType());
         StringBuilder methodSignature = new StringBuilder("private static ");
         methodSignature.append(returnType).append(" ").append(method.name()).append("(");
@@ -198,8 +228,15 @@ public class Translator {
         // Method body
         StringBuilder methodBody = new StringBuilder();
         methodBody.append("\n");
-        NonTerminalNode statements = (NonTerminalNode) methodNode.getChildren().get(6);
-        translateStatements(statements, methodBody, method, parameterNames);
+        if (ast != null) {
+            translateStatements(ast.node(methodIndex).node(6), methodBody, method, parameterNames);
+        } else {
+            translateStatements(flatAst.child(methodNodes[methodIndex], 6), methodBody);
+            // Return по ветке константного условия (if (true) return ...) javassist не находит
+            if (method.returnType() != TokenType.VOID) {
+                methodBody.append("return ").append(getDefaultReturnValue(method.returnType())).append(";\n");
+            }
+        }
 
         methodBody.append("}");
 
@@ -207,7 +244,7 @@ public class Translator {
         String fullMethodCode = methodSignature.toString() + methodBody.toString();
 
         // Find and remove the existing method
-        CtMethod ctMethod = findMethodBySignature(method);
+        CtMethod ctMethod = findMethodBySignature(mainClass, method);
         if (ctMethod == null) {
             throw new IllegalStateException("Method not found: " + method.name() + " with " + parameters.size() + " parameters");
         }
@@ -228,8 +265,18 @@ public class Translator {
         }
     }
 
-    private CtMethod findMethodBySignature(Method method) throws NotFoundException {
-        CtMethod[] declaredMethods = mainClass.getDeclaredMethods(method.name());
+    // Байт-код метода из прошлой сборки вместо объявления-заглушки
+    private void copyMethodBody(Method method) throws Exception {
+        CtMethod previous = findMethodBySignature(previousClass, method);
+        if (previous == null) {
+            throw new IllegalStateException("Cached method not found: " + method.name() + " with " + method.parameters().size() + " parameters");
+        }
+        mainClass.removeMethod(findMethodBySignature(mainClass, method));
+        mainClass.addMethod(new CtMethod(previous, mainClass, null));
+    }
+
+    private CtMethod findMethodBySignature(CtClass ctClass, Method method) throws NotFoundException {
+        CtMethod[] declaredMethods = ctClass.getDeclaredMethods(method.name());
         for (CtMethod ctMethod : declaredMethods) {
             CtClass[] paramTypes = ctMethod.getParameterTypes();
             List<Variable> methodParams = method.parameters();
@@ -251,41 +298,39 @@ public class Translator {
     }
 
     private void translateStatements(NonTerminalNode statements, StringBuilder methodBody, Method method, Set<String> parameterNames) throws Exception {
-        if (statements.getChildren().get(0) instanceof NonTerminalNode) {
-            translateStatement((NonTerminalNode) statements.getChildren().get(0), methodBody, method, parameterNames);
-            translateStatements((NonTerminalNode) statements.getChildren().get(1), methodBody, method, parameterNames);
+        for (int i = 0; i < statements.size(); i++) {
+            translateStatement(statements.node(i), methodBody, method, parameterNames);
         }
     }
 
     private void translateStatement(NonTerminalNode statement, StringBuilder methodBody, Method method, Set<String> parameterNames) throws Exception {
-        if (statement.getChildren().get(0) instanceof NonTerminalNode current) {
-            switch (current.name) {
-                case "declaration":
+        if (statement.isEpsilon()) return; // ε
+        if (statement.child(0) instanceof NonTerminalNode current) {
+            switch (current.getKind()) {
+                case DECLARATION:
                     translateDeclaration(current, methodBody, statement.getPrev(), parameterNames);
                     break;
-                case "assignment-or-function-call":
+                case ASSIGNMENT_OR_FUNCTION_CALL:
                     translateAssignmentOrFunctionCall(current, methodBody, method, parameterNames);
                     break;
-                case "if-statement":
+                case IF_STATEMENT:
                     translateIfStatement(current, methodBody, method, parameterNames);
                     break;
-                case "while-loop":
+                case WHILE_LOOP:
                     translateWhileStatement(current, methodBody, method, parameterNames);
                     break;
-                case "for-loop":
+                case FOR_LOOP:
                     translateForLoop(current, methodBody, method, parameterNames);
                     break;
-                case "return-statement":
+                case RETURN_STATEMENT:
                     translateReturnStatement(current, methodBody, method, parameterNames);
                     break;
             }
         } else {
-            TokenNode tokenNode = (TokenNode) statement.getChildren().get(0);
-            if (tokenNode.token == null) return; // ε
-            switch (tokenNode.token.type()) {
+            switch (statement.token(0).type()) {
                 case OPEN_CURLY_BRACKET:
                     methodBody.append("{\n");
-                    translateStatements((NonTerminalNode) statement.getChildren().get(1), methodBody, method, parameterNames);
+                    translateStatements(statement.node(1), methodBody, method, parameterNames);
                     methodBody.append("}\n");
                     break;
                 case BREAK:
@@ -299,50 +344,50 @@ public class Translator {
     }
 
     private void translateDeclaration(NonTerminalNode declaration, StringBuilder methodBody, NonTerminalNode statement, Set<String> parameterNames) throws Exception {
-        TokenType type = getType((NonTerminalNode) declaration.getChildren().get(0));
-        String name = ((TokenNode) declaration.getChildren().get(1)).token.name();
+        TokenType type = getType(declaration.node(0));
+        String name = declaration.token(1).name();
         methodBody.append(getJavaType(type)).append(" ").append(name);
 
-        if (declaration.getPrev().name.equals("declaration-and-assigment")) {
+        if (declaration.getPrev().getKind() == NodeKind.DECLARATION_AND_ASSIGMENT) {
             methodBody.append(" = ");
-            translateExpression((NonTerminalNode) declaration.getPrev().getChildren().get(2), methodBody, parameterNames);
-        } else if (declaration.getPrev().getChildren().get(1) instanceof NonTerminalNode optionalAssignment) {
-            if (((TokenNode) optionalAssignment.getChildren().get(0)).token != null) {
+            translateExpression(declaration.getPrev().node(2), methodBody, parameterNames);
+        } else if (declaration.getPrev().child(1) instanceof NonTerminalNode optionalAssignment) {
+            if (!optionalAssignment.isEpsilon()) {
                 methodBody.append(" = ");
-                translateExpression((NonTerminalNode) optionalAssignment.getChildren().get(1), methodBody, parameterNames);
+                translateExpression(optionalAssignment.node(1), methodBody, parameterNames);
             }
         }
         methodBody.append(";\n");
     }
 
     private void translateAssignmentOrFunctionCall(NonTerminalNode node, StringBuilder methodBody, Method method, Set<String> parameterNames) throws Exception {
-        Token identity = ((TokenNode) node.getChildren().get(0)).token;
-        NonTerminalNode continueNode = (NonTerminalNode) node.getChildren().get(1);
-        if (((TokenNode) continueNode.getChildren().get(0)).token.type() == TokenType.EQUALS) {
+        Token identity = node.token(0);
+        NonTerminalNode continueNode = node.node(1);
+        if (continueNode.token(0).type() == TokenType.EQUALS) {
             /*if (!parameterNames.contains(identity.name())) {
                 throw new IllegalStateException("Assignment to undefined variable: " + identity.name());
             }*/
             methodBody.append(identity.name()).append(" = ");
-            translateExpression((NonTerminalNode) continueNode.getChildren().get(1), methodBody, parameterNames);
+            translateExpression(continueNode.node(1), methodBody, parameterNames);
             methodBody.append(";\n");
         } else {
             methodBody.append(identity.name()).append("(");
-            translateArguments((NonTerminalNode) continueNode.getChildren().get(1), methodBody, parameterNames);
+            translateArguments(continueNode.node(1), methodBody, parameterNames);
             methodBody.append(");\n");
         }
     }
 
     private void translateIfStatement(NonTerminalNode ifStatement, StringBuilder methodBody, Method method, Set<String> parameterNames) throws Exception {
         methodBody.append("if (");
-        translateExpression((NonTerminalNode) ifStatement.getChildren().get(2), methodBody, parameterNames);
+        translateExpression(ifStatement.node(2), methodBody, parameterNames);
         methodBody.append(") {\n");
-        translateStatement((NonTerminalNode) ifStatement.getChildren().get(4), methodBody, method, parameterNames);
+        translateStatement(ifStatement.node(4), methodBody, method, parameterNames);
         methodBody.append("}");
 
-        NonTerminalNode elseOptional = (NonTerminalNode) ifStatement.getChildren().get(5);
-        if (((TokenNode) elseOptional.getChildren().get(0)).token != null) {
+        NonTerminalNode elseOptional = ifStatement.node(5);
+        if (!elseOptional.isEpsilon()) {
             methodBody.append(" else {\n");
-            translateStatement((NonTerminalNode) elseOptional.getChildren().get(1), methodBody, method, parameterNames);
+            translateStatement(elseOptional.node(1), methodBody, method, parameterNames);
             methodBody.append("}\n");
         } else {
             methodBody.append("\n");
@@ -350,270 +395,109 @@ public class Translator {
     }
 
     private void translateWhileStatement(NonTerminalNode whileStatement, StringBuilder methodBody, Method method, Set<String> parameterNames) throws Exception {
-        Token token = ((TokenNode) whileStatement.getChildren().get(0)).token;
+        Token token = whileStatement.token(0);
         if (token.type() == TokenType.WHILE) {
             methodBody.append("while (");
-            translateExpression((NonTerminalNode) whileStatement.getChildren().get(2), methodBody, parameterNames);
+            translateExpression(whileStatement.node(2), methodBody, parameterNames);
             methodBody.append(") {\n");
-            translateStatement((NonTerminalNode) whileStatement.getChildren().get(4), methodBody, method, parameterNames);
+            translateStatement(whileStatement.node(4), methodBody, method, parameterNames);
             methodBody.append("}\n");
         } else { // do-while
             methodBody.append("do {\n");
-            translateStatement((NonTerminalNode) whileStatement.getChildren().get(1), methodBody, method, parameterNames);
+            translateStatement(whileStatement.node(1), methodBody, method, parameterNames);
             methodBody.append("} while (");
-            translateExpression((NonTerminalNode) whileStatement.getChildren().get(4), methodBody, parameterNames);
+            translateExpression(whileStatement.node(4), methodBody, parameterNames);
             methodBody.append(");\n");
         }
     }
 
     private void translateForLoop(NonTerminalNode forLoop, StringBuilder methodBody, Method method, Set<String> parameterNames) throws Exception {
         methodBody.append("for (");
-        NonTerminalNode declAssignment = (NonTerminalNode) forLoop.getChildren().get(2);
-        translateDeclaration((NonTerminalNode) declAssignment.getChildren().get(0), methodBody, declAssignment, parameterNames);
+        NonTerminalNode declAssignment = forLoop.node(2);
+        translateDeclaration(declAssignment.node(0), methodBody, declAssignment, parameterNames);
         methodBody.setLength(methodBody.length() - 2); // Remove semicolon
         methodBody.append("; ");
-        translateExpression((NonTerminalNode) forLoop.getChildren().get(4), methodBody, parameterNames);
+        translateExpression(forLoop.node(4), methodBody, parameterNames);
         methodBody.append("; ");
-        NonTerminalNode assignment = (NonTerminalNode) forLoop.getChildren().get(6);
-        methodBody.append(((TokenNode) assignment.getChildren().get(0)).token.name()).append(" = ");
-        translateExpression((NonTerminalNode) assignment.getChildren().get(2), methodBody, parameterNames);
+        NonTerminalNode assignment = forLoop.node(6);
+        methodBody.append(assignment.token(0).name()).append(" = ");
+        translateExpression(assignment.node(2), methodBody, parameterNames);
         methodBody.append(") {\n");
-        translateStatement((NonTerminalNode) forLoop.getChildren().get(8), methodBody, method, parameterNames);
+        translateStatement(forLoop.node(8), methodBody, method, parameterNames);
         methodBody.append("}\n");
     }
 
     private void translateReturnStatement(NonTerminalNode returnStatement, StringBuilder methodBody, Method method, Set<String> parameterNames) throws Exception {
-        NonTerminalNode returnExpr = (NonTerminalNode) returnStatement.getChildren().get(1);
+        NonTerminalNode returnExpr = returnStatement.node(1);
         methodBody.append("return");
-        if (returnExpr.getChildren().get(0) instanceof NonTerminalNode) {
+        if (!returnExpr.isEpsilon()) {
             methodBody.append(" ");
-            translateExpression((NonTerminalNode) returnExpr.getChildren().get(0), methodBody, parameterNames);
+            translateExpression(returnExpr.node(0), methodBody, parameterNames);
         }
         methodBody.append(";\n");
     }
 
     private void translateExpression(NonTerminalNode expression, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        NonTerminalNode logicalOrExpression = (NonTerminalNode) expression.getChildren().get(0);
-        if (logicalOrExpression.getValue() != null) {
-            methodBody.append(getValue(logicalOrExpression));
-        } else {
-            translateLogicalOrExpression(logicalOrExpression, methodBody, parameterNames);
-        }
-    }
-
-    private void translateLogicalOrExpression(NonTerminalNode logicalOrExpression, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        NonTerminalNode logicalAndExpression = (NonTerminalNode) logicalOrExpression.getChildren().get(0);
-        NonTerminalNode logicalOrTail = (NonTerminalNode) logicalOrExpression.getChildren().get(1);
-        if (logicalOrExpression.getValue() != null) {
-            methodBody.append(getValue(logicalOrExpression));
-        } else {
-            if (((TokenNode) logicalOrTail.getChildren().get(0)).token != null) {
-                translateLogicalOrTail(logicalOrTail, methodBody, parameterNames);
-                methodBody.append(" || ");
-            }
-            translateLogicalAndExpression(logicalAndExpression, methodBody, parameterNames);
-        }
-    }
-
-    private void translateLogicalOrTail(NonTerminalNode logicalOrTail, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        if (((TokenNode) logicalOrTail.getChildren().get(0)).token == null) return;
-        NonTerminalNode logicalAndExpression = (NonTerminalNode) logicalOrTail.getChildren().get(1);
-        NonTerminalNode nextTail = (NonTerminalNode) logicalOrTail.getChildren().get(2);
-        if (((TokenNode) nextTail.getChildren().get(0)).token != null) {
-            translateLogicalOrTail(nextTail, methodBody, parameterNames);
-            methodBody.append(" || ");
-        }
-        translateLogicalAndExpression(logicalAndExpression, methodBody, parameterNames);
-    }
-
-    private void translateLogicalAndExpression(NonTerminalNode logicalAndExpression, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        NonTerminalNode equalityExpression = (NonTerminalNode) logicalAndExpression.getChildren().get(0);
-        NonTerminalNode logicalAndTail = (NonTerminalNode) logicalAndExpression.getChildren().get(1);
-        if (logicalAndExpression.getValue() != null) {
-            methodBody.append(getValue(logicalAndExpression));
-        } else {
-            if (((TokenNode) logicalAndTail.getChildren().get(0)).token != null) {
-                translateLogicalAndTail(logicalAndTail, methodBody, parameterNames);
-                methodBody.append(" && ");
-            }
-            translateEqualityExpression(equalityExpression, methodBody, parameterNames);
-        }
-    }
-
-    private void translateLogicalAndTail(NonTerminalNode logicalAndTail, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        if (((TokenNode) logicalAndTail.getChildren().get(0)).token == null) return;
-        NonTerminalNode equalityExpression = (NonTerminalNode) logicalAndTail.getChildren().get(1);
-        NonTerminalNode nextTail = (NonTerminalNode) logicalAndTail.getChildren().get(2);
-        if (((TokenNode) nextTail.getChildren().get(0)).token != null) {
-            translateLogicalAndTail(nextTail, methodBody, parameterNames);
-            methodBody.append(" && ");
-        }
-        translateEqualityExpression(equalityExpression, methodBody, parameterNames);
-    }
-
-    private void translateEqualityExpression(NonTerminalNode equalityExpression, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        NonTerminalNode relationalExpression = (NonTerminalNode) equalityExpression.getChildren().get(0);
-        NonTerminalNode equalityTail = (NonTerminalNode) equalityExpression.getChildren().get(1);
-        if (equalityExpression.getValue() != null) {
-            methodBody.append(getValue(equalityExpression));
-        } else {
-            if (((TokenNode) equalityTail.getChildren().get(0)).token != null) {
-                translateEqualityTail(equalityTail, methodBody, parameterNames);
-                TokenType op = ((TokenNode) equalityTail.getChildren().get(0)).token.type();
-                methodBody.append(" ").append(op == TokenType.DOUBLE_EQUAL ? "==" : "!=").append(" ");
-            }
-            translateRelationalExpression(relationalExpression, methodBody, parameterNames);
-        }
+        translateOperand(expression.node(0), methodBody, parameterNames);
     }
 
-    private void translateEqualityTail(NonTerminalNode equalityTail, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        if (((TokenNode) equalityTail.getChildren().get(0)).token == null) return;
-        NonTerminalNode relationalExpression = (NonTerminalNode) equalityTail.getChildren().get(1);
-        NonTerminalNode nextTail = (NonTerminalNode) equalityTail.getChildren().get(2);
-        if (((TokenNode) nextTail.getChildren().get(0)).token != null) {
-            translateEqualityTail(nextTail, methodBody, parameterNames);
-            TokenType op = ((TokenNode) nextTail.getChildren().get(0)).token.type();
-            methodBody.append(" ").append(op == TokenType.DOUBLE_EQUAL ? "==" : "!=").append(" ");
+    private void translateOperand(NonTerminalNode operand, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
+        if (operand.getValue() != null) { // значение вычислено при анализе
+            methodBody.append(getValue(operand));
+            return;
         }
-        translateRelationalExpression(relationalExpression, methodBody, parameterNames);
-    }
-
-    private void translateRelationalExpression(NonTerminalNode relationalExpression, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        NonTerminalNode additiveExpression = (NonTerminalNode) relationalExpression.getChildren().get(0);
-        NonTerminalNode relationalTail = (NonTerminalNode) relationalExpression.getChildren().get(1);
-        if (relationalExpression.getValue() != null) {
-            methodBody.append(getValue(relationalExpression));
-        } else {
-            if (((TokenNode) relationalTail.getChildren().get(0)).token != null) {
-                translateRelationalTail(relationalTail, methodBody, parameterNames);
-                TokenType op = ((TokenNode) relationalTail.getChildren().get(0)).token.type();
-                String opStr = switch (op) {
-                    case LESS_THAN -> "<";
-                    case GREATER_THAN -> ">";
-                    case LESS_THAN_EQUALS -> "<=";
-                    case GREATER_THAN_EQUALS -> ">=";
-                    default -> throw new IllegalStateException("Invalid relational operator");
-                };
-                methodBody.append(" ").append(opStr).append(" ");
-            }
-            translateAdditiveExpression(additiveExpression, methodBody, parameterNames);
-        }
-    }
-
-    private void translateRelationalTail(NonTerminalNode relationalTail, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        if (((TokenNode) relationalTail.getChildren().get(0)).token == null) return;
-        NonTerminalNode additiveExpression = (NonTerminalNode) relationalTail.getChildren().get(1);
-        NonTerminalNode nextTail = (NonTerminalNode) relationalTail.getChildren().get(2);
-        if (((TokenNode) nextTail.getChildren().get(0)).token != null) {
-            translateRelationalTail(nextTail, methodBody, parameterNames);
-            TokenType op = ((TokenNode) relationalTail.getChildren().get(0)).token.type();
-            String opStr = switch (op) {
-                case LESS_THAN -> "<";
-                case GREATER_THAN -> ">";
-                case LESS_THAN_EQUALS -> "<=";
-                case GREATER_THAN_EQUALS -> ">=";
-                default -> throw new IllegalStateException("Invalid relational operator");
-            };
-            methodBody.append(" ").append(opStr).append(" ");
-        }
-        translateAdditiveExpression(additiveExpression, methodBody, parameterNames);
-    }
-
-    private void translateAdditiveExpression(NonTerminalNode additiveExpression, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        NonTerminalNode multiplicativeExpression = (NonTerminalNode) additiveExpression.getChildren().get(0);
-        NonTerminalNode additiveTail = (NonTerminalNode) additiveExpression.getChildren().get(1);
-        if (additiveExpression.getValue() != null) {
-            methodBody.append(getValue(additiveExpression));
-        } else {
-            if (((TokenNode) additiveTail.getChildren().get(0)).token != null) {
-                translateAdditiveTail(additiveTail, methodBody, parameterNames);
-                TokenType op = ((TokenNode) additiveTail.getChildren().get(0)).token.type();
-                methodBody.append(" ").append(op == TokenType.PLUS ? "+" : "-").append(" ");
+        switch (operand.getKind()) {
+            case BINARY_EXPRESSION -> {
+                translateOperand(operand.node(0), methodBody, parameterNames);
+                Token op = operand.token(1);
+                methodBody.append(" ").append(op.name()).append(" ");
+                translateOperand(operand.node(2), methodBody, parameterNames);
             }
-            translateMultiplicativeExpression(multiplicativeExpression, methodBody, parameterNames);
-        }
-    }
-
-    private void translateAdditiveTail(NonTerminalNode additiveTail, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        if (((TokenNode) additiveTail.getChildren().get(0)).token == null) return;
-        NonTerminalNode multiplicativeExpression = (NonTerminalNode) additiveTail.getChildren().get(1);
-        NonTerminalNode nextTail = (NonTerminalNode) additiveTail.getChildren().get(2);
-        if (((TokenNode) nextTail.getChildren().get(0)).token != null) {
-            translateAdditiveTail(nextTail, methodBody, parameterNames);
-            TokenType op = ((TokenNode) additiveTail.getChildren().get(0)).token.type();
-            methodBody.append(" ").append(op == TokenType.PLUS ? "+" : "-").append(" ");
-        }
-        translateMultiplicativeExpression(multiplicativeExpression, methodBody, parameterNames);
-    }
-
-    private void translateMultiplicativeExpression(NonTerminalNode multiplicativeExpression, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        NonTerminalNode unaryExpression = (NonTerminalNode) multiplicativeExpression.getChildren().get(0);
-        NonTerminalNode multiplicativeTail = (NonTerminalNode) multiplicativeExpression.getChildren().get(1);
-        if (multiplicativeExpression.getValue() != null) {
-            methodBody.append(getValue(multiplicativeExpression));
-        } else {
-            if (((TokenNode) multiplicativeTail.getChildren().get(0)).token != null) {
-                translateMultiplicativeTail(multiplicativeTail, methodBody, parameterNames);
-                TokenType op = ((TokenNode) multiplicativeTail.getChildren().get(0)).token.type();
-                methodBody.append(" ").append(op == TokenType.MULTIPLICATION ? "*" : "/").append(" ");
+            case UNARY_EXPRESSION -> {
+                Token op = operand.token(0);
+                methodBody.append(op.name());
+                int start = methodBody.length();
+                translateOperand(operand.node(1), methodBody, parameterNames);
+                if (start < methodBody.length() && methodBody.charAt(start) == '-') methodBody.insert(start, ' '); // не --
             }
-            translateUnaryExpression(unaryExpression, methodBody, parameterNames);
-        }
-    }
-
-    private void translateMultiplicativeTail(NonTerminalNode multiplicativeTail, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        if (((TokenNode) multiplicativeTail.getChildren().get(0)).token == null) return;
-        NonTerminalNode unaryExpression = (NonTerminalNode) multiplicativeTail.getChildren().get(1);
-        NonTerminalNode nextTail = (NonTerminalNode) multiplicativeTail.getChildren().get(2);
-        if (((TokenNode) nextTail.getChildren().get(0)).token != null) {
-            translateMultiplicativeTail(nextTail, methodBody, parameterNames);
-            TokenType op = ((TokenNode) multiplicativeTail.getChildren().get(0)).token.type();
-            methodBody.append(" ").append(op == TokenType.MULTIPLICATION ? "*" : "/").append(" ");
-        }
-        translateUnaryExpression(unaryExpression, methodBody, parameterNames);
-    }
-
-    private void translateUnaryExpression(NonTerminalNode unaryExpression, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        if (unaryExpression.getChildren().get(0) instanceof NonTerminalNode primaryExpression) {
-            if (unaryExpression.getValue() != null) {
-                methodBody.append(getValue(unaryExpression));
-            } else {
-                translatePrimaryExpression(primaryExpression, methodBody, parameterNames);
-            }
-        } else {
-            TokenType op = ((TokenNode) unaryExpression.getChildren().get(0)).token.type();
-            methodBody.append(op == TokenType.NOT ? "!" : "-");
-            translateUnaryExpression((NonTerminalNode) unaryExpression.getChildren().get(1), methodBody, parameterNames);
+            case PRIMARY_EXPRESSION -> translatePrimaryExpression(operand, methodBody, parameterNames);
+            default -> throw new IllegalStateException("Unexpected expression node: " + operand.getName());
         }
     }
 
     private void translatePrimaryExpression(NonTerminalNode primaryExpression, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        if (primaryExpression.getChildren().get(0) instanceof TokenNode) { // ( expression )
-            translateExpression((NonTerminalNode) primaryExpression.getChildren().get(1), methodBody, parameterNames);
+        if (primaryExpression.child(0) instanceof TokenNode) { // ( expression )
+            // Скобки из исходного текста сохраняются: дерево выражения повторяет их, а приоритеты операций совпадают с Java
+            methodBody.append("(");
+            translateExpression(primaryExpression.node(1), methodBody, parameterNames);
+            methodBody.append(")");
         } else {
-            NonTerminalNode current = (NonTerminalNode) primaryExpression.getChildren().get(0);
-            if (primaryExpression.getValue() != null) {
-                methodBody.append(getValue(primaryExpression));
-            } else {
-                switch (current.name) {
-                    case "identifier-or-function-call":
-                        translateIdentifierOrFunctionCall(current, methodBody, parameterNames);
-                        break;
-                    case "number":
-                        translateNumber((NonTerminalNode) current.getChildren().get(0), methodBody);
-                        break;
-                    case "boolean-literal":
-                        methodBody.append(((TokenNode) current.getChildren().get(0)).token.name());
-                        break;
-                }
+            NonTerminalNode current = primaryExpression.node(0);
+            switch (current.getKind()) {
+                case IDENTIFIER_OR_FUNCTION_CALL:
+                    translateIdentifierOrFunctionCall(current, methodBody, parameterNames);
+                    break;
+                case NUMBER:
+                    translateNumber(current, methodBody);
+                    break;
+                case BOOLEAN_LITERAL:
+                    methodBody.append(current.token(0).name());
+                    break;
             }
         }
     }
 
     private void translateNumber(NonTerminalNode numberNode, StringBuilder methodBody) {
-        TokenNode tokenNode = (TokenNode) numberNode.getChildren().get(0);
-        String value = tokenNode.token.name();
-        if (numberNode.name.equals("float-number") || tokenNode.token.type() == TokenType.FLOAT_NUMBER) {
+        Token token = numberNode.token(0);
+        appendNumber(token.type(), token.name(), methodBody);
+    }
+
+    private void appendNumber(TokenType type, String value, StringBuilder methodBody) {
+        // 010 в Java - восьмеричное число, а 00.5 javassist не разбирает
+        int start = 0;
+        while (start < value.length() - 1 && value.charAt(start) == '0' && Character.isDigit(value.charAt(start + 1))) start++;
+        value = value.substring(start);
+        if (type == TokenType.FLOAT_NUMBER) {
             // Ensure float literals end with 'f'
             if (!value.endsWith("f") && !value.endsWith("F")) {
                 value += "f";
@@ -623,38 +507,36 @@ public class Translator {
     }
 
     private void translateIdentifierOrFunctionCall(NonTerminalNode identifierOrFunctionCall, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        Token token = ((TokenNode) identifierOrFunctionCall.getChildren().get(0)).token;
-        NonTerminalNode identifierEndOrFunctionCall = (NonTerminalNode) identifierOrFunctionCall.getChildren().get(1);
+        Token token = identifierOrFunctionCall.token(0);
+        NonTerminalNode identifierEndOrFunctionCall = identifierOrFunctionCall.node(1);
         if (identifierOrFunctionCall.getValue() != null) {
             methodBody.append(getValue(identifierOrFunctionCall));
         } else {
-            if (((TokenNode) identifierEndOrFunctionCall.getChildren().get(0)).token == null) {
+            if (identifierEndOrFunctionCall.isEpsilon()) {
                 /*if (!parameterNames.contains(token.name())) {
                     throw new IllegalStateException("Identifier " + token.name() + " is not a parameter or local variable in method");
                 }*/
                 methodBody.append(token.name());
             } else {
                 methodBody.append(token.name()).append("(");
-                translateArguments((NonTerminalNode) identifierEndOrFunctionCall.getChildren().get(1), methodBody, parameterNames);
+                translateArguments(identifierEndOrFunctionCall.node(1), methodBody, parameterNames);
                 methodBody.append(")");
             }
         }
     }
 
     private void translateArguments(NonTerminalNode arguments, StringBuilder methodBody, Set<String> parameterNames) throws Exception {
-        if (arguments.getChildren().get(0) instanceof TokenNode tokenNode) {
-            if (tokenNode.token != null && tokenNode.token.type() == TokenType.STRING) {
+        if (arguments.isEpsilon()) return;
+        if (arguments.child(0) instanceof TokenNode tokenNode) {
+            if (tokenNode.token.type() == TokenType.STRING) {
                 methodBody.append("\"").append(tokenNode.token.name()).append("\"");
             }
         } else {
-            NonTerminalNode argumentList = (NonTerminalNode) arguments.getChildren().get(0);
-            do {
-                translateExpression((NonTerminalNode) argumentList.getChildren().get(0), methodBody, parameterNames);
-                argumentList = (NonTerminalNode) argumentList.getChildren().get(1);
-                if (((TokenNode) argumentList.getChildren().get(0)).token == null) break;
-                methodBody.append(", ");
-                argumentList = (NonTerminalNode) argumentList.getChildren().get(1);
-            } while (true);
+            NonTerminalNode argumentList = arguments.node(0);
+            for (int i = 0; i < argumentList.size(); i++) {
+                if (i > 0) methodBody.append(", ");
+                translateExpression(argumentList.node(i), methodBody, parameterNames);
+            }
         }
     }
 
@@ -680,17 +562,212 @@ public class Translator {
             throw new IllegalArgumentException("TokenType is null");
         }
         return switch (type) {
-            case NUMBER -> "0";
-            case FLOAT_NUMBER -> "0.0f";
+            case NUMBER, INT -> "0";
+            case FLOAT_NUMBER, FLOAT -> "0.0f";
             case BOOLEAN -> "false";
             default -> "";
         };
     }
 
     private TokenType getType(NonTerminalNode typeNode) {
-        if (typeNode.getChildren().get(0) instanceof NonTerminalNode) {
-            return ((TokenNode) ((NonTerminalNode) typeNode.getChildren().get(0)).getChildren().get(0)).token.type();
+        if (typeNode.child(0) instanceof NonTerminalNode) {
+            return typeNode.node(0).token(0).type();
+        }
+        return typeNode.token(0).type();
+    }
+
+    /* ------------------- FlatAst ------------------- */
+    // Те же операторы по номерам узлов flatAst. Значения констант не подставляются - выражения переписываются как есть
+
+    private void translateStatements(int statements, StringBuilder methodBody) {
+        for (int statement = flatAst.listFirst(statements); statement != FlatAst.NONE; statement = flatAst.listNext(statement)) {
+            translateStatement(statement, methodBody);
+            // Код за return, break, continue недостижим: с ним javassist собирает метод, который не проходит верификацию
+            if (isJump(statement)) return;
+        }
+    }
+
+    private boolean isJump(int statement) {
+        int current = flatAst.firstChild(statement);
+        if (current == FlatAst.NONE) return false;
+        if (flatAst.isToken(current)) {
+            return flatAst.tokenType(current) == TokenType.BREAK || flatAst.tokenType(current) == TokenType.CONTINUE;
+        }
+        return flatAst.kind(current) == NodeKind.RETURN_STATEMENT;
+    }
+
+    private void translateStatement(int statement, StringBuilder methodBody) {
+        int current = flatAst.firstChild(statement);
+        if (current == FlatAst.NONE) return; // ε
+        if (flatAst.isToken(current)) {
+            switch (flatAst.tokenType(current)) {
+                case OPEN_CURLY_BRACKET -> {
+                    methodBody.append("{\n");
+                    translateStatements(flatAst.nextSibling(current), methodBody);
+                    methodBody.append("}\n");
+                }
+                case BREAK -> methodBody.append("break;\n");
+                case CONTINUE -> methodBody.append("continue;\n");
+            }
+            return;
+        }
+        switch (flatAst.kind(current)) {
+            case DECLARATION -> translateDeclaration(current, methodBody);
+            case ASSIGNMENT_OR_FUNCTION_CALL -> translateAssignmentOrFunctionCall(current, methodBody);
+            case IF_STATEMENT -> translateIfStatement(current, methodBody);
+            case WHILE_LOOP -> translateWhileStatement(current, methodBody);
+            case FOR_LOOP -> translateForLoop(current, methodBody);
+            case RETURN_STATEMENT -> translateReturnStatement(current, methodBody);
+        }
+    }
+
+    // statement [declaration, optional-assignment, ";"] или declaration-and-assigment [declaration, "=", expression]
+    private void translateDeclaration(int declaration, StringBuilder methodBody) {
+        int type = flatAst.firstChild(flatAst.firstChild(declaration));
+        methodBody.append(getJavaType(flatAst.tokenType(type))).append(" ")
+                .append(flatAst.tokenText(flatAst.child(declaration, 1))).append(" = ");
+
+        int expression = flatAst.nextSibling(declaration);
+        if (flatAst.isToken(expression)) expression = flatAst.nextSibling(expression);
+        else expression = flatAst.isEpsilon(expression) ? FlatAst.NONE : flatAst.child(expression, 1);
+        // Без значения - значение по умолчанию: иначе переменная, присвоенная не на всех путях, не проходит верификацию
+        if (expression == FlatAst.NONE) methodBody.append(getDefaultReturnValue(flatAst.tokenType(type)));
+        else translateExpression(expression, methodBody);
+        methodBody.append(";\n");
+    }
+
+    private void translateAssignmentOrFunctionCall(int node, StringBuilder methodBody) {
+        methodBody.append(flatAst.tokenText(flatAst.firstChild(node)));
+        int continueNode = flatAst.child(node, 1);
+        if (flatAst.tokenType(flatAst.firstChild(continueNode)) == TokenType.EQUALS) {
+            methodBody.append(" = ");
+            translateExpression(flatAst.child(continueNode, 1), methodBody);
+        } else {
+            methodBody.append("(");
+            translateArguments(flatAst.child(continueNode, 1), methodBody);
+            methodBody.append(")");
+        }
+        methodBody.append(";\n");
+    }
+
+    private void translateIfStatement(int ifStatement, StringBuilder methodBody) {
+        methodBody.append("if (");
+        translateExpression(flatAst.child(ifStatement, 2), methodBody);
+        methodBody.append(") {\n");
+        translateStatement(flatAst.child(ifStatement, 4), methodBody);
+        methodBody.append("}");
+
+        int elseOptional = flatAst.child(ifStatement, 5);
+        if (!flatAst.isEpsilon(elseOptional)) {
+            methodBody.append(" else {\n");
+            translateStatement(flatAst.child(elseOptional, 1), methodBody);
+            methodBody.append("}\n");
+        } else {
+            methodBody.append("\n");
+        }
+    }
+
+    private void translateWhileStatement(int whileStatement, StringBuilder methodBody) {
+        if (flatAst.tokenType(flatAst.firstChild(whileStatement)) == TokenType.WHILE) {
+            methodBody.append("while (");
+            translateExpression(flatAst.child(whileStatement, 2), methodBody);
+            methodBody.append(") {\n");
+            translateStatement(flatAst.child(whileStatement, 4), methodBody);
+            methodBody.append("}\n");
+        } else { // do-while
+            methodBody.append("do {\n");
+            translateStatement(flatAst.child(whileStatement, 1), methodBody);
+            methodBody.append("} while (");
+            translateExpression(flatAst.child(whileStatement, 4), methodBody);
+            methodBody.append(");\n");
+        }
+    }
+
+    private void translateForLoop(int forLoop, StringBuilder methodBody) {
+        methodBody.append("for (");
+        translateDeclaration(flatAst.firstChild(flatAst.child(forLoop, 2)), methodBody);
+        methodBody.setLength(methodBody.length() - 2); // Remove semicolon
+        methodBody.append("; ");
+        translateExpression(flatAst.child(forLoop, 4), methodBody);
+        methodBody.append("; ");
+        int assignment = flatAst.child(forLoop, 6);
+        methodBody.append(flatAst.tokenText(flatAst.firstChild(assignment))).append(" = ");
+        translateExpression(flatAst.child(assignment, 2), methodBody);
+        methodBody.append(") {\n");
+        translateStatement(flatAst.child(forLoop, 8), methodBody);
+        methodBody.append("}\n");
+    }
+
+    private void translateReturnStatement(int returnStatement, StringBuilder methodBody) {
+        int returnExpr = flatAst.child(returnStatement, 1);
+        methodBody.append("return");
+        if (!flatAst.isEpsilon(returnExpr)) {
+            methodBody.append(" ");
+            translateExpression(flatAst.firstChild(returnExpr), methodBody);
+        }
+        methodBody.append(";\n");
+    }
+
+    private void translateExpression(int expression, StringBuilder methodBody) {
+        translateOperand(flatAst.firstChild(expression), methodBody);
+    }
+
+    private void translateOperand(int operand, StringBuilder methodBody) {
+        switch (flatAst.kind(operand)) {
+            case BINARY_EXPRESSION -> {
+                translateOperand(flatAst.child(operand, 0), methodBody);
+                methodBody.append(" ").append(flatAst.tokenText(flatAst.child(operand, 1))).append(" ");
+                translateOperand(flatAst.child(operand, 2), methodBody);
+            }
+            case UNARY_EXPRESSION -> {
+                methodBody.append(flatAst.tokenText(flatAst.firstChild(operand)));
+                int start = methodBody.length();
+                translateOperand(flatAst.child(operand, 1), methodBody);
+                if (start < methodBody.length() && methodBody.charAt(start) == '-') methodBody.insert(start, ' '); // не --
+            }
+            case PRIMARY_EXPRESSION -> translatePrimaryExpression(operand, methodBody);
+            default -> throw new IllegalStateException("Unexpected expression node: " + flatAst.kind(operand).getName());
+        }
+    }
+
+    private void translatePrimaryExpression(int primaryExpression, StringBuilder methodBody) {
+        int current = flatAst.firstChild(primaryExpression);
+        if (flatAst.isToken(current)) { // ( expression )
+            methodBody.append("(");
+            translateExpression(flatAst.child(primaryExpression, 1), methodBody);
+            methodBody.append(")");
+            return;
+        }
+        int token = flatAst.firstChild(current);
+        switch (flatAst.kind(current)) {
+            case IDENTIFIER_OR_FUNCTION_CALL -> {
+                methodBody.append(flatAst.tokenText(token));
+                int identifierEndOrFunctionCall = flatAst.nextSibling(token);
+                if (!flatAst.isEpsilon(identifierEndOrFunctionCall)) {
+                    methodBody.append("(");
+                    translateArguments(flatAst.child(identifierEndOrFunctionCall, 1), methodBody);
+                    methodBody.append(")");
+                }
+            }
+            case NUMBER -> appendNumber(flatAst.tokenType(token), flatAst.tokenText(token), methodBody);
+            case BOOLEAN_LITERAL -> methodBody.append(flatAst.tokenText(token));
+        }
+    }
+
+    private void translateArguments(int arguments, StringBuilder methodBody) {
+        if (flatAst.isEpsilon(arguments)) return;
+        int first = flatAst.firstChild(arguments);
+        if (flatAst.isToken(first)) {
+            if (flatAst.tokenType(first) == TokenType.STRING) {
+                methodBody.append("\"").append(flatAst.tokenText(first)).append("\"");
+            }
+            return;
+        }
+        int expression = flatAst.listFirst(first);
+        translateExpression(expression, methodBody);
+        while ((expression = flatAst.listNext(expression)) != FlatAst.NONE) {
+            methodBody.append(", ");
+            translateExpression(expression, methodBody);
         }
-        return ((TokenNode) typeNode.getChildren().get(0)).token.type();
     }
-}
\ No newline at end of file
+}